@@ -35,7 +35,14 @@ package com.dialoguebranch.web.varservice;
 public enum ProtocolVersion {
 
 	/** Definition of Protocol Version V1 as a String */
-	V1("1");
+	V1("1"),
+
+	/**
+	 * Definition of Protocol Version V2 as a String. This version adds the
+	 * /variables/retrieve-updates-batch end-point, which retrieves updates for multiple users in a
+	 * single request.
+	 */
+	V2("2");
 
 	/** The protocol version as a String */
 	private final String versionName;
@@ -30,7 +30,9 @@ package com.dialoguebranch.web.varservice.controller;
 
 import com.dialoguebranch.web.varservice.Application;
 import com.dialoguebranch.web.varservice.ProtocolVersion;
+import com.dialoguebranch.web.varservice.controller.schema.DLBUserVariablesPayload;
 import com.dialoguebranch.web.varservice.exception.ErrorCode;
+import com.dialoguebranch.web.varservice.exception.NotFoundException;
 import com.dialoguebranch.web.varservice.exception.UnauthorizedException;
 import nl.rrd.utils.AppComponents;
 import com.dialoguebranch.web.varservice.controller.schema.DLBVariablePayload;
@@ -295,6 +297,114 @@ public class VariablesController {
 		return result;
 	}
 
+	// -----------------------------------------------------------------------------
+	// -------------------- END-POINT: "retrieve-updates-batch" --------------------
+	// -----------------------------------------------------------------------------
+
+	/**
+	 * Retrieve updates for the DialogueBranch Variables of multiple users in a single request. This
+	 * end-point behaves as if "retrieve-updates" was called once for every user in the request,
+	 * and allows the DialogueBranch Web Service to combine the requests of concurrent dialogue
+	 * sessions into one round-trip.
+	 *
+	 * <p>The response contains one entry for every entry in the request, in the same order,
+	 * each with the subset of variables for which an updated value is available. If an entry is
+	 * invalid (e.g. it has no userId or an invalid time zone), only that entry fails: its response
+	 * entry has no variables and an error message.</p>
+	 *
+	 * <p>This end-point is available from protocol version 2 onwards.</p>
+	 *
+	 * @param request the {@link HttpServletRequest} that generated the request.
+	 * @param response the {@link HttpServletResponse} that generated the request.
+	 * @param version the API Version to use, e.g. '2'.
+	 * @param userVariables the List of users, with for each user the List of DialogueBranch
+	 *                      Variables for which to check for updates.
+	 * @return A list of {@link DLBUserVariablesPayload}s representing all updated variables per
+	 *         user.
+	 * @throws Exception in case of a network or service error.
+	 */
+	@Operation(summary = "Retrieve updates for the Dialogue Branch Variables of multiple users",
+		description = "This end-point behaves as if 'retrieve-updates' was called once for " +
+			"every user in the request. The response contains one entry for every entry in the " +
+			"request, in the same order, each with the subset of variables for which an " +
+			"updated value is available. An invalid entry does not fail the request, but gets " +
+			"a response entry with an 'error' message instead." +
+			"<br/><br/>This end-point is available from protocol version 2 onwards.")
+	@ApiResponses(value = {
+		@ApiResponse(responseCode = "200",
+			description = "Successful operation",
+			content = @Content(
+				array = @ArraySchema(
+					schema = @Schema(implementation = DLBUserVariablesPayload.class)))) })
+	@RequestMapping(value="/retrieve-updates-batch", method= RequestMethod.POST, consumes={
+			MediaType.APPLICATION_JSON_VALUE })
+	public List<DLBUserVariablesPayload> retrieveUpdatesBatch (
+		HttpServletRequest request,
+		HttpServletResponse response,
+
+		@Parameter(hidden = true, description = "API Version to use, e.g. '2'")
+		@PathVariable(value = "version")
+		String version,
+
+		@Parameter(description = "List of users and their DialogueBranch Variables for which to " +
+				"check for updates.",
+				required = true,
+				content = @Content(
+					array = @ArraySchema(
+						schema = @Schema(implementation = DLBUserVariablesPayload.class))))
+		@RequestBody List<DLBUserVariablesPayload> userVariables) throws Exception {
+
+		// If no explicit protocol version is provided, assume the latest version
+		if(version == null) version = ProtocolVersion.getLatestVersion().versionName();
+
+		// This end-point does not exist in protocol version 1
+		ProtocolVersion protocolVersion;
+		try {
+			protocolVersion = ProtocolVersion.forVersionName(version);
+		} catch(IllegalArgumentException ex) {
+			throw new NotFoundException("Unknown protocol version: " + version);
+		}
+		if(protocolVersion == ProtocolVersion.V1) {
+			throw new NotFoundException("End-point 'retrieve-updates-batch' is not available " +
+					"in protocol version " + version);
+		}
+
+		// Log this call to the service log
+		logger.info("POST /v{}/variables/retrieve-updates-batch for {} users", version,
+				userVariables.size());
+
+		String providedAPIKey = ControllerFunctions.extractAPIKey(request);
+		if(!application.getConfiguration().getAuthAPIKey().equals(providedAPIKey)) {
+			throw new UnauthorizedException(ErrorCode.ACCESS_TOKEN_INVALID,
+					"Invalid API Key provided.");
+		}
+
+		// An invalid entry only fails its own response entry, not the entire batch
+		List<DLBUserVariablesPayload> result = new ArrayList<>();
+		for(DLBUserVariablesPayload entry : userVariables) {
+			DLBUserVariablesPayload entryResult = new DLBUserVariablesPayload(entry.getUserId(),
+					entry.getTimeZone(), new ArrayList<>());
+			if(entry.getUserId() == null || entry.getUserId().isEmpty()) {
+				entryResult.setError("Missing 'userId' in request.");
+			} else {
+				List<DLBVariablePayload> variables = entry.getVariables() == null ?
+						new ArrayList<>() : entry.getVariables();
+				try {
+					entryResult.setVariables(executeRetrieveUpdates(entry.getUserId(),
+							entry.getTimeZone(), variables));
+				} catch(BadRequestException ex) {
+					entryResult.setError(ex.getMessage());
+				}
+			}
+			if(entryResult.getError() != null) {
+				logger.warn("Invalid entry in retrieve-updates-batch for user '{}': {}",
+						entry.getUserId(), entryResult.getError());
+			}
+			result.add(entryResult);
+		}
+		return result;
+	}
+
 	// ---------------------------------------------------------------------
 	// -------------------- END-POINT: "notify-updated" --------------------
 	// ---------------------------------------------------------------------
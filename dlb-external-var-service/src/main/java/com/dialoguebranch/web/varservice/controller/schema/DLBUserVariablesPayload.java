@@ -0,0 +1,159 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the Dialogue Branch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.varservice.controller.schema;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DLBUserVariablesPayload} contains a list of DialogueBranch Variables for a single user.
+ * It is used in the request and response of the batched "retrieve-updates-batch" end-point. In a
+ * response, it contains an error message instead of variables if the entry in the request was
+ * invalid.
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class DLBUserVariablesPayload {
+
+	@Schema(description = "The userId of the Dialogue Branch user",
+			example = "user01")
+	private String userId;
+
+	@Schema(description = "The current time zone of the Dialogue Branch user",
+			example = "Europe/Lisbon")
+	private String timeZone;
+
+	@ArraySchema(schema = @Schema(implementation = DLBVariablePayload.class))
+	private List<DLBVariablePayload> variables = new ArrayList<>();
+
+	@Schema(description = "In a response, the reason why the entry in the request was invalid, " +
+			"or null if it was valid",
+			example = "Missing 'userId' in request.")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String error = null;
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of an empty {@link DLBUserVariablesPayload} (this constructor is used
+	 * for serialization/deserialization purposes).
+	 */
+	public DLBUserVariablesPayload() { }
+
+	/**
+	 * Creates an instance of a {@link DLBUserVariablesPayload}.
+	 *
+	 * @param userId the userId of the Dialogue Branch user.
+	 * @param timeZone the current time zone of the Dialogue Branch user (as IANA String, e.g.
+	 *                 "Europe/Lisbon").
+	 * @param variables the DialogueBranch Variables of the user.
+	 */
+	public DLBUserVariablesPayload(String userId, String timeZone,
+								   List<DLBVariablePayload> variables) {
+		this.userId = userId;
+		this.timeZone = timeZone;
+		this.variables = variables;
+	}
+
+	// ----------------------------------------------------------- //
+	// -------------------- Getters & Setters -------------------- //
+	// ----------------------------------------------------------- //
+
+	/**
+	 * Returns the userId of the Dialogue Branch user.
+	 * @return the userId of the Dialogue Branch user.
+	 */
+	public String getUserId() {
+		return userId;
+	}
+
+	/**
+	 * Sets the userId of the Dialogue Branch user.
+	 * @param userId the userId of the Dialogue Branch user.
+	 */
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	/**
+	 * Returns the current time zone of the Dialogue Branch user (e.g. "Europe/Lisbon").
+	 * @return the current time zone of the Dialogue Branch user (e.g. "Europe/Lisbon").
+	 */
+	public String getTimeZone() {
+		return timeZone;
+	}
+
+	/**
+	 * Sets the current time zone of the Dialogue Branch user (e.g. "Europe/Lisbon").
+	 * @param timeZone the current time zone of the Dialogue Branch user (e.g. "Europe/Lisbon").
+	 */
+	public void setTimeZone(String timeZone) {
+		this.timeZone = timeZone;
+	}
+
+	/**
+	 * Returns the DialogueBranch Variables of the user.
+	 * @return the DialogueBranch Variables of the user.
+	 */
+	public List<DLBVariablePayload> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Sets the DialogueBranch Variables of the user.
+	 * @param variables the DialogueBranch Variables of the user.
+	 */
+	public void setVariables(List<DLBVariablePayload> variables) {
+		this.variables = variables;
+	}
+
+	/**
+	 * Returns the reason why the entry in the request was invalid, or {@code null} if it was
+	 * valid. This is only set in a response.
+	 * @return the error message or {@code null}.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Sets the reason why the entry in the request was invalid, or {@code null} if it was valid.
+	 * @param error the error message or {@code null}.
+	 */
+	public void setError(String error) {
+		this.error = error;
+	}
+
+}
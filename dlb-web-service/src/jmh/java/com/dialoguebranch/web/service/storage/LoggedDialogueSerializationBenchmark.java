@@ -0,0 +1,153 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.model.LoggedInteraction;
+import com.dialoguebranch.model.MessageSource;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading and writing a dialogue session file with a new {@link ObjectMapper} per call
+ * (as the {@link LoggedDialogueStore} used to do) and with a shared {@link ObjectReader} and
+ * {@link ObjectWriter} (as it does now). The session file is similar to that of a real user
+ * session: several dialogues, each with a few dozen interactions.
+ *
+ * <p>Run with "gradlew jmh". The "gc" profiler is enabled in the build file, so that the results
+ * include the allocation rate per operation ("gc.alloc.rate.norm") next to the time per
+ * operation.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoggedDialogueSerializationBenchmark {
+
+	private static final TypeReference<List<ServerLoggedDialogue>> SESSION_TYPE =
+			new TypeReference<>() {};
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectReader SESSION_READER = MAPPER.readerFor(SESSION_TYPE);
+	private static final ObjectWriter SESSION_WRITER = MAPPER.writerFor(SESSION_TYPE);
+
+	@Param({"5", "20"})
+	public int dialogueCount;
+
+	@Param({"40"})
+	public int interactionCount;
+
+	private File sessionFile;
+	private List<ServerLoggedDialogue> session;
+
+	@Setup
+	public void setup() throws IOException {
+		session = createSession(dialogueCount, interactionCount);
+		sessionFile = File.createTempFile("session", ".json");
+		SESSION_WRITER.writeValue(sessionFile, session);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(sessionFile.toPath());
+	}
+
+	// ----------------------------------------------------- //
+	// -------------------- Benchmarks -------------------- //
+	// ----------------------------------------------------- //
+
+	@Benchmark
+	public List<ServerLoggedDialogue> readWithNewMapper() throws IOException {
+		return new ObjectMapper().readValue(sessionFile, SESSION_TYPE);
+	}
+
+	@Benchmark
+	public List<ServerLoggedDialogue> readWithSharedReader() throws IOException {
+		return SESSION_READER.readValue(sessionFile);
+	}
+
+	@Benchmark
+	public byte[] writeWithNewMapper() throws IOException {
+		return new ObjectMapper().writerFor(SESSION_TYPE).writeValueAsBytes(session);
+	}
+
+	@Benchmark
+	public byte[] writeWithSharedWriter() throws IOException {
+		return SESSION_WRITER.writeValueAsBytes(session);
+	}
+
+	// -------------------------------------------------- //
+	// -------------------- Helpers -------------------- //
+	// -------------------------------------------------- //
+
+	private static List<ServerLoggedDialogue> createSession(int dialogueCount,
+			int interactionCount) {
+		ZonedDateTime time = ZonedDateTime.of(2026, 1, 1, 9, 0, 0, 0,
+				ZoneId.of("Europe/Amsterdam"));
+		long sessionStartTime = time.toInstant().toEpochMilli();
+		List<ServerLoggedDialogue> result = new ArrayList<>();
+		for (int i = 0; i < dialogueCount; i++) {
+			ServerLoggedDialogue dialogue = new ServerLoggedDialogue("benchmark-user", time,
+					"benchmark-session", sessionStartTime);
+			dialogue.setDialogueName("dialogue-" + i);
+			dialogue.setLanguage("en");
+			dialogue.setCompleted(true);
+			List<LoggedInteraction> interactions = dialogue.getInteractionList();
+			for (int j = 0; j < interactionCount; j++) {
+				long timestamp = time.plusSeconds(j * 10L).toInstant().toEpochMilli();
+				if (j % 2 == 0) {
+					interactions.add(new LoggedInteraction(timestamp, MessageSource.AGENT,
+							"Coach", dialogue.getDialogueName(), "Node" + j, j - 1,
+							"This is what the agent says in node " + j + " of the dialogue.",
+							-1));
+				} else {
+					interactions.add(new LoggedInteraction(timestamp, MessageSource.USER,
+							"USER", dialogue.getDialogueName(), "Node" + (j - 1), j - 1,
+							"This is the reply of the user.", 1));
+				}
+			}
+			result.add(dialogue);
+			time = time.plusMinutes(15);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.model.LoggedInteraction;
+import com.dialoguebranch.model.MessageSource;
+import com.dialoguebranch.web.service.Configuration;
+import nl.rrd.utils.exception.DatabaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Measures the throughput of {@link LoggedDialogueStore#saveToSession(ServerLoggedDialogue)
+ * saveToSession()} with a growing number of threads, where every thread writes the dialogues of
+ * a different user. As the dialogue log files are guarded by a lock per user, the total
+ * throughput should grow with the number of threads (up to the number of cores and the limits of
+ * the disk), rather than stay flat as it did with a single lock for all users.
+ *
+ * <p>Every operation adds an interaction to the current dialogue of the user and saves it, which
+ * is what happens on every step of a dialogue. After {@link #INTERACTIONS_PER_DIALOGUE}
+ * interactions, the user starts a new dialogue in a new session, so that the cost of an operation
+ * does not grow during the benchmark.</p>
+ *
+ * <p>Run with "gradlew jmh". The score of each benchmark method is the total throughput of all
+ * its threads.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoggedDialogueStoreContentionBenchmark {
+
+	private static final int INTERACTIONS_PER_DIALOGUE = 20;
+
+	@Param({Configuration.DIALOGUE_LOG_FORMAT_JSON, Configuration.DIALOGUE_LOG_FORMAT_JSONL})
+	public String format;
+
+	private File logDirectory;
+	private final AtomicInteger userCount = new AtomicInteger();
+
+	@Setup
+	public void setup() throws IOException {
+		Configuration.getInstance().put(Configuration.DIALOGUE_LOG_FORMAT, format);
+		logDirectory = Files.createTempDirectory("dialogues").toFile();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(logDirectory.toPath())) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	// ----------------------------------------------------- //
+	// -------------------- Benchmarks -------------------- //
+	// ----------------------------------------------------- //
+
+	@Benchmark
+	@Threads(1)
+	public void saveWith1Thread(UserState user) throws DatabaseException, IOException {
+		user.saveNextInteraction();
+	}
+
+	@Benchmark
+	@Threads(2)
+	public void saveWith2Threads(UserState user) throws DatabaseException, IOException {
+		user.saveNextInteraction();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void saveWith4Threads(UserState user) throws DatabaseException, IOException {
+		user.saveNextInteraction();
+	}
+
+	@Benchmark
+	@Threads(8)
+	public void saveWith8Threads(UserState user) throws DatabaseException, IOException {
+		user.saveNextInteraction();
+	}
+
+	// -------------------------------------------------------- //
+	// -------------------- Helper Classes -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * The user of a benchmark thread, with its own {@link LoggedDialogueStore}.
+	 */
+	@State(Scope.Thread)
+	public static class UserState {
+		private String userId;
+		private LoggedDialogueStore store;
+		private ServerLoggedDialogue dialogue = null;
+		private int sessionCount = 0;
+
+		@Setup
+		public void setup(LoggedDialogueStoreContentionBenchmark benchmark) throws IOException {
+			userId = "benchmark-user-" + benchmark.userCount.incrementAndGet();
+			File userLogDirectory = new File(benchmark.logDirectory, userId);
+			if (!userLogDirectory.mkdirs()) {
+				throw new IOException("Unable to create the user's log folder at: "
+						+ userLogDirectory.getAbsolutePath());
+			}
+			store = new LoggedDialogueStore(userId, userLogDirectory, null);
+		}
+
+		@TearDown
+		public void tearDown() throws DatabaseException, IOException {
+			store.close();
+		}
+
+		private void saveNextInteraction() throws DatabaseException, IOException {
+			if (dialogue == null ||
+					dialogue.getInteractionList().size() >= INTERACTIONS_PER_DIALOGUE) {
+				ZonedDateTime time = ZonedDateTime.now(ZoneId.of("Europe/Amsterdam"));
+				sessionCount++;
+				dialogue = new ServerLoggedDialogue(userId, time, "session-" + sessionCount,
+						time.toInstant().toEpochMilli());
+				dialogue.setDialogueName("benchmark-dialogue");
+				dialogue.setLanguage("en");
+			}
+			int index = dialogue.getInteractionList().size();
+			dialogue.getInteractionList().add(new LoggedInteraction(System.currentTimeMillis(),
+					MessageSource.AGENT, "Coach", dialogue.getDialogueName(), "Node" + index,
+					index - 1, "This is what the agent says in node " + index + ".", -1));
+			store.saveToSession(dialogue);
+		}
+	}
+
+}
@@ -35,6 +35,7 @@ import jakarta.annotation.PostConstruct;
 import nl.rrd.utils.AppComponents;
 import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -47,6 +48,7 @@ import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.SpringVersion;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.util.ClassUtils;
 
 import java.net.URL;
@@ -71,7 +73,7 @@ ApplicationListener<ApplicationEvent> {
 	private final Long launchedTime = Instant.now().toEpochMilli();
 
 	@Autowired
-	private SessionFactory sessionFactory;
+	private ObjectProvider<SessionFactory> sessionFactory;
 
 	// -------------------------------------------------------- //
 	// -------------------- Constructor(s) -------------------- //
@@ -120,7 +122,9 @@ ApplicationListener<ApplicationEvent> {
 
 	@PostConstruct
 	private void initApp() {
-		AppComponents.getInstance().addComponent(sessionFactory);
+		// The database is only needed if variables are stored in the database
+		if(config.getVariableStorage().equals(Configuration.VARIABLE_STORAGE_DATABASE))
+			AppComponents.getInstance().addComponent(sessionFactory.getObject());
 	}
 
 	// ----------------------------------------------------------- //
@@ -154,10 +158,22 @@ ApplicationListener<ApplicationEvent> {
 	// -------------------- App Management -------------------- //
 	// -------------------------------------------------------- //
 
+	/**
+	 * Periodically removes idle user services from memory (see {@link
+	 * ApplicationManager#evictIdleUserServices()}).
+	 */
+	@Scheduled(initialDelay = 60000, fixedDelay = 60000)
+	public void evictIdleUserServices() {
+		if(applicationManager != null)
+			applicationManager.evictIdleUserServices();
+	}
+
 	@Override
 	public void onApplicationEvent(ApplicationEvent event) {
 		if(event instanceof ContextClosedEvent) {
 			logger.info("Shutdown DialogueBranch Web Service.");
+			if(applicationManager != null)
+				applicationManager.closeAllUserServices();
 		}
 
 		if(event instanceof ContextRefreshedEvent) {
@@ -185,8 +201,23 @@ ApplicationListener<ApplicationEvent> {
 			if(config.getExternalVariableServiceEnabled()) {
 				logger.info("===== External Variable Service URL: {}", config.getExternalVariableServiceURL());
 				logger.info("===== External Variable Service API Version: {}", config.getExternalVariableServiceAPIVersion());
+				logger.info("===== External Variable Service Connect Timeout (ms): {}", config.getExternalVariableServiceConnectTimeoutMs());
+				logger.info("===== External Variable Service Read Timeout (ms): {}", config.getExternalVariableServiceReadTimeoutMs());
+				logger.info("===== External Variable Service Max Connections: {}", config.getExternalVariableServiceMaxConnections());
+				logger.info("===== External Variable Service Notify Max Queued: {}", config.getExternalVariableServiceNotifyMaxQueued());
+				logger.info("===== External Variable Service Cache TTL (ms): {}", config.getExternalVariableServiceCacheTtlMs());
+				logger.info("===== External Variable Service Prefetch: {}", config.getExternalVariableServicePrefetch());
+				logger.info("===== External Variable Service Latency Budget (ms): {}", config.getExternalVariableServiceLatencyBudgetMs());
+				logger.info("===== External Variable Service Batch Window (ms): {}", config.getExternalVariableServiceBatchWindowMs());
 			}
 
+			logger.info("=== User Service Idle Timeout (seconds): {}", config.getUserServiceIdleTimeoutSeconds());
+			logger.info("=== User Service Max Active: {}", config.getUserServiceMaxActive());
+			logger.info("=== Dialogue Log Format: {}", config.getDialogueLogFormat());
+			logger.info("=== Dialogue Log Write-Behind Interval (ms): {}", config.getDialogueLogWriteBehindIntervalMs());
+			logger.info("=== Variable Storage: {}", config.getVariableStorage());
+			logger.info("=== Variable Write-Behind Interval (ms): {}", config.getVariableWriteBehindIntervalMs());
+
 			logger.info("=== Azure Data Lake Storage Enabled: {}", config.getAzureDataLakeEnabled());
 			if(config.getAzureDataLakeEnabled()) {
 				logger.info("===== Azure Data Lake Account URL: {}", config.getAzureDataLakeSASAccountUrl());
@@ -85,6 +85,108 @@ public class Configuration extends LinkedHashMap<String,String> {
 	 */
 	public static final String ALLOW_ANONYMOUS_USERS = "allowAnonymousUsers";
 
+	// ---------- User Service Management
+
+	/**
+	 * Name of the config parameter that defines after how many seconds without any request an
+	 * active user service is removed from memory (0 means never).
+	 */
+	public static final String USER_SERVICE_IDLE_TIMEOUT_SECONDS = "userServiceIdleTimeoutSeconds";
+
+	/**
+	 * Name of the config parameter that defines the maximum number of user services that are kept
+	 * in memory at the same time (0 means unlimited).
+	 */
+	public static final String USER_SERVICE_MAX_ACTIVE = "userServiceMaxActive";
+
+	// ---------- Dialogue Logging
+
+	/**
+	 * Name of the config parameter indicating the file format used for writing dialogue logs,
+	 * which can be set to either "json" or "jsonl".
+	 */
+	public static final String DIALOGUE_LOG_FORMAT = "dialogueLogFormat";
+
+	/**
+	 * Constant defining the value of DIALOGUE_LOG_FORMAT indicating that every change to a dialogue
+	 * session rewrites the complete session as a JSON file.
+	 */
+	public static final String DIALOGUE_LOG_FORMAT_JSON = "json";
+
+	/**
+	 * Constant defining the value of DIALOGUE_LOG_FORMAT indicating that every change to a dialogue
+	 * session is appended to a JSON Lines file, which is periodically compacted into the JSON file
+	 * of the session.
+	 */
+	public static final String DIALOGUE_LOG_FORMAT_JSONL = "jsonl";
+
+	/**
+	 * Name of the config parameter that defines after how many appended changes the JSON Lines
+	 * file of a dialogue session is compacted into its JSON file.
+	 */
+	public static final String DIALOGUE_LOG_COMPACTION_THRESHOLD = "dialogueLogCompactionThreshold";
+
+	/**
+	 * Name of the config parameter that defines the interval in milliseconds at which buffered
+	 * dialogue log changes are written to disk (0 means changes are written immediately).
+	 */
+	public static final String DIALOGUE_LOG_WRITE_BEHIND_INTERVAL_MS =
+			"dialogueLogWriteBehindIntervalMs";
+
+	/**
+	 * Name of the config parameter that defines the number of buffered dialogue log changes of a
+	 * single user after which they are written without waiting for the next interval.
+	 */
+	public static final String DIALOGUE_LOG_WRITE_BEHIND_MAX_PENDING =
+			"dialogueLogWriteBehindMaxPending";
+
+	/**
+	 * Name of the config parameter indicating whether every write of a dialogue log file should be
+	 * synced to the storage device (fsync) before it is considered complete.
+	 */
+	public static final String DIALOGUE_LOG_FSYNC = "dialogueLogFsync";
+
+	// ---------- Variable Storage
+
+	/**
+	 * Name of the config parameter indicating where variables are stored, which can be set to
+	 * either "database", "json" or "log".
+	 */
+	public static final String VARIABLE_STORAGE = "variableStorage";
+
+	/**
+	 * Constant defining the value of VARIABLE_STORAGE indicating that variables are stored in the
+	 * MariaDB database.
+	 */
+	public static final String VARIABLE_STORAGE_DATABASE = "database";
+
+	/**
+	 * Constant defining the value of VARIABLE_STORAGE indicating that the variables of every user
+	 * are stored in a JSON file under the data directory, which is rewritten on every change.
+	 */
+	public static final String VARIABLE_STORAGE_JSON = "json";
+
+	/**
+	 * Constant defining the value of VARIABLE_STORAGE indicating that the changes to the variables
+	 * of every user are appended to a log file under the data directory, which is periodically
+	 * compacted.
+	 */
+	public static final String VARIABLE_STORAGE_LOG = "log";
+
+	/**
+	 * Name of the config parameter that defines the interval in milliseconds at which buffered
+	 * variable changes are written to storage (0 means changes are written immediately).
+	 */
+	public static final String VARIABLE_WRITE_BEHIND_INTERVAL_MS =
+			"variableWriteBehindIntervalMs";
+
+	/**
+	 * Name of the config parameter that defines the total number of buffered variable changes
+	 * after which a request that changes variables writes the changes of its user itself.
+	 */
+	public static final String VARIABLE_WRITE_BEHIND_MAX_PENDING =
+			"variableWriteBehindMaxPending";
+
 	// ---------- Database Configuration
 
 	public static final String MARIADB_HOST = "mariadbHost";
@@ -97,6 +199,25 @@ public class Configuration extends LinkedHashMap<String,String> {
 
 	public static final String MARIADB_DATABASE = "mariadbDatabase";
 
+	/** Name of the config parameter that defines the maximum number of pooled connections */
+	public static final String MARIADB_POOL_MAX_SIZE = "mariadbPoolMaxSize";
+
+	/** Name of the config parameter that defines the minimum number of idle pooled connections */
+	public static final String MARIADB_POOL_MIN_IDLE = "mariadbPoolMinIdle";
+
+	/**
+	 * Name of the config parameter that defines the maximum number of milliseconds to wait for a
+	 * connection from the pool.
+	 */
+	public static final String MARIADB_POOL_CONNECTION_TIMEOUT_MS =
+			"mariadbPoolConnectionTimeoutMs";
+
+	/**
+	 * Name of the config parameter that defines the number of inserts, updates or deletes that are
+	 * sent to the database in a single JDBC batch.
+	 */
+	public static final String MARIADB_JDBC_BATCH_SIZE = "mariadbJdbcBatchSize";
+
 	// ---------- Authentication Configuration
 
 	/**
@@ -186,6 +307,99 @@ public class Configuration extends LinkedHashMap<String,String> {
 	 */
 	public static final String EXTERNAL_VARIABLE_SERVICE_API_KEY = "externalVariableServiceAPIKey";
 
+	/**
+	 * Name of the config parameter that defines the maximum number of milliseconds to wait for a
+	 * connection to the External Variable Service
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_CONNECT_TIMEOUT_MS
+			= "externalVariableServiceConnectTimeoutMs";
+
+	/**
+	 * Name of the config parameter that defines the maximum number of milliseconds to wait for a
+	 * response from the External Variable Service
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_READ_TIMEOUT_MS
+			= "externalVariableServiceReadTimeoutMs";
+
+	/**
+	 * Name of the config parameter that defines the maximum number of pooled connections to the
+	 * External Variable Service
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_MAX_CONNECTIONS
+			= "externalVariableServiceMaxConnections";
+
+	/**
+	 * Name of the config parameter that defines the maximum number of notifications for the
+	 * External Variable Service that are queued in memory (more are written to disk)
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_NOTIFY_MAX_QUEUED
+			= "externalVariableServiceNotifyMaxQueued";
+
+	/**
+	 * Name of the config parameter that defines the maximum number of milliseconds between
+	 * retries of a failed notification to the External Variable Service
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_NOTIFY_MAX_RETRY_DELAY_MS
+			= "externalVariableServiceNotifyMaxRetryDelayMs";
+
+	/**
+	 * Name of the config parameter that defines the number of milliseconds during which variables
+	 * that were retrieved from the External Variable Service are not retrieved again
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_CACHE_TTL_MS
+			= "externalVariableServiceCacheTtlMs";
+
+	/**
+	 * Name of the config parameter that defines whether a max-age in the Cache-Control header of
+	 * the External Variable Service overrides the configured cache time
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_CACHE_HONOUR_MAX_AGE
+			= "externalVariableServiceCacheHonourMaxAge";
+
+	/**
+	 * Name of the config parameter that defines whether variables used in dialogues should be
+	 * retrieved from the External Variable Service in the background when a session begins
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_PREFETCH
+			= "externalVariableServicePrefetch";
+
+	/**
+	 * Name of the config parameter that defines the number of milliseconds after which a call to
+	 * the External Variable Service counts as failed for the circuit breaker, and after which a
+	 * retrieve-updates call times out
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_LATENCY_BUDGET_MS
+			= "externalVariableServiceLatencyBudgetMs";
+
+	/**
+	 * Name of the config parameter that defines the number of consecutive failed calls after which
+	 * calls to the External Variable Service are stopped (the circuit breaker opens)
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_BREAKER_FAILURE_THRESHOLD
+			= "externalVariableServiceBreakerFailureThreshold";
+
+	/**
+	 * Name of the config parameter that defines the number of milliseconds after which calls to
+	 * the External Variable Service are tried again when the circuit breaker is open
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_BREAKER_OPEN_MS
+			= "externalVariableServiceBreakerOpenMs";
+
+	/**
+	 * Name of the config parameter that defines the number of milliseconds during which
+	 * retrieve-updates requests for different users are collected into one batch (only used with
+	 * API version 2 or higher, 0 disables batching)
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_BATCH_WINDOW_MS
+			= "externalVariableServiceBatchWindowMs";
+
+	/**
+	 * Name of the config parameter that defines the maximum number of users in one batched
+	 * retrieve-updates request
+	 */
+	public static final String EXTERNAL_VARIABLE_SERVICE_BATCH_MAX_SIZE
+			= "externalVariableServiceBatchMaxSize";
+
 	// ---------- Azure Data Lake
 
 	/**
@@ -331,6 +545,160 @@ public class Configuration extends LinkedHashMap<String,String> {
 		return Boolean.parseBoolean(get(ALLOW_ANONYMOUS_USERS));
 	}
 
+	// -------------------------------------------------------------------------
+	// -------------------- Getters: User Service Management -------------------
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Returns the number of seconds after which an idle user service is removed from memory, or 0
+	 * if idle user services should never be removed. The default is 1800 seconds.
+	 *
+	 * @return the idle timeout for user services in seconds.
+	 */
+	public int getUserServiceIdleTimeoutSeconds() {
+		if (get(USER_SERVICE_IDLE_TIMEOUT_SECONDS) == null) return 1800;
+		try {
+			return Integer.parseInt(get(USER_SERVICE_IDLE_TIMEOUT_SECONDS));
+		} catch (NumberFormatException ex) {
+			return 1800;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of user services that are kept in memory at the same time, or 0
+	 * if there is no limit. The default is 10000.
+	 *
+	 * @return the maximum number of active user services.
+	 */
+	public int getUserServiceMaxActive() {
+		if (get(USER_SERVICE_MAX_ACTIVE) == null) return 10000;
+		try {
+			return Integer.parseInt(get(USER_SERVICE_MAX_ACTIVE));
+		} catch (NumberFormatException ex) {
+			return 10000;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// ----------------------- Getters: Dialogue Logging -----------------------
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Returns the file format used for writing dialogue logs, which is either {@link
+	 * #DIALOGUE_LOG_FORMAT_JSON} (the default) or {@link #DIALOGUE_LOG_FORMAT_JSONL}.
+	 *
+	 * @return the file format used for writing dialogue logs.
+	 */
+	public String getDialogueLogFormat() {
+		if (DIALOGUE_LOG_FORMAT_JSONL.equals(get(DIALOGUE_LOG_FORMAT)))
+			return DIALOGUE_LOG_FORMAT_JSONL;
+		return DIALOGUE_LOG_FORMAT_JSON;
+	}
+
+	/**
+	 * Returns after how many appended changes the JSON Lines file of a dialogue session is
+	 * compacted into its JSON file. The default is 50.
+	 *
+	 * @return the compaction threshold for dialogue logs.
+	 */
+	public int getDialogueLogCompactionThreshold() {
+		if (get(DIALOGUE_LOG_COMPACTION_THRESHOLD) == null) return 50;
+		try {
+			return Integer.parseInt(get(DIALOGUE_LOG_COMPACTION_THRESHOLD));
+		} catch (NumberFormatException ex) {
+			return 50;
+		}
+	}
+
+	/**
+	 * Returns the interval in milliseconds at which buffered dialogue log changes are written to
+	 * disk, or 0 if changes are written immediately (the default).
+	 *
+	 * @return the write-behind interval for dialogue logs in milliseconds.
+	 */
+	public long getDialogueLogWriteBehindIntervalMs() {
+		if (get(DIALOGUE_LOG_WRITE_BEHIND_INTERVAL_MS) == null) return 0;
+		try {
+			return Long.parseLong(get(DIALOGUE_LOG_WRITE_BEHIND_INTERVAL_MS));
+		} catch (NumberFormatException ex) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the number of buffered dialogue log changes of a single user after which they are
+	 * written without waiting for the next write-behind interval. The default is 100.
+	 *
+	 * @return the maximum number of buffered dialogue log changes per user.
+	 */
+	public int getDialogueLogWriteBehindMaxPending() {
+		if (get(DIALOGUE_LOG_WRITE_BEHIND_MAX_PENDING) == null) return 100;
+		try {
+			return Integer.parseInt(get(DIALOGUE_LOG_WRITE_BEHIND_MAX_PENDING));
+		} catch (NumberFormatException ex) {
+			return 100;
+		}
+	}
+
+	/**
+	 * Returns whether every write of a dialogue log file should be synced to the storage device
+	 * (fsync). The default is false.
+	 *
+	 * @return whether dialogue log writes are synced to the storage device.
+	 */
+	public boolean getDialogueLogFsync() {
+		return Boolean.parseBoolean(get(DIALOGUE_LOG_FSYNC));
+	}
+
+	// -------------------------------------------------------------------------
+	// ----------------------- Getters: Variable Storage -----------------------
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Returns where variables are stored, which is either {@link #VARIABLE_STORAGE_DATABASE} (the
+	 * default), {@link #VARIABLE_STORAGE_JSON} or {@link #VARIABLE_STORAGE_LOG}.
+	 *
+	 * @return where variables are stored.
+	 */
+	public String getVariableStorage() {
+		if (VARIABLE_STORAGE_JSON.equals(get(VARIABLE_STORAGE)))
+			return VARIABLE_STORAGE_JSON;
+		if (VARIABLE_STORAGE_LOG.equals(get(VARIABLE_STORAGE)))
+			return VARIABLE_STORAGE_LOG;
+		return VARIABLE_STORAGE_DATABASE;
+	}
+
+	/**
+	 * Returns the interval in milliseconds at which buffered variable changes are written to
+	 * storage, or 0 if changes are written immediately (the default).
+	 *
+	 * @return the write-behind interval for variables in milliseconds.
+	 */
+	public long getVariableWriteBehindIntervalMs() {
+		if (get(VARIABLE_WRITE_BEHIND_INTERVAL_MS) == null) return 0;
+		try {
+			return Long.parseLong(get(VARIABLE_WRITE_BEHIND_INTERVAL_MS));
+		} catch (NumberFormatException ex) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the total number of buffered variable changes after which a request that changes
+	 * variables writes the changes of its user itself, instead of leaving them to the background
+	 * writer. The default is 10000.
+	 *
+	 * @return the maximum number of buffered variable changes.
+	 */
+	public int getVariableWriteBehindMaxPending() {
+		if (get(VARIABLE_WRITE_BEHIND_MAX_PENDING) == null) return 10000;
+		try {
+			return Integer.parseInt(get(VARIABLE_WRITE_BEHIND_MAX_PENDING));
+		} catch (NumberFormatException ex) {
+			return 10000;
+		}
+	}
+
 	// -------------------------------------------------------------------------
 	// -------------------- Getters: Database Configuration --------------------
 	// -------------------------------------------------------------------------
@@ -364,6 +732,42 @@ public class Configuration extends LinkedHashMap<String,String> {
 		return get(MARIADB_DATABASE);
 	}
 
+	public int getMariadbPoolMaxSize() {
+		if (get(MARIADB_POOL_MAX_SIZE) == null) return 10;
+		try {
+			return Integer.parseInt(get(MARIADB_POOL_MAX_SIZE));
+		} catch (NumberFormatException ex) {
+			return 10;
+		}
+	}
+
+	public int getMariadbPoolMinIdle() {
+		if (get(MARIADB_POOL_MIN_IDLE) == null) return 2;
+		try {
+			return Integer.parseInt(get(MARIADB_POOL_MIN_IDLE));
+		} catch (NumberFormatException ex) {
+			return 2;
+		}
+	}
+
+	public long getMariadbPoolConnectionTimeoutMs() {
+		if (get(MARIADB_POOL_CONNECTION_TIMEOUT_MS) == null) return 30000;
+		try {
+			return Long.parseLong(get(MARIADB_POOL_CONNECTION_TIMEOUT_MS));
+		} catch (NumberFormatException ex) {
+			return 30000;
+		}
+	}
+
+	public int getMariadbJdbcBatchSize() {
+		if (get(MARIADB_JDBC_BATCH_SIZE) == null) return 50;
+		try {
+			return Integer.parseInt(get(MARIADB_JDBC_BATCH_SIZE));
+		} catch (NumberFormatException ex) {
+			return 50;
+		}
+	}
+
 	// ----------------------------------------------------------------- //
 	// -------------------- Getters: Authentication -------------------- //
 	// ----------------------------------------------------------------- //
@@ -492,6 +896,202 @@ public class Configuration extends LinkedHashMap<String,String> {
 		else return get(EXTERNAL_VARIABLE_SERVICE_API_KEY);
 	}
 
+	/**
+	 * Returns the maximum number of milliseconds to wait for a connection to the External Variable
+	 * Service. The default is 5000.
+	 *
+	 * @return the connect timeout in milliseconds.
+	 */
+	public int getExternalVariableServiceConnectTimeoutMs() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_CONNECT_TIMEOUT_MS) == null) return 5000;
+		try {
+			return Integer.parseInt(get(EXTERNAL_VARIABLE_SERVICE_CONNECT_TIMEOUT_MS));
+		} catch (NumberFormatException ex) {
+			return 5000;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of milliseconds to wait for a response from the External Variable
+	 * Service. The default is 10000.
+	 *
+	 * @return the read timeout in milliseconds.
+	 */
+	public int getExternalVariableServiceReadTimeoutMs() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_READ_TIMEOUT_MS) == null) return 10000;
+		try {
+			return Integer.parseInt(get(EXTERNAL_VARIABLE_SERVICE_READ_TIMEOUT_MS));
+		} catch (NumberFormatException ex) {
+			return 10000;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of pooled connections to the External Variable Service. The
+	 * default is 20.
+	 *
+	 * @return the maximum number of connections.
+	 */
+	public int getExternalVariableServiceMaxConnections() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_MAX_CONNECTIONS) == null) return 20;
+		try {
+			return Integer.parseInt(get(EXTERNAL_VARIABLE_SERVICE_MAX_CONNECTIONS));
+		} catch (NumberFormatException ex) {
+			return 20;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of notifications for the External Variable Service that are
+	 * queued in memory. More notifications are written to disk. The default is 10000.
+	 *
+	 * @return the maximum number of queued notifications in memory.
+	 */
+	public int getExternalVariableServiceNotifyMaxQueued() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_NOTIFY_MAX_QUEUED) == null) return 10000;
+		try {
+			return Integer.parseInt(get(EXTERNAL_VARIABLE_SERVICE_NOTIFY_MAX_QUEUED));
+		} catch (NumberFormatException ex) {
+			return 10000;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of milliseconds between retries of a failed notification to the
+	 * External Variable Service. The default is 300000 (5 minutes).
+	 *
+	 * @return the maximum retry delay in milliseconds.
+	 */
+	public long getExternalVariableServiceNotifyMaxRetryDelayMs() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_NOTIFY_MAX_RETRY_DELAY_MS) == null) return 300000;
+		try {
+			return Long.parseLong(get(EXTERNAL_VARIABLE_SERVICE_NOTIFY_MAX_RETRY_DELAY_MS));
+		} catch (NumberFormatException ex) {
+			return 300000;
+		}
+	}
+
+	/**
+	 * Returns the number of milliseconds during which variables that were retrieved from the
+	 * External Variable Service for a user are not retrieved again. The default is 0, which means
+	 * that variables are retrieved at every dialogue start.
+	 *
+	 * @return the cache time in milliseconds.
+	 */
+	public long getExternalVariableServiceCacheTtlMs() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_CACHE_TTL_MS) == null) return 0;
+		try {
+			return Long.parseLong(get(EXTERNAL_VARIABLE_SERVICE_CACHE_TTL_MS));
+		} catch (NumberFormatException ex) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns whether a max-age in the Cache-Control header of a response from the External
+	 * Variable Service overrides the configured cache time (see {@link
+	 * #getExternalVariableServiceCacheTtlMs()}). The default is {@code false}.
+	 *
+	 * @return {@code true} if the max-age of the External Variable Service is used, {@code false}
+	 *         otherwise.
+	 */
+	public boolean getExternalVariableServiceCacheHonourMaxAge() {
+		return Boolean.parseBoolean(get(EXTERNAL_VARIABLE_SERVICE_CACHE_HONOUR_MAX_AGE));
+	}
+
+	/**
+	 * Returns whether the variables used in dialogues should be retrieved from the External
+	 * Variable Service in the background when a session begins (at /dialogue/get-ongoing), so
+	 * that a following dialogue start does not have to wait for them. This only has effect if
+	 * retrieved variables are cached (see {@link #getExternalVariableServiceCacheTtlMs()}). The
+	 * default is {@code false}.
+	 *
+	 * @return {@code true} if variables should be prefetched, {@code false} otherwise.
+	 */
+	public boolean getExternalVariableServicePrefetch() {
+		return Boolean.parseBoolean(get(EXTERNAL_VARIABLE_SERVICE_PREFETCH));
+	}
+
+	/**
+	 * Returns the number of milliseconds after which a call to the External Variable Service
+	 * counts as failed for the circuit breaker, even if it returned a result. This is also the
+	 * response timeout of retrieve-updates calls, if it is shorter than the read timeout (see
+	 * {@link #getExternalVariableServiceReadTimeoutMs()}). The default is 2000.
+	 *
+	 * @return the latency budget in milliseconds.
+	 */
+	public long getExternalVariableServiceLatencyBudgetMs() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_LATENCY_BUDGET_MS) == null) return 2000;
+		try {
+			return Long.parseLong(get(EXTERNAL_VARIABLE_SERVICE_LATENCY_BUDGET_MS));
+		} catch (NumberFormatException ex) {
+			return 2000;
+		}
+	}
+
+	/**
+	 * Returns the number of consecutive failed calls after which the circuit breaker for the
+	 * External Variable Service opens. The default is 5.
+	 *
+	 * @return the failure threshold of the circuit breaker.
+	 */
+	public int getExternalVariableServiceBreakerFailureThreshold() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_BREAKER_FAILURE_THRESHOLD) == null) return 5;
+		try {
+			return Integer.parseInt(get(EXTERNAL_VARIABLE_SERVICE_BREAKER_FAILURE_THRESHOLD));
+		} catch (NumberFormatException ex) {
+			return 5;
+		}
+	}
+
+	/**
+	 * Returns the number of milliseconds that the circuit breaker for the External Variable
+	 * Service stays open, before a trial call is allowed. The default is 30000.
+	 *
+	 * @return the open time of the circuit breaker in milliseconds.
+	 */
+	public long getExternalVariableServiceBreakerOpenMs() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_BREAKER_OPEN_MS) == null) return 30000;
+		try {
+			return Long.parseLong(get(EXTERNAL_VARIABLE_SERVICE_BREAKER_OPEN_MS));
+		} catch (NumberFormatException ex) {
+			return 30000;
+		}
+	}
+
+	/**
+	 * Returns the number of milliseconds during which retrieve-updates requests for different
+	 * users are collected into one batched request to the External Variable Service. Batching is
+	 * only used if the API version of the External Variable Service is 2 or higher. The default is
+	 * 5, and 0 disables batching.
+	 *
+	 * @return the batch window in milliseconds.
+	 */
+	public long getExternalVariableServiceBatchWindowMs() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_BATCH_WINDOW_MS) == null) return 5;
+		try {
+			return Long.parseLong(get(EXTERNAL_VARIABLE_SERVICE_BATCH_WINDOW_MS));
+		} catch (NumberFormatException ex) {
+			return 5;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of users in one batched retrieve-updates request to the External
+	 * Variable Service. A batch is sent as soon as it reaches this size. The default is 100.
+	 *
+	 * @return the maximum batch size.
+	 */
+	public int getExternalVariableServiceBatchMaxSize() {
+		if (get(EXTERNAL_VARIABLE_SERVICE_BATCH_MAX_SIZE) == null) return 100;
+		try {
+			return Integer.parseInt(get(EXTERNAL_VARIABLE_SERVICE_BATCH_MAX_SIZE));
+		} catch (NumberFormatException ex) {
+			return 100;
+		}
+	}
+
+
 	// ------------------------------------------------------------------
 	// -------------------- Getters: Azure Data Lake --------------------
 	// ------------------------------------------------------------------
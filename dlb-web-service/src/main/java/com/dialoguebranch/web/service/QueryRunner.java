@@ -32,6 +32,7 @@ import com.dialoguebranch.web.service.auth.AuthenticationInfo;
 import com.dialoguebranch.web.service.auth.basic.BasicUserCredentials;
 import com.dialoguebranch.web.service.auth.jwt.JWTUtils;
 import com.dialoguebranch.web.service.exception.*;
+import com.dialoguebranch.web.service.execution.ApplicationManager;
 import nl.rrd.utils.AppComponents;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
@@ -75,6 +76,9 @@ public class QueryRunner {
 		} catch (IllegalArgumentException ex) {
 			throw new BadRequestException("Unknown protocol version: " + versionName);
 		}
+		// UserServices that are used by the query must not be evicted until it has finished
+		ApplicationManager applicationManager = application.getApplicationManager();
+		applicationManager.beginRequest();
 		try {
 			AuthenticationInfo authenticationInfo = null;
 
@@ -115,6 +119,8 @@ public class QueryRunner {
 			Logger logger = AppComponents.getLogger(QueryRunner.class.getSimpleName());
             logger.error("Internal Server Error: {}", ex.getMessage(), ex);
 			throw new InternalServerErrorException();
+		} finally {
+			applicationManager.endRequest();
 		}
 	}
 
@@ -34,7 +34,9 @@ import com.dialoguebranch.web.service.exception.ErrorCode;
 import com.dialoguebranch.web.service.exception.InvalidRoleException;
 import com.dialoguebranch.web.service.exception.UnauthorizedException;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
@@ -62,6 +64,10 @@ public class KeycloakManager {
     /** Used for writing logging information */
     private final Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 
+    /** Thread-safe reader for the JSON header of access tokens, shared by all requests */
+    private static final ObjectReader HEADER_READER =
+            new ObjectMapper().readerFor(new TypeReference<Map<String,String>>() {});
+
     /** Used to access configuration parameters */
     private final Configuration config = Configuration.getInstance();
 
@@ -166,8 +172,7 @@ public class KeycloakManager {
             String headerJson = new String(Base64.getUrlDecoder().decode(parts[0]));
 
             // Convert JSON to a map
-            ObjectMapper objectMapper = new ObjectMapper();
-            Map<String,String> headerData = objectMapper.readValue(headerJson, Map.class);
+            Map<String,String> headerData = HEADER_READER.readValue(headerJson);
             keyId = headerData.get("kid");
         } catch(JsonProcessingException e) {
             throw new UnauthorizedException("Unable to parse JWT header.");
@@ -31,13 +31,21 @@ package com.dialoguebranch.web.service.controller;
 import com.dialoguebranch.model.FileDescriptor;
 import com.dialoguebranch.model.ResourceType;
 import com.dialoguebranch.web.service.Application;
+import com.dialoguebranch.web.service.Configuration;
 import com.dialoguebranch.web.service.ProtocolVersion;
 import com.dialoguebranch.web.service.QueryRunner;
 import com.dialoguebranch.web.service.auth.AuthenticationInfo;
 import com.dialoguebranch.web.service.auth.basic.BasicUserCredentials;
 import com.dialoguebranch.web.service.controller.schema.DialogueListPayload;
+import com.dialoguebranch.web.service.controller.schema.ServiceMetricsPayload;
 import com.dialoguebranch.web.service.exception.ErrorCode;
 import com.dialoguebranch.web.service.exception.UnauthorizedException;
+import com.dialoguebranch.web.service.execution.ApplicationManager;
+import com.dialoguebranch.web.service.services.DatabaseService;
+import com.dialoguebranch.web.service.storage.ExternalVariableNotifier;
+import com.dialoguebranch.web.service.storage.ExternalVariableServiceClient;
+import com.dialoguebranch.web.service.storage.VariableStoreWriter;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -45,6 +53,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import nl.rrd.utils.AppComponents;
+import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -156,4 +165,125 @@ public class AdminController {
         return new DialogueListPayload(scriptNames.toArray(new String[0]));
     }
 
+    // --------------------------------------------------------------------- //
+    // -------------------- END-POINT: "/admin/metrics" -------------------- //
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Retrieve runtime metrics about the resources used by the Web Service.
+     *
+     * <p>This method returns a JSON object with counters that describe how the running instance
+     * of this Dialogue Branch Web Service manages its in-memory state, such as the number of
+     * active user services and how often they are created and removed.</p>
+     *
+     * @param request the HTTPRequest object (to retrieve authentication headers and optional body
+     *                parameters).
+     * @param response the HTTP response (to add header WWW-Authenticate in case of a 401
+     *                 Unauthorized error).
+     * @param version The API Version to use, e.g. '1'.
+     * @return a {@link ServiceMetricsPayload} object containing the current metrics.
+     * @throws UnauthorizedException in case the logged-in user does not have admin rights.
+     */
+    @Operation(
+        summary = "Retrieve runtime metrics about the resources used by the Web Service.",
+        description = "This method returns a JSON object with counters that describe how the " +
+            "running instance of this Dialogue Branch Web Service manages its in-memory state, " +
+            "such as the number of active user services and how often they are created and " +
+            "removed. Only accessible for users with the 'admin' role.")
+    @RequestMapping(value="/metrics", method=RequestMethod.GET)
+    public ServiceMetricsPayload metrics(
+        HttpServletRequest request,
+        HttpServletResponse response,
+
+        @Parameter(hidden = true, description = "API Version to use, e.g. '1'")
+        @PathVariable(value = "version")
+        String version
+    ) throws UnauthorizedException {
+
+        // If no versionName is provided, or versionName is empty, assume the latest version
+        if (version == null || version.isEmpty()) {
+            version = ProtocolVersion.getLatestVersion().versionName();
+        }
+
+        // Log this call to the service log
+        String logInfo = "GET /v" + version + "/admin/metrics";
+        logger.info(logInfo);
+
+        AuthenticationInfo authenticationInfo = QueryRunner.validateAccessToken(
+                ControllerFunctions.extractAccessToken(request),application);
+        if(authenticationInfo.hasRole(BasicUserCredentials.USER_ROLE_ADMIN)) {
+            return doGetMetrics();
+        } else {
+            throw new UnauthorizedException(ErrorCode.INSUFFICIENT_PRIVILEGES,
+                "This user does not have the rights to access this function.");
+        }
+    }
+
+    /**
+     * Processes a call to the /admin/metrics end-point. Collects the current metrics from the
+     * {@link ApplicationManager} into a {@link ServiceMetricsPayload}.
+     *
+     * @return a {@link ServiceMetricsPayload} containing the current metrics.
+     */
+    private ServiceMetricsPayload doGetMetrics() {
+        ApplicationManager applicationManager = application.getApplicationManager();
+
+        ServiceMetricsPayload metrics = new ServiceMetricsPayload();
+        metrics.setActiveUserServices(applicationManager.getActiveUserServiceCount());
+        metrics.setUserServiceHits(applicationManager.getUserServiceHits());
+        metrics.setUserServiceMisses(applicationManager.getUserServiceMisses());
+        metrics.setUserServiceEvictions(applicationManager.getUserServiceEvictions());
+        metrics.setExternalVariableCacheHits(applicationManager.getExternalVariableCacheHits());
+        metrics.setExternalVariableCacheMisses(applicationManager.getExternalVariableCacheMisses());
+
+        if(Configuration.getInstance().getVariableStorage().equals(
+                Configuration.VARIABLE_STORAGE_DATABASE)) {
+            HikariPoolMXBean pool = DatabaseService.getConnectionPoolMXBean(
+                    AppComponents.get(SessionFactory.class));
+            if(pool != null) {
+                metrics.setDbPoolActiveConnections(pool.getActiveConnections());
+                metrics.setDbPoolIdleConnections(pool.getIdleConnections());
+                metrics.setDbPoolTotalConnections(pool.getTotalConnections());
+                metrics.setDbPoolThreadsAwaitingConnection(
+                        pool.getThreadsAwaitingConnection());
+            }
+        }
+
+        VariableStoreWriter variableStoreWriter = applicationManager.getVariableStoreWriter();
+        if(variableStoreWriter != null) {
+            metrics.setVariableWriteQueueDepth(variableStoreWriter.getPendingCount());
+            metrics.setVariableWriteCount(variableStoreWriter.getWriteCount());
+            metrics.setVariableWriteAverageLatencyMs(
+                    variableStoreWriter.getAverageWriteLatencyMs());
+            metrics.setVariableWriteMaxLatencyMs(variableStoreWriter.getMaxWriteLatencyMs());
+        }
+
+        ExternalVariableServiceClient externalVariableServiceClient =
+                applicationManager.getExternalVariableServiceClient();
+        if(externalVariableServiceClient != null) {
+            metrics.setExternalVariableServiceLeasedConnections(
+                    externalVariableServiceClient.getLeasedConnections());
+            metrics.setExternalVariableServiceAvailableConnections(
+                    externalVariableServiceClient.getAvailableConnections());
+            metrics.setExternalVariableServicePendingConnections(
+                    externalVariableServiceClient.getPendingConnections());
+        }
+
+        ExternalVariableNotifier externalVariableNotifier =
+                applicationManager.getExternalVariableNotifier();
+        if(externalVariableNotifier != null) {
+            metrics.setExternalVariableNotificationQueueDepth(
+                    externalVariableNotifier.getQueueDepth());
+            metrics.setExternalVariableNotificationSpilled(
+                    externalVariableNotifier.getSpilledCount());
+            metrics.setExternalVariableNotificationDelivered(
+                    externalVariableNotifier.getDeliveredCount());
+            metrics.setExternalVariableNotificationRetries(
+                    externalVariableNotifier.getRetryCount());
+            metrics.setExternalVariableNotificationLagMs(
+                    externalVariableNotifier.getDeliveryLagMs());
+        }
+        return metrics;
+    }
+
 }
@@ -43,6 +43,7 @@ import com.dialoguebranch.web.service.QueryRunner;
 import com.dialoguebranch.web.service.controller.schema.OngoingDialoguePayload;
 import com.dialoguebranch.web.service.exception.BadRequestException;
 import com.dialoguebranch.web.service.exception.HttpException;
+import com.dialoguebranch.web.service.execution.ApplicationManager;
 import com.dialoguebranch.web.service.execution.UserService;
 import com.dialoguebranch.web.service.storage.ServerLoggedDialogue;
 import io.swagger.v3.oas.annotations.Operation;
@@ -63,6 +64,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.DateTimeException;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.LinkedHashMap;
@@ -378,13 +380,7 @@ public class DialogueController {
 			}
 		}
 		try {
-			UserService userService
-					= application.getApplicationManager().getActiveUserService(userId);
-			if(userService == null) {
-				throw new BadRequestException("Attempting to progress a dialogue for a user ('" +
-					userId + "') that isn't active. A session of interaction should start with a " +
-					"call to the 'start' or 'continue' end-points.");
-			}
+			UserService userService = getOrRestoreUserService(userId, loggedDialogueId);
 
 			ZonedDateTime eventTime = DateTimeUtils.nowMs(userService.getDialogueBranchUser()
 					.getTimeZone());
@@ -624,18 +620,11 @@ public class DialogueController {
 	 * @return {@code null}
 	 * @throws DatabaseException in case of an error in retrieving the specified dialogue.
 	 * @throws IOException in case of any network error.
-	 * @throws BadRequestException if attempting to cancel a dialogue for a user that isn't active
 	 */
 	private Object doCancelDialogue(String userId, String loggedDialogueId)
-            throws DatabaseException, IOException, BadRequestException {
+            throws DatabaseException, IOException {
 
-		UserService userService
-				= application.getApplicationManager().getActiveUserService(userId);
-		if(userService == null) {
-			throw new BadRequestException("Attempting to cancel a dialogue for a user ('" +
-					userId + "') that isn't active. A session of interaction should start with a " +
-					"call to the 'start' or 'continue' end-points.");
-		}
+		UserService userService = getOrRestoreUserService(userId, loggedDialogueId);
 
 		userService.cancelDialogueSession(loggedDialogueId);
 		return null;
@@ -757,13 +746,7 @@ public class DialogueController {
 			throws HttpException, DatabaseException, IOException {
 
 		try {
-			UserService userService
-					= application.getApplicationManager().getActiveUserService(userId);
-			if(userService == null) {
-				throw new BadRequestException("Attempting to take a step back a dialogue for a " +
-					"user ('" + userId + "') that isn't active. A session of interaction should " +
-					"start with a call to the 'start' or 'continue' end-points.");
-			}
+			UserService userService = getOrRestoreUserService(userId, loggedDialogueId);
 
 			// Determine the event time stamp
 			ZonedDateTime backDialogueEventTime =
@@ -884,6 +867,9 @@ public class DialogueController {
 				.getOrCreateActiveUserService(userId,timeZoneId);
 		userService.getDialogueBranchUser().setTimeZone(timeZoneId);
 
+		// A session begins, so prepare the variables for the next dialogue start
+		application.getApplicationManager().prefetchExternalVariables(userService);
+
 		ServerLoggedDialogue latestOngoingDialogue =
 				userService.getLoggedDialogueStore().findLatestOngoingDialogue();
 
@@ -901,4 +887,42 @@ public class DialogueController {
 		}
 	}
 
+	// ------------------------------------------------------------------ //
+	// -------------------- Private Helper Functions -------------------- //
+	// ------------------------------------------------------------------ //
+
+	/**
+	 * Returns the active {@link UserService} for the given {@code userId}. End-points that act on
+	 * an existing dialogue (progress, back, cancel) expect the user to be active already, but the
+	 * {@link UserService} may have been removed from memory after being idle. In that case a new
+	 * {@link UserService} is created, in the time zone that was logged for the dialogue identified
+	 * by {@code loggedDialogueId}, so that the user can pick up the dialogue where it was left.
+	 *
+	 * @param userId the identifier of the user.
+	 * @param loggedDialogueId the identifier of the logged dialogue that the request refers to.
+	 * @return the {@link UserService} for the user.
+	 * @throws DatabaseException in case of an error restoring the {@link UserService}.
+	 * @throws IOException in case of an error restoring the {@link UserService}.
+	 */
+	private UserService getOrRestoreUserService(String userId, String loggedDialogueId)
+			throws DatabaseException, IOException {
+		ApplicationManager applicationManager = application.getApplicationManager();
+		boolean active = applicationManager.getActiveUserService(userId) != null;
+		UserService userService = applicationManager.getOrCreateActiveUserService(userId);
+		if(active) return userService;
+
+		ServerLoggedDialogue loggedDialogue =
+				userService.getLoggedDialogueStore().findLoggedDialogue(loggedDialogueId);
+		if(loggedDialogue != null && loggedDialogue.getTimezone() != null) {
+			try {
+				userService.getDialogueBranchUser().setTimeZone(
+						ZoneId.of(loggedDialogue.getTimezone()));
+			} catch(DateTimeException e) {
+				logger.warn("Unable to restore time zone '{}' for user '{}': {}",
+						loggedDialogue.getTimezone(), userId, e.getMessage());
+			}
+		}
+		return userService;
+	}
+
 }
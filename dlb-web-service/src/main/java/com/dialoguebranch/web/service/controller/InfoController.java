@@ -34,6 +34,8 @@ import com.dialoguebranch.web.service.Application;
 import com.dialoguebranch.web.service.ProtocolVersion;
 import com.dialoguebranch.web.service.ServiceContext;
 import com.dialoguebranch.web.service.Configuration;
+import com.dialoguebranch.web.service.storage.ExternalVariableServiceCircuitBreaker;
+import com.dialoguebranch.web.service.storage.ExternalVariableServiceClient;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -85,6 +87,9 @@ public class InfoController {
 	 * 		<li>serviceVersion - software version of the service</li>
 	 * 		<li>upTime - string showing days, hours and minutes since the service was launched</li>
 	 * </ul>
+	 * If an external variable service is enabled, it also returns the state of its circuit
+	 * breaker (externalVariableServiceState) and how often it opened
+	 * (externalVariableServiceTrips).
 	 * </p>
 	 *
 	 * @param version The API version to use, e.g. '1'.
@@ -97,7 +102,9 @@ public class InfoController {
 			" <li>protocolVersion - latest supported API Protocol version</li>" +
 			" <li>serviceVersion - software version of the service</li>" +
 			" <li>upTime - string showing days, hours and minutes since the service was launched " +
-			"</li></ul>")
+			"</li></ul> If an external variable service is enabled, it also returns the state of " +
+			"its circuit breaker (externalVariableServiceState) and how often it opened " +
+			"(externalVariableServiceTrips).")
 	@Parameter(name = "version", hidden = true)
 	@GetMapping("/all")
 	public ServiceInfoPayload all(
@@ -125,11 +132,22 @@ public class InfoController {
 		long minutes = TimeUnit.MILLISECONDS.toMinutes(upTimeMillis);
 		String upTimeString = days + "d " + hours + "h " + minutes + "m";
 
-		return new ServiceInfoPayload(
+		ServiceInfoPayload serviceInfo = new ServiceInfoPayload(
 				Configuration.getInstance().get(Configuration.BUILD_TIME),
 				ServiceContext.getCurrentVersion(),
 				Configuration.getInstance().get(Configuration.VERSION),
 				upTimeString);
+
+		// Add the state of the external variable service, if enabled
+		ExternalVariableServiceClient externalVariableServiceClient =
+				application.getApplicationManager().getExternalVariableServiceClient();
+		if(externalVariableServiceClient != null) {
+			ExternalVariableServiceCircuitBreaker circuitBreaker =
+					externalVariableServiceClient.getCircuitBreaker();
+			serviceInfo.setExternalVariableServiceState(circuitBreaker.getState().name());
+			serviceInfo.setExternalVariableServiceTrips(circuitBreaker.getTripCount());
+		}
+		return serviceInfo;
 	}
 
 }
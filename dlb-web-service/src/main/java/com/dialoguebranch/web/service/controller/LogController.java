@@ -28,10 +28,10 @@
 
 package com.dialoguebranch.web.service.controller;
 
-import com.dialoguebranch.web.service.execution.UserService;
 import com.dialoguebranch.web.service.Application;
 import com.dialoguebranch.web.service.ProtocolVersion;
 import com.dialoguebranch.web.service.QueryRunner;
+import com.dialoguebranch.web.service.storage.LoggedDialogueStore;
 import com.dialoguebranch.web.service.storage.ServerLoggedDialogue;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -120,11 +120,13 @@ public class LogController {
 	private List<ServerLoggedDialogue> doGetSession(String userId, String sessionId)
             throws DatabaseException, IOException {
 
-		// Get or create a UserService for the user in the default time zone
-		UserService userService = application.getApplicationManager()
-				.getOrCreateActiveUserService(userId);
+		// Read the logs without creating a UserService for the user
+		LoggedDialogueStore loggedDialogueStore = application.getApplicationManager()
+				.getLoggedDialogueStoreForReading(userId);
 
-		return userService.getDialogueSessionLog(sessionId);
+		logger.info("Getting dialogue log session data for user '{}' and sessionId '{}'.",
+				userId, sessionId);
+		return loggedDialogueStore.readSession(sessionId);
 	}
 
 	// --------------------------------------------------------------------- //
@@ -186,11 +188,11 @@ public class LogController {
 	private Boolean doVerifyId(String userId, String sessionId)
 			throws DatabaseException, IOException {
 
-		// Get or create a UserService for the user in the default time zone
-		UserService userService = application.getApplicationManager()
-				.getOrCreateActiveUserService(userId);
+		// Read the logs without creating a UserService for the user
+		LoggedDialogueStore loggedDialogueStore = application.getApplicationManager()
+				.getLoggedDialogueStoreForReading(userId);
 
-		return userService.existsSessionId(sessionId);
+		return loggedDialogueStore.existsSessionId(sessionId);
 	}
 
 }
@@ -34,11 +34,17 @@ import com.dialoguebranch.execution.VariableStoreChange;
 import com.dialoguebranch.web.service.Application;
 import com.dialoguebranch.web.service.ProtocolVersion;
 import com.dialoguebranch.web.service.QueryRunner;
+import com.dialoguebranch.web.service.auth.AuthenticationInfo;
+import com.dialoguebranch.web.service.auth.basic.BasicUserCredentials;
 import com.dialoguebranch.web.service.exception.BadRequestException;
 import com.dialoguebranch.web.service.exception.ErrorCode;
 import com.dialoguebranch.web.service.exception.HttpError;
 import com.dialoguebranch.web.service.exception.HttpFieldError;
+import com.dialoguebranch.web.service.exception.UnauthorizedException;
 import com.dialoguebranch.web.service.execution.UserService;
+import com.dialoguebranch.web.service.storage.VariableStoreStorageHandler;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -47,9 +53,10 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.datetime.DateTimeUtils;
-import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.ParseException;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
@@ -71,9 +78,18 @@ import java.util.*;
 		"Variables.")
 public class VariablesController {
 
+	/** The maximum number of users in a bulk request */
+	private static final int BULK_MAX_USERS = 10000;
+
+	/** The number of users that are read from storage at once in a bulk request */
+	private static final int BULK_CHUNK_SIZE = 100;
+
 	@Autowired
 	Application application;
 
+	@Autowired
+	ObjectMapper objectMapper;
+
 	private final Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 
 	// -------------------------------------------------------- //
@@ -177,46 +193,34 @@ public class VariablesController {
 	 * variableNames} string should be a 'space-separated' list of valid DialogueBranch Variable
 	 * names (e.g. "variable1 variable_two variable-three").
 	 *
+	 * <p>If a {@link UserService} is active for the user, the variables are taken from its {@link
+	 * VariableStore}. Otherwise, they are read directly from storage, so that reading variables
+	 * does not load the user into memory.</p>
+	 *
 	 * @param userId the DialogueBranch user for which to retrieve variable data.
 	 * @param variableNames a space-separated list of variable names, or the empty string
 	 * @param timeZone The current time zone of the Dialogue Branch user (presented as an IANA
 	 *                 String, e.g. 'Europe/Lisbon').
 	 * @return a mapping of variable names to variable values
-	 * @throws IOException in case of an error in generating the UserService.
-	 * @throws DatabaseException in case of an error in generating the UserService.
+	 * @throws IOException in case of an error reading the variables.
+	 * @throws ParseException in case the stored variables could not be understood.
 	 * @throws BadRequestException in case of a malformed or unknown {@code timeZone}.
 	 */
 	private List<Variable> doGetVariables(String userId, String variableNames, String timeZone)
-            throws IOException, DatabaseException, BadRequestException {
+            throws IOException, ParseException, BadRequestException {
 
-		// Get or create a UserService for the user in the given time zone
 		ZoneId timeZoneId = ControllerFunctions.parseTimeZone(timeZone);
-		UserService userService = application.getApplicationManager()
-				.getOrCreateActiveUserService(userId,timeZoneId);
-		userService.getDialogueBranchUser().setTimeZone(timeZoneId);
-
-		VariableStore variableStore = userService.getVariableStore();
+		List<String> nameList = parseVariableNames(variableNames, "names");
 
-		variableNames = variableNames.trim();
+		UserService userService =
+				application.getApplicationManager().getActiveUserService(userId);
+		if (userService == null)
+			return readStoredVariables(userId, nameList);
 
-		List<String> nameList;
-		if (variableNames.isEmpty()) {
+		userService.getDialogueBranchUser().setTimeZone(timeZoneId);
+		VariableStore variableStore = userService.getVariableStore();
+		if (nameList.isEmpty())
 			nameList = variableStore.getSortedVariableNames();
-		} else {
-			List<String> invalidNames = new ArrayList<>();
-			String[] nameArray = variableNames.split("\\s+");
-			for (String name : nameArray) {
-				if (!name.matches("[A-Za-z]\\w*"))
-					invalidNames.add(name);
-			}
-			if (!invalidNames.isEmpty()) {
-				HttpFieldError error = new HttpFieldError("names",
-						"Invalid variable names: " +
-								String.join(", ", invalidNames));
-				throw BadRequestException.withInvalidInput(error);
-			}
-			nameList = Arrays.asList(nameArray);
-		}
 
 		List<Variable> result = new ArrayList<>();
 
@@ -227,6 +231,40 @@ public class VariablesController {
 		return result;
 	}
 
+	/**
+	 * Reads the variables with the given {@code variableNames} of the given user directly from
+	 * storage. The result is the same as for an active user: the variables in the order of the
+	 * given names (with {@code null} for unknown variables), or all variables sorted by name if no
+	 * names are given.
+	 *
+	 * @param userId the DialogueBranch user for which to retrieve variable data.
+	 * @param variableNames the variable names, or an empty list for all variables.
+	 * @return the variables.
+	 * @throws IOException in case of an error reading the variables.
+	 * @throws ParseException in case the stored variables could not be understood.
+	 */
+	private List<Variable> readStoredVariables(String userId, List<String> variableNames)
+			throws IOException, ParseException {
+		Map<String, Variable> storedVariables = new HashMap<>();
+		for (Variable variable : application.getApplicationManager()
+				.getVariableStoreStorageHandler()
+				.readVariables(List.of(userId), variableNames).get(userId)) {
+			storedVariables.put(variable.getName(), variable);
+		}
+
+		List<String> nameList = variableNames;
+		if (nameList.isEmpty()) {
+			nameList = new ArrayList<>(storedVariables.keySet());
+			Collections.sort(nameList);
+		}
+
+		List<Variable> result = new ArrayList<>();
+		for (String variableName : nameList) {
+			result.add(storedVariables.get(variableName));
+		}
+		return result;
+	}
+
 	// ---------------------------------------------------------------------------- //
 	// -------------------- END-POINT: "/variables/set-single" -------------------- //
 	// ---------------------------------------------------------------------------- //
@@ -464,16 +502,316 @@ public class VariablesController {
 				.getOrCreateActiveUserService(userId,timeZoneId);
 		userService.getDialogueBranchUser().setTimeZone(timeZoneId);
 
+		// Set all variables at once, so that they are stored as a single change
 		VariableStore variableStore = userService.getVariableStore();
-		for(Map.Entry<String, Object> entry : variables.entrySet()) {
-			variableStore.setValue(
-					entry.getKey(),
-					entry.getValue(),
-					true,
-					DateTimeUtils.nowMs(userService.getDialogueBranchUser().getTimeZone()),
-					VariableStoreChange.Source.WEB_SERVICE);
+		variableStore.addAll(variables, true,
+				DateTimeUtils.nowMs(userService.getDialogueBranchUser().getTimeZone()),
+				VariableStoreChange.Source.WEB_SERVICE);
+		return null;
+	}
+
+	// -------------------------------------------------------------------------- //
+	// -------------------- END-POINT: "/variables/bulk-get" -------------------- //
+	// -------------------------------------------------------------------------- //
+
+	/**
+	 * Retrieve Dialogue Branch variables for many users at once (admin only).
+	 *
+	 * <p>Use this end-point in batch jobs that need the variables of many users. The variables are
+	 * read directly from storage, without loading the users into memory, and the result is
+	 * returned as a JSON object with a "users" list (each with a "userId" and its "variables") and
+	 * a "next" field. Either provide a list of user IDs, or page through all users: if "next" is
+	 * not {@code null}, pass it as the "after" parameter to retrieve the next page.</p>
+	 *
+	 * @param request the {@link HttpServletRequest} object containing information on the HTTP
+	 *                request.
+	 * @param response the {@link HttpServletResponse} object to which the result is written.
+	 * @param version the API Version to use, e.g. '1'.
+	 * @param variableNames A space-separated list of Dialogue Branch variable names, or leave empty
+	 *                      to retrieve all known variables.
+	 * @param userIds A space-separated list of user IDs, or leave empty to page through all users.
+	 * @param after The user ID after which the page starts (the "next" value of the previous page),
+	 *              or leave empty to start at the first user.
+	 * @param limit The maximum number of users to return (at most {@link #BULK_MAX_USERS}).
+	 * @throws Exception in case of a network error, internal error, or e.g. authentication error.
+	 */
+	@Operation(
+		summary = "Retrieve Dialogue Branch variables for many users at once.",
+		description = "Use this end-point in batch jobs that need the variables of many users. " +
+			"The variables are read directly from storage. Either " +
+			"provide a list of user IDs, or page through all users by passing the returned " +
+			"'next' value as the 'after' parameter. Only accessible for users with the 'admin' " +
+			"role.")
+	@RequestMapping(value="/bulk-get", method=RequestMethod.GET)
+	public void bulkGetVariables(
+		HttpServletRequest request,
+		HttpServletResponse response,
+
+		@Parameter(hidden = true, description = "API Version to use, e.g. '1'")
+		@PathVariable(value = "version")
+		String version,
+
+		@Parameter(description = "A space-separated list of Dialogue Branch variable names, or " +
+			"leave empty to retrieve all known variables")
+		@RequestParam(value="variableNames", required=false)
+		String variableNames,
+
+		@Parameter(description = "A space-separated list of user IDs, or leave empty to page " +
+			"through all users")
+		@RequestParam(value="userIds", required=false)
+		String userIds,
+
+		@Parameter(description = "The user ID after which the page starts (the 'next' value of " +
+			"the previous page)")
+		@RequestParam(value="after", required=false)
+		String after,
+
+		@Parameter(description = "The maximum number of users to return")
+		@RequestParam(value="limit", required=false, defaultValue="1000")
+		int limit) throws Exception {
+
+		// If no versionName is provided, or versionName is empty, assume the latest version
+		if (version == null || version.isEmpty()) {
+			version = ProtocolVersion.getLatestVersion().versionName();
+		}
+
+		// Log this call to the service log
+		logger.info("GET /v{}/variables/bulk-get?variableNames={}&after={}&limit={}", version,
+				variableNames, after, limit);
+
+		// Extract the access token, and throw an exception if it is not provided correctly
+		String accessToken = ControllerFunctions.extractAccessToken(request);
+
+		QueryRunner.runQuery((protocolVersion, user) -> {
+			validateAdmin(accessToken);
+			return doBulkGetVariables(response, variableNames, userIds, after, limit);
+		}, version, accessToken, response, null, application);
+	}
+
+	/**
+	 * Processes a call to the /variables/bulk-get end-point. Reads the variables with the given
+	 * {@code variableNames} of the given users, or of a page of all users, and writes them to the
+	 * given {@code response}. Users are read from storage in chunks of {@link #BULK_CHUNK_SIZE}.
+	 * The complete page is read before anything is written, so that an error while reading
+	 * results in an error response instead of an incomplete result.
+	 *
+	 * @param response the {@link HttpServletResponse} to write to.
+	 * @param variableNames a space-separated list of variable names, or {@code null} for all
+	 *                      variables.
+	 * @param userIds a space-separated list of user IDs, or {@code null} to page through all users.
+	 * @param after the user ID after which the page starts, or {@code null}.
+	 * @param limit the maximum number of users in the page.
+	 * @return {@code null}
+	 * @throws BadRequestException in case of invalid parameters.
+	 * @throws IOException in case of an error reading from storage or writing the response.
+	 * @throws ParseException in case the stored variables of a user could not be understood.
+	 */
+	private Object doBulkGetVariables(HttpServletResponse response, String variableNames,
+			String userIds, String after, int limit)
+			throws BadRequestException, IOException, ParseException {
+		List<String> nameList = parseVariableNames(variableNames, "variableNames");
+		List<String> userIdList = null;
+		if (userIds != null && !userIds.isBlank())
+			userIdList = Arrays.asList(userIds.trim().split("\\s+"));
+
+		if (limit < 1 || limit > BULK_MAX_USERS) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError("limit",
+					"Limit must be between 1 and " + BULK_MAX_USERS + ": " + limit));
+		}
+		if (userIdList != null && userIdList.size() > BULK_MAX_USERS) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError("userIds",
+					"At most " + BULK_MAX_USERS + " user IDs can be given"));
+		}
+
+		VariableStoreStorageHandler storageHandler =
+				application.getApplicationManager().getVariableStoreStorageHandler();
+		Map<String, List<Variable>> userVariables = new LinkedHashMap<>();
+		String next = null;
+		if (userIdList != null) {
+			for (int i = 0; i < userIdList.size(); i += BULK_CHUNK_SIZE) {
+				List<String> chunk = userIdList.subList(i,
+						Math.min(i + BULK_CHUNK_SIZE, userIdList.size()));
+				userVariables.putAll(storageHandler.readVariables(chunk, nameList));
+			}
+		} else {
+			String last = after;
+			int remaining = limit;
+			while (remaining > 0) {
+				List<String> chunk = storageHandler.readUserIds(last,
+						Math.min(BULK_CHUNK_SIZE, remaining));
+				if (chunk.isEmpty())
+					break;
+				userVariables.putAll(storageHandler.readVariables(chunk, nameList));
+				remaining -= chunk.size();
+				last = chunk.get(chunk.size() - 1);
+			}
+			if (remaining == 0)
+				next = last;
+		}
+
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("users");
+			for (Map.Entry<String, List<Variable>> entry : userVariables.entrySet()) {
+				generator.writeStartObject();
+				generator.writeStringField("userId", entry.getKey());
+				generator.writeFieldName("variables");
+				generator.writeObject(entry.getValue());
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+			generator.writeStringField("next", next);
+			generator.writeEndObject();
 		}
 		return null;
 	}
 
+	// -------------------------------------------------------------------------- //
+	// -------------------- END-POINT: "/variables/bulk-set" -------------------- //
+	// -------------------------------------------------------------------------- //
+
+	/**
+	 * Set Dialogue Branch variables for many users at once (admin only).
+	 *
+	 * <p>Use this end-point in batch jobs that need to set variables for many users. The request
+	 * body maps user IDs to a map of variable names and values. Users that are not currently
+	 * active are not loaded into memory: their changes are written directly to storage.</p>
+	 *
+	 * @param request the {@link HttpServletRequest} object containing information on the HTTP
+	 *                request.
+	 * @param response the {@link HttpServletResponse} object containing information on the HTTP
+	 *                 response that can be returned to the client.
+	 * @param version the API Version to use, e.g. '1'.
+	 * @param timeZone The time zone in which the variables are updated (presented as an IANA
+	 *                 String, e.g. 'Europe/Lisbon'), or leave empty for the server's time zone.
+	 * @param userVariables A mapping from user IDs to the variables (name to value) to set.
+	 * @throws Exception in case of a network error, internal error, or e.g. authentication error.
+	 */
+	@Operation(
+		summary = "Set Dialogue Branch variables for many users at once.",
+		description = "Use this end-point in batch jobs that need to set variables for many " +
+			"users. The request body maps user IDs to a map of variable names and values. " +
+			"Only accessible for users with the 'admin' role.")
+	@RequestMapping(value="/bulk-set", method=RequestMethod.POST)
+	public void bulkSetVariables(
+		HttpServletRequest request,
+		HttpServletResponse response,
+
+		@Parameter(hidden = true, description = "API Version to use, e.g. '1'")
+		@PathVariable(value = "version")
+		String version,
+
+		@Parameter(description = "The time zone in which the variables are updated (as IANA, " +
+			"e.g. 'Europe/Lisbon')")
+		@RequestParam(value="timeZone", required=false)
+		String timeZone,
+
+		@Parameter(description = "A JSON mapping of user IDs to a mapping of Dialogue Branch " +
+			"Variable names to values")
+		@RequestBody
+		Map<String, Map<String, Object>> userVariables) throws Exception {
+
+		// If no versionName is provided, or versionName is empty, assume the latest version
+		if (version == null || version.isEmpty()) {
+			version = ProtocolVersion.getLatestVersion().versionName();
+		}
+
+		// Log this call to the service log
+		logger.info("POST /v{}/variables/bulk-set?timeZone={} for {} users", version, timeZone,
+				userVariables.size());
+
+		// Extract the access token, and throw an exception if it is not provided correctly
+		String accessToken = ControllerFunctions.extractAccessToken(request);
+
+		QueryRunner.runQuery((protocolVersion, user) -> {
+			validateAdmin(accessToken);
+			return doBulkSetVariables(userVariables, timeZone);
+		}, version, accessToken, response, null, application);
+	}
+
+	/**
+	 * Processes a call to the /variables/bulk-set end-point. Sets the given variables for every
+	 * user. The changes of users that are not active are written directly to storage.
+	 *
+	 * @param userVariables a mapping from user IDs to the variables (name to value) to set.
+	 * @param timeZone the time zone in which the variables are updated, or {@code null} for the
+	 *                 server's time zone.
+	 * @return {@code null}
+	 * @throws BadRequestException in case of invalid parameters.
+	 * @throws IOException in case of an error writing to storage.
+	 * @throws ParseException in case the stored variables of a user could not be understood.
+	 */
+	private Object doBulkSetVariables(Map<String, Map<String, Object>> userVariables,
+			String timeZone) throws BadRequestException, IOException, ParseException {
+		if (userVariables.size() > BULK_MAX_USERS) {
+			throw new BadRequestException("At most " + BULK_MAX_USERS +
+					" users can be updated at once");
+		}
+		List<String> invalidNames = new ArrayList<>();
+		for (Map<String, Object> variables : userVariables.values()) {
+			for (String name : variables.keySet()) {
+				if (!name.matches("[A-Za-z]\\w*"))
+					invalidNames.add(name);
+			}
+		}
+		if (!invalidNames.isEmpty()) {
+			HttpError error = new HttpError(ErrorCode.INVALID_INPUT,
+					"Invalid variable names: " + String.join(", ", invalidNames));
+			throw new BadRequestException(error);
+		}
+		ZoneId timeZoneId = ControllerFunctions.parseTimeZone(timeZone);
+
+		for (Map.Entry<String, Map<String, Object>> entry : userVariables.entrySet()) {
+			application.getApplicationManager().setUserVariables(entry.getKey(),
+					entry.getValue(), DateTimeUtils.nowMs(timeZoneId));
+		}
+		return null;
+	}
+
+	// -------------------------------------------------------------- //
+	// -------------------- Other Helper Methods -------------------- //
+	// -------------------------------------------------------------- //
+
+	/**
+	 * Checks that the given {@code accessToken} belongs to a user with the admin role.
+	 *
+	 * @param accessToken the access token.
+	 * @throws UnauthorizedException in case the user is not authenticated or not an admin.
+	 */
+	private void validateAdmin(String accessToken) throws UnauthorizedException {
+		AuthenticationInfo authenticationInfo = QueryRunner.validateAccessToken(accessToken,
+				application);
+		if (!authenticationInfo.hasRole(BasicUserCredentials.USER_ROLE_ADMIN)) {
+			throw new UnauthorizedException(ErrorCode.INSUFFICIENT_PRIVILEGES,
+					"This user does not have the rights to access this function.");
+		}
+	}
+
+	/**
+	 * Parses the given space-separated list of {@code variableNames}.
+	 *
+	 * @param variableNames a space-separated list of variable names, or {@code null}.
+	 * @param fieldName the name of the field in the error in case of an invalid variable name.
+	 * @return the variable names (an empty list if none are given).
+	 * @throws BadRequestException in case of an invalid variable name.
+	 */
+	private List<String> parseVariableNames(String variableNames, String fieldName)
+			throws BadRequestException {
+		if (variableNames == null || variableNames.isBlank())
+			return new ArrayList<>();
+		List<String> invalidNames = new ArrayList<>();
+		String[] nameArray = variableNames.trim().split("\\s+");
+		for (String name : nameArray) {
+			if (!name.matches("[A-Za-z]\\w*"))
+				invalidNames.add(name);
+		}
+		if (!invalidNames.isEmpty()) {
+			HttpFieldError error = new HttpFieldError(fieldName,
+					"Invalid variable names: " + String.join(", ", invalidNames));
+			throw BadRequestException.withInvalidInput(error);
+		}
+		return Arrays.asList(nameArray);
+	}
+
 }
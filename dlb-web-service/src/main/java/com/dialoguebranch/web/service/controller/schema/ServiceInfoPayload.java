@@ -28,6 +28,7 @@
 
 package com.dialoguebranch.web.service.controller.schema;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
@@ -54,6 +55,18 @@ public class ServiceInfoPayload {
 			example = "1d 12h 34m")
 	private String upTime;
 
+	@Schema(description = "The state of the circuit breaker for the external variable service " +
+			"(CLOSED, OPEN or HALF_OPEN), or absent if no external variable service is enabled",
+			example = "CLOSED")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String externalVariableServiceState = null;
+
+	@Schema(description = "The number of times that the circuit breaker for the external " +
+			"variable service opened, or absent if no external variable service is enabled",
+			example = "0")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private Long externalVariableServiceTrips = null;
+
 	// --------------------------------------------------------
 	// -------------------- Constructor(s) --------------------
 	// --------------------------------------------------------
@@ -150,4 +163,39 @@ public class ServiceInfoPayload {
 		this.upTime = upTime;
 	}
 
+	/**
+	 * Returns the state of the circuit breaker for the external variable service, or {@code null}
+	 * if no external variable service is enabled.
+	 * @return the state of the circuit breaker for the external variable service, or {@code null}.
+	 */
+	public String getExternalVariableServiceState() {
+		return externalVariableServiceState;
+	}
+
+	/**
+	 * Sets the state of the circuit breaker for the external variable service.
+	 * @param externalVariableServiceState the state of the circuit breaker, or {@code null}.
+	 */
+	public void setExternalVariableServiceState(String externalVariableServiceState) {
+		this.externalVariableServiceState = externalVariableServiceState;
+	}
+
+	/**
+	 * Returns the number of times that the circuit breaker for the external variable service
+	 * opened, or {@code null} if no external variable service is enabled.
+	 * @return the number of times that the circuit breaker opened, or {@code null}.
+	 */
+	public Long getExternalVariableServiceTrips() {
+		return externalVariableServiceTrips;
+	}
+
+	/**
+	 * Sets the number of times that the circuit breaker for the external variable service opened.
+	 * @param externalVariableServiceTrips the number of times that the circuit breaker opened, or
+	 *                                     {@code null}.
+	 */
+	public void setExternalVariableServiceTrips(Long externalVariableServiceTrips) {
+		this.externalVariableServiceTrips = externalVariableServiceTrips;
+	}
+
 }
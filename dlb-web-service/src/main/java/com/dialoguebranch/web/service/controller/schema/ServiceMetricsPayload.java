@@ -0,0 +1,502 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dialoguebranch.web.service.controller.schema;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * A {@link ServiceMetricsPayload} object contains runtime metrics about the resources used by a
+ * running Dialogue Branch Web Service instance, as returned by the /admin/metrics end-point.
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class ServiceMetricsPayload {
+
+	@Schema(description = "The number of users for which a user service is currently kept in memory",
+			example = "42")
+	private int activeUserServices;
+
+	@Schema(description = "The number of requests that found the user service already in memory",
+			example = "1024")
+	private long userServiceHits;
+
+	@Schema(description = "The number of requests for which a user service had to be created",
+			example = "64")
+	private long userServiceMisses;
+
+	@Schema(description = "The number of user services that were removed from memory",
+			example = "22")
+	private long userServiceEvictions;
+
+	@Schema(description = "The number of database connections that are currently in use",
+			example = "4")
+	private int dbPoolActiveConnections;
+
+	@Schema(description = "The number of idle database connections in the pool",
+			example = "6")
+	private int dbPoolIdleConnections;
+
+	@Schema(description = "The total number of database connections in the pool",
+			example = "10")
+	private int dbPoolTotalConnections;
+
+	@Schema(description = "The number of threads waiting for a database connection",
+			example = "0")
+	private int dbPoolThreadsAwaitingConnection;
+
+	@Schema(description = "The number of variable changes that are buffered and not yet written",
+			example = "12")
+	private int variableWriteQueueDepth;
+
+	@Schema(description = "The number of buffered variable writes since the start of the service",
+			example = "5231")
+	private long variableWriteCount;
+
+	@Schema(description = "The average duration of a buffered variable write in milliseconds",
+			example = "3.2")
+	private double variableWriteAverageLatencyMs;
+
+	@Schema(description = "The longest duration of a buffered variable write in milliseconds",
+			example = "48.7")
+	private double variableWriteMaxLatencyMs;
+
+	@Schema(description = "The number of connections to the external variable service that are " +
+			"currently in use", example = "2")
+	private int externalVariableServiceLeasedConnections;
+
+	@Schema(description = "The number of idle (keep-alive) connections to the external variable " +
+			"service in the pool", example = "8")
+	private int externalVariableServiceAvailableConnections;
+
+	@Schema(description = "The number of requests waiting for a connection to the external " +
+			"variable service", example = "0")
+	private int externalVariableServicePendingConnections;
+
+	@Schema(description = "The number of notifications for the external variable service that " +
+			"are waiting to be sent, including those on disk", example = "3")
+	private int externalVariableNotificationQueueDepth;
+
+	@Schema(description = "The number of notifications for the external variable service that " +
+			"are waiting on disk", example = "0")
+	private int externalVariableNotificationSpilled;
+
+	@Schema(description = "The number of notifications that were sent to the external variable " +
+			"service since the start of the service", example = "5120")
+	private long externalVariableNotificationDelivered;
+
+	@Schema(description = "The number of failed notification calls to the external variable " +
+			"service that were retried", example = "2")
+	private long externalVariableNotificationRetries;
+
+	@Schema(description = "The number of milliseconds that the oldest waiting notification for " +
+			"the external variable service has been waiting", example = "150")
+	private long externalVariableNotificationLagMs;
+
+	@Schema(description = "The number of variables that were not retrieved from the external " +
+			"variable service at a dialogue start, because they were retrieved recently",
+			example = "800")
+	private long externalVariableCacheHits;
+
+	@Schema(description = "The number of variables that were retrieved from the external " +
+			"variable service at a dialogue start", example = "200")
+	private long externalVariableCacheMisses;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of an empty {@link ServiceMetricsPayload}.
+	 */
+	public ServiceMetricsPayload() { }
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the number of users for which a user service is currently kept in memory.
+	 * @return the number of users for which a user service is currently kept in memory.
+	 */
+	public int getActiveUserServices() {
+		return activeUserServices;
+	}
+
+	/**
+	 * Sets the number of users for which a user service is currently kept in memory.
+	 * @param activeUserServices the number of users for which a user service is kept in memory.
+	 */
+	public void setActiveUserServices(int activeUserServices) {
+		this.activeUserServices = activeUserServices;
+	}
+
+	/**
+	 * Returns the number of requests that found the user service already in memory.
+	 * @return the number of requests that found the user service already in memory.
+	 */
+	public long getUserServiceHits() {
+		return userServiceHits;
+	}
+
+	/**
+	 * Sets the number of requests that found the user service already in memory.
+	 * @param userServiceHits the number of requests that found the user service in memory.
+	 */
+	public void setUserServiceHits(long userServiceHits) {
+		this.userServiceHits = userServiceHits;
+	}
+
+	/**
+	 * Returns the number of requests for which a user service had to be created.
+	 * @return the number of requests for which a user service had to be created.
+	 */
+	public long getUserServiceMisses() {
+		return userServiceMisses;
+	}
+
+	/**
+	 * Sets the number of requests for which a user service had to be created.
+	 * @param userServiceMisses the number of requests for which a user service had to be created.
+	 */
+	public void setUserServiceMisses(long userServiceMisses) {
+		this.userServiceMisses = userServiceMisses;
+	}
+
+	/**
+	 * Returns the number of user services that were removed from memory.
+	 * @return the number of user services that were removed from memory.
+	 */
+	public long getUserServiceEvictions() {
+		return userServiceEvictions;
+	}
+
+	/**
+	 * Sets the number of user services that were removed from memory.
+	 * @param userServiceEvictions the number of user services that were removed from memory.
+	 */
+	public void setUserServiceEvictions(long userServiceEvictions) {
+		this.userServiceEvictions = userServiceEvictions;
+	}
+
+	/**
+	 * Returns the number of database connections that are currently in use.
+	 * @return the number of database connections that are currently in use.
+	 */
+	public int getDbPoolActiveConnections() {
+		return dbPoolActiveConnections;
+	}
+
+	/**
+	 * Sets the number of database connections that are currently in use.
+	 * @param dbPoolActiveConnections the number of database connections that are currently in use.
+	 */
+	public void setDbPoolActiveConnections(int dbPoolActiveConnections) {
+		this.dbPoolActiveConnections = dbPoolActiveConnections;
+	}
+
+	/**
+	 * Returns the number of idle database connections in the pool.
+	 * @return the number of idle database connections in the pool.
+	 */
+	public int getDbPoolIdleConnections() {
+		return dbPoolIdleConnections;
+	}
+
+	/**
+	 * Sets the number of idle database connections in the pool.
+	 * @param dbPoolIdleConnections the number of idle database connections in the pool.
+	 */
+	public void setDbPoolIdleConnections(int dbPoolIdleConnections) {
+		this.dbPoolIdleConnections = dbPoolIdleConnections;
+	}
+
+	/**
+	 * Returns the total number of database connections in the pool.
+	 * @return the total number of database connections in the pool.
+	 */
+	public int getDbPoolTotalConnections() {
+		return dbPoolTotalConnections;
+	}
+
+	/**
+	 * Sets the total number of database connections in the pool.
+	 * @param dbPoolTotalConnections the total number of database connections in the pool.
+	 */
+	public void setDbPoolTotalConnections(int dbPoolTotalConnections) {
+		this.dbPoolTotalConnections = dbPoolTotalConnections;
+	}
+
+	/**
+	 * Returns the number of threads waiting for a database connection.
+	 * @return the number of threads waiting for a database connection.
+	 */
+	public int getDbPoolThreadsAwaitingConnection() {
+		return dbPoolThreadsAwaitingConnection;
+	}
+
+	/**
+	 * Sets the number of threads waiting for a database connection.
+	 * @param dbPoolThreadsAwaitingConnection the number of threads waiting for a connection.
+	 */
+	public void setDbPoolThreadsAwaitingConnection(int dbPoolThreadsAwaitingConnection) {
+		this.dbPoolThreadsAwaitingConnection = dbPoolThreadsAwaitingConnection;
+	}
+
+	/**
+	 * Returns the number of variable changes that are buffered and not yet written.
+	 * @return the number of variable changes that are buffered and not yet written.
+	 */
+	public int getVariableWriteQueueDepth() {
+		return variableWriteQueueDepth;
+	}
+
+	/**
+	 * Sets the number of variable changes that are buffered and not yet written.
+	 * @param variableWriteQueueDepth the number of buffered variable changes.
+	 */
+	public void setVariableWriteQueueDepth(int variableWriteQueueDepth) {
+		this.variableWriteQueueDepth = variableWriteQueueDepth;
+	}
+
+	/**
+	 * Returns the number of buffered variable writes since the start of the service.
+	 * @return the number of buffered variable writes since the start of the service.
+	 */
+	public long getVariableWriteCount() {
+		return variableWriteCount;
+	}
+
+	/**
+	 * Sets the number of buffered variable writes since the start of the service.
+	 * @param variableWriteCount the number of buffered variable writes.
+	 */
+	public void setVariableWriteCount(long variableWriteCount) {
+		this.variableWriteCount = variableWriteCount;
+	}
+
+	/**
+	 * Returns the average duration of a buffered variable write in milliseconds.
+	 * @return the average duration of a buffered variable write in milliseconds.
+	 */
+	public double getVariableWriteAverageLatencyMs() {
+		return variableWriteAverageLatencyMs;
+	}
+
+	/**
+	 * Sets the average duration of a buffered variable write in milliseconds.
+	 * @param variableWriteAverageLatencyMs the average write duration in milliseconds.
+	 */
+	public void setVariableWriteAverageLatencyMs(double variableWriteAverageLatencyMs) {
+		this.variableWriteAverageLatencyMs = variableWriteAverageLatencyMs;
+	}
+
+	/**
+	 * Returns the longest duration of a buffered variable write in milliseconds.
+	 * @return the longest duration of a buffered variable write in milliseconds.
+	 */
+	public double getVariableWriteMaxLatencyMs() {
+		return variableWriteMaxLatencyMs;
+	}
+
+	/**
+	 * Sets the longest duration of a buffered variable write in milliseconds.
+	 * @param variableWriteMaxLatencyMs the longest write duration in milliseconds.
+	 */
+	public void setVariableWriteMaxLatencyMs(double variableWriteMaxLatencyMs) {
+		this.variableWriteMaxLatencyMs = variableWriteMaxLatencyMs;
+	}
+
+	/**
+	 * Returns the number of connections to the external variable service that are in use.
+	 * @return the number of connections to the external variable service that are in use.
+	 */
+	public int getExternalVariableServiceLeasedConnections() {
+		return externalVariableServiceLeasedConnections;
+	}
+
+	/**
+	 * Sets the number of connections to the external variable service that are in use.
+	 * @param externalVariableServiceLeasedConnections the number of connections in use.
+	 */
+	public void setExternalVariableServiceLeasedConnections(
+			int externalVariableServiceLeasedConnections) {
+		this.externalVariableServiceLeasedConnections = externalVariableServiceLeasedConnections;
+	}
+
+	/**
+	 * Returns the number of idle connections to the external variable service in the pool.
+	 * @return the number of idle connections to the external variable service in the pool.
+	 */
+	public int getExternalVariableServiceAvailableConnections() {
+		return externalVariableServiceAvailableConnections;
+	}
+
+	/**
+	 * Sets the number of idle connections to the external variable service in the pool.
+	 * @param externalVariableServiceAvailableConnections the number of idle connections.
+	 */
+	public void setExternalVariableServiceAvailableConnections(
+			int externalVariableServiceAvailableConnections) {
+		this.externalVariableServiceAvailableConnections =
+				externalVariableServiceAvailableConnections;
+	}
+
+	/**
+	 * Returns the number of requests waiting for a connection to the external variable service.
+	 * @return the number of requests waiting for a connection to the external variable service.
+	 */
+	public int getExternalVariableServicePendingConnections() {
+		return externalVariableServicePendingConnections;
+	}
+
+	/**
+	 * Sets the number of requests waiting for a connection to the external variable service.
+	 * @param externalVariableServicePendingConnections the number of waiting requests.
+	 */
+	public void setExternalVariableServicePendingConnections(
+			int externalVariableServicePendingConnections) {
+		this.externalVariableServicePendingConnections = externalVariableServicePendingConnections;
+	}
+
+	/**
+	 * Returns the number of notifications for the external variable service that are waiting.
+	 * @return the number of notifications for the external variable service that are waiting.
+	 */
+	public int getExternalVariableNotificationQueueDepth() {
+		return externalVariableNotificationQueueDepth;
+	}
+
+	/**
+	 * Sets the number of notifications for the external variable service that are waiting.
+	 * @param externalVariableNotificationQueueDepth the number of waiting notifications.
+	 */
+	public void setExternalVariableNotificationQueueDepth(
+			int externalVariableNotificationQueueDepth) {
+		this.externalVariableNotificationQueueDepth = externalVariableNotificationQueueDepth;
+	}
+
+	/**
+	 * Returns the number of notifications for the external variable service that wait on disk.
+	 * @return the number of notifications for the external variable service that wait on disk.
+	 */
+	public int getExternalVariableNotificationSpilled() {
+		return externalVariableNotificationSpilled;
+	}
+
+	/**
+	 * Sets the number of notifications for the external variable service that wait on disk.
+	 * @param externalVariableNotificationSpilled the number of notifications on disk.
+	 */
+	public void setExternalVariableNotificationSpilled(int externalVariableNotificationSpilled) {
+		this.externalVariableNotificationSpilled = externalVariableNotificationSpilled;
+	}
+
+	/**
+	 * Returns the number of notifications that were sent to the external variable service.
+	 * @return the number of notifications that were sent to the external variable service.
+	 */
+	public long getExternalVariableNotificationDelivered() {
+		return externalVariableNotificationDelivered;
+	}
+
+	/**
+	 * Sets the number of notifications that were sent to the external variable service.
+	 * @param externalVariableNotificationDelivered the number of sent notifications.
+	 */
+	public void setExternalVariableNotificationDelivered(
+			long externalVariableNotificationDelivered) {
+		this.externalVariableNotificationDelivered = externalVariableNotificationDelivered;
+	}
+
+	/**
+	 * Returns the number of failed notification calls that were retried.
+	 * @return the number of failed notification calls that were retried.
+	 */
+	public long getExternalVariableNotificationRetries() {
+		return externalVariableNotificationRetries;
+	}
+
+	/**
+	 * Sets the number of failed notification calls that were retried.
+	 * @param externalVariableNotificationRetries the number of retries.
+	 */
+	public void setExternalVariableNotificationRetries(long externalVariableNotificationRetries) {
+		this.externalVariableNotificationRetries = externalVariableNotificationRetries;
+	}
+
+	/**
+	 * Returns the number of milliseconds that the oldest waiting notification has been waiting.
+	 * @return the number of milliseconds that the oldest waiting notification has been waiting.
+	 */
+	public long getExternalVariableNotificationLagMs() {
+		return externalVariableNotificationLagMs;
+	}
+
+	/**
+	 * Sets the number of milliseconds that the oldest waiting notification has been waiting.
+	 * @param externalVariableNotificationLagMs the delivery lag in milliseconds.
+	 */
+	public void setExternalVariableNotificationLagMs(long externalVariableNotificationLagMs) {
+		this.externalVariableNotificationLagMs = externalVariableNotificationLagMs;
+	}
+
+	/**
+	 * Returns the number of variables that were not retrieved, because they were still fresh.
+	 * @return the number of variables that were not retrieved, because they were still fresh.
+	 */
+	public long getExternalVariableCacheHits() {
+		return externalVariableCacheHits;
+	}
+
+	/**
+	 * Sets the number of variables that were not retrieved, because they were still fresh.
+	 * @param externalVariableCacheHits the number of external variable cache hits.
+	 */
+	public void setExternalVariableCacheHits(long externalVariableCacheHits) {
+		this.externalVariableCacheHits = externalVariableCacheHits;
+	}
+
+	/**
+	 * Returns the number of variables that were retrieved from the external variable service.
+	 * @return the number of variables that were retrieved from the external variable service.
+	 */
+	public long getExternalVariableCacheMisses() {
+		return externalVariableCacheMisses;
+	}
+
+	/**
+	 * Sets the number of variables that were retrieved from the external variable service.
+	 * @param externalVariableCacheMisses the number of external variable cache misses.
+	 */
+	public void setExternalVariableCacheMisses(long externalVariableCacheMisses) {
+		this.externalVariableCacheMisses = externalVariableCacheMisses;
+	}
+
+}
@@ -31,6 +31,7 @@ package com.dialoguebranch.web.service.exception;
 import com.dialoguebranch.web.service.controller.ErrorController;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import nl.rrd.utils.AppComponents;
 import org.slf4j.Logger;
 import org.springframework.http.HttpStatus;
@@ -54,6 +55,9 @@ public class BadRequestException extends HttpException {
 
 	private static final Logger logger = AppComponents.getLogger("BadRequestException");
 
+	/** Thread-safe writer for the JSON error message of field errors */
+	private static final ObjectWriter FIELD_ERRORS_WRITER = new ObjectMapper().writer();
+
 	@Serial
 	private static final long serialVersionUID = 1L;
 
@@ -180,9 +184,8 @@ public class BadRequestException extends HttpException {
 	public static BadRequestException withInvalidInput(List<HttpFieldError> fieldErrors)  {
 		StringBuilder errorMsg = new StringBuilder();
 
-		ObjectMapper mapper = new ObjectMapper();
 		try {
-			errorMsg.append(mapper.writeValueAsString(fieldErrors));
+			errorMsg.append(FIELD_ERRORS_WRITER.writeValueAsString(fieldErrors));
 		} catch (JsonProcessingException e) {
 			logger.warn("Unable to automatically generate JSON error message from field errors.");
 			errorMsg.append("[]"); // Set the errorMsg to be an empty JSON list
@@ -29,6 +29,9 @@
 package com.dialoguebranch.web.service.execution;
 
 import com.dialoguebranch.exception.ExecutionException;
+import com.dialoguebranch.execution.User;
+import com.dialoguebranch.execution.VariableStore;
+import com.dialoguebranch.execution.VariableStoreChange;
 import com.dialoguebranch.i18n.TranslationContext;
 import com.dialoguebranch.model.Dialogue;
 import com.dialoguebranch.model.FileDescriptor;
@@ -42,16 +45,42 @@ import com.dialoguebranch.web.service.auth.basic.BasicUserFile;
 import com.dialoguebranch.web.service.auth.keycloak.KeycloakManager;
 import com.dialoguebranch.web.service.exception.DLBServiceConfigurationException;
 import com.dialoguebranch.web.service.storage.AzureDataLakeStore;
+import com.dialoguebranch.web.service.storage.LoggedDialogueStore;
+import com.dialoguebranch.web.service.storage.LoggedDialogueWriter;
+import com.dialoguebranch.web.service.storage.ExternalVariableNotifier;
+import com.dialoguebranch.web.service.storage.ExternalVariableServiceClient;
+import com.dialoguebranch.web.service.storage.ExternalVariableServiceUpdater;
 import com.dialoguebranch.web.service.storage.VariableStoreDatabaseStorageHandler;
+import com.dialoguebranch.web.service.storage.VariableStoreJSONStorageHandler;
+import com.dialoguebranch.web.service.storage.VariableStoreLogStorageHandler;
+import com.dialoguebranch.web.service.storage.VariableStoreStorageHandler;
+import com.dialoguebranch.web.service.storage.VariableStoreWriter;
 import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.utils.exception.ParseException;
+import nl.rrd.utils.i18n.I18nLanguageFinder;
+import nl.rrd.utils.i18n.I18nUtils;
 import org.slf4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The Dialogue Branch Web Service maintains one instance of an {@link ApplicationManager}. This
@@ -65,9 +94,79 @@ public class ApplicationManager {
 
 	private final Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 	private final Project project;
-	private final List<UserService> activeUserServices = new ArrayList<>();
+
+	/**
+	 * Index of all dialogues in the {@link #project}, mapping from dialogue name to language to
+	 * dialogue description. It is created once when the project is loaded, and shared (read-only)
+	 * by all {@link UserService}s.
+	 */
+	private final Map<String, Map<String, FileDescriptor>> dialogueLanguageMap;
+
+	/**
+	 * Cache of the dialogues available for a requested language tag, mapping from language tag
+	 * to dialogue name to the dialogue description in the best matching language. Its contents
+	 * are derived from the {@link #dialogueLanguageMap}, so it is only valid for the currently
+	 * loaded {@link #project}.
+	 */
+	private final Map<String, Map<String, FileDescriptor>> resolvedDialoguesCache =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Maximum number of language tags kept in the {@link #resolvedDialoguesCache}. Language tags
+	 * are provided by clients, so this prevents unbounded growth from arbitrary tags.
+	 */
+	private static final int MAX_RESOLVED_LANGUAGES = 256;
+
+	/** Number of threads that prefetch variables from the external variable service */
+	private static final int PREFETCH_THREADS = 4;
+
+	/**
+	 * Maximum number of prefetches of external variables that wait for a thread. More prefetches
+	 * are skipped, as prefetching is only an optimization.
+	 */
+	private static final int MAX_WAITING_PREFETCHES = 1000;
+
+	/**
+	 * The active {@link UserService}s, mapped by user id. Concurrent requests for the same new
+	 * user all wait for a single construction of its {@link UserService}, instead of each creating
+	 * their own.
+	 */
+	private final SingleFlightRegistry<UserService> activeUserServices =
+			new SingleFlightRegistry<>();
+
+	/**
+	 * The leases on active {@link UserService}s that are held by the request that the current
+	 * thread is handling (see {@link #beginRequest()}). A {@link UserService} that is in use by a
+	 * request is not evicted.
+	 */
+	private final ThreadLocal<List<SingleFlightRegistry.Lease<UserService>>> requestLeases =
+			new ThreadLocal<>();
+
+	/** Number of requests for a UserService that was already active */
+	private final AtomicLong userServiceHits = new AtomicLong();
+
+	/** Number of requests for a UserService that had to be created */
+	private final AtomicLong userServiceMisses = new AtomicLong();
+
+	/** Number of UserServices that were removed from memory because they were idle or old */
+	private final AtomicLong userServiceEvictions = new AtomicLong();
+
+	/** Number of variables that were not retrieved from the external service, as still fresh */
+	private final AtomicLong externalVariableCacheHits = new AtomicLong();
+
+	/** Number of variables that had to be retrieved from the external variable service */
+	private final AtomicLong externalVariableCacheMisses = new AtomicLong();
 	private final List<BasicUserCredentials> basicUserCredentials;
 	private AzureDataLakeStore azureDataLakeStore = null;
+	private LoggedDialogueWriter loggedDialogueWriter = null;
+	private VariableStoreWriter variableStoreWriter = null;
+	private ExternalVariableServiceClient externalVariableServiceClient = null;
+	private ExternalVariableNotifier externalVariableNotifier = null;
+	private ThreadPoolExecutor externalVariablePrefetchExecutor = null;
+
+	/** The variables that are prefetched from the external variable service for a session */
+	private Set<String> prefetchVariableNames = Collections.emptySet();
+	private final VariableStoreStorageHandler variableStoreStorageHandler;
 	private KeycloakManager keycloakManager = null;
 	private final UserServiceFactory userServiceFactory;
 
@@ -108,9 +207,18 @@ public class ApplicationManager {
 		if (!readResult.getParseErrors().isEmpty())
 			throw new RuntimeException("Failed to load all dialogues.");
 		project = readResult.getProject();
+		dialogueLanguageMap = createDialogueLanguageMap(project);
 
-		this.userServiceFactory = new UserServiceFactory(this,
-				new VariableStoreDatabaseStorageHandler());
+		VariableStoreStorageHandler storageHandler = createVariableStoreStorageHandler();
+		if(Configuration.getInstance().getVariableWriteBehindIntervalMs() > 0) {
+			variableStoreWriter = new VariableStoreWriter(storageHandler,
+					Configuration.getInstance().getVariableWriteBehindIntervalMs(),
+					Configuration.getInstance().getVariableWriteBehindMaxPending());
+			variableStoreStorageHandler = variableStoreWriter;
+		} else {
+			variableStoreStorageHandler = storageHandler;
+		}
+		this.userServiceFactory = new UserServiceFactory(this, variableStoreStorageHandler);
 
 
 		// Load in configuration values
@@ -137,6 +245,21 @@ public class ApplicationManager {
 				throw e;
 			}
 		}
+
+		if(Configuration.getInstance().getDialogueLogWriteBehindIntervalMs() > 0) {
+			loggedDialogueWriter = new LoggedDialogueWriter(
+					Configuration.getInstance().getDialogueLogWriteBehindIntervalMs());
+		}
+
+		if(config.getExternalVariableServiceEnabled()) {
+			externalVariableServiceClient = new ExternalVariableServiceClient(config);
+			externalVariableNotifier = new ExternalVariableNotifier(externalVariableServiceClient,
+					new File(config.getDataDir(), "external-variable-notifications"),
+					config.getExternalVariableServiceNotifyMaxQueued(),
+					config.getExternalVariableServiceNotifyMaxRetryDelayMs());
+			if(config.getExternalVariableServicePrefetch())
+				initExternalVariablePrefetch(config);
+		}
 	}
 
 	// ----------------------------------------------------------- //
@@ -147,6 +270,17 @@ public class ApplicationManager {
 		return new ArrayList<>(project.getDialogues().keySet());
 	}
 
+	/**
+	 * Returns an unmodifiable index of all dialogues in the loaded project, mapping from dialogue
+	 * name to language to dialogue description. The same instance is shared by all {@link
+	 * UserService}s.
+	 *
+	 * @return the index of dialogue descriptions by dialogue name and language.
+	 */
+	public Map<String, Map<String, FileDescriptor>> getDialogueLanguageMap() {
+		return dialogueLanguageMap;
+	}
+
 	/**
 	 * Returns the list of {@link BasicUserCredentials} available for this {@link ApplicationManager}.
 	 *
@@ -178,15 +312,72 @@ public class ApplicationManager {
 		return keycloakManager;
 	}
 
+	/**
+	 * Returns the background writer for buffered dialogue logs, or {@code null} if dialogue logs
+	 * are written immediately.
+	 *
+	 * @return the {@link LoggedDialogueWriter} or {@code null}.
+	 */
+	public LoggedDialogueWriter getLoggedDialogueWriter() {
+		return loggedDialogueWriter;
+	}
+
+	/**
+	 * Returns the background writer for buffered variable changes, or {@code null} if variable
+	 * changes are written immediately.
+	 *
+	 * @return the {@link VariableStoreWriter} or {@code null}.
+	 */
+	public VariableStoreWriter getVariableStoreWriter() {
+		return variableStoreWriter;
+	}
+
+	/**
+	 * Returns the client for the External Variable Service, or {@code null} if no External
+	 * Variable Service is enabled.
+	 *
+	 * @return the {@link ExternalVariableServiceClient} or {@code null}.
+	 */
+	public ExternalVariableServiceClient getExternalVariableServiceClient() {
+		return externalVariableServiceClient;
+	}
+
+	/**
+	 * Returns the background notifier for the External Variable Service, or {@code null} if no
+	 * External Variable Service is enabled.
+	 *
+	 * @return the {@link ExternalVariableNotifier} or {@code null}.
+	 */
+	public ExternalVariableNotifier getExternalVariableNotifier() {
+		return externalVariableNotifier;
+	}
+
+	/**
+	 * Returns the {@link VariableStoreStorageHandler} that is used to read and write the variables
+	 * of all users (including the {@link VariableStoreWriter} if write-behind is enabled).
+	 *
+	 * @return the {@link VariableStoreStorageHandler}.
+	 */
+	public VariableStoreStorageHandler getVariableStoreStorageHandler() {
+		return variableStoreStorageHandler;
+	}
+
 	// ------------------------------------------------------------ //
 	// -------------------- Service Management -------------------- //
 	// ------------------------------------------------------------ //
 
 	/**
 	 * Returns an active {@link UserService} object for the given {@code userId} in the given {@code
-	 * timeZoneId}. Retrieves from an internal list of active {@link UserService}s, or instantiates
+	 * timeZoneId}. Retrieves from an internal map of active {@link UserService}s, or instantiates
 	 * a new {@link UserService} if no {@link UserService} is active for the given user.
 	 *
+	 * <p>This method is safe to call concurrently. If multiple threads request a {@link
+	 * UserService} for the same new user at the same time, only one {@link UserService} is created
+	 * and all threads receive that same instance.</p>
+	 *
+	 * <p>If this is called while handling a request (see {@link #beginRequest()}), the returned
+	 * {@link UserService} is not evicted until the request has ended.</p>
+	 *
 	 * @param userId the identifier of the user for which to retrieve a {@link UserService}.
 	 * @param timeZone the time zone as {@link ZoneId} in which the user resides.
 	 * @return a {@link UserService} object that can handle the communication with the user.
@@ -195,17 +386,26 @@ public class ApplicationManager {
 	 */
 	public UserService getOrCreateActiveUserService(String userId, ZoneId timeZone)
 			throws IOException, DatabaseException {
-		UserService result = getActiveUserService(userId);
-		if(result != null) {
-			return result;
-		} else {
-			return createActiveUserService(userId, timeZone);
+		SingleFlightRegistry.Lease<UserService> lease;
+		try {
+			lease = activeUserServices.acquire(userId,
+					() -> createActiveUserService(userId, timeZone));
+		} catch(java.util.concurrent.ExecutionException | InterruptedException e) {
+			throw createUserServiceException(userId, e);
 		}
+		boolean created = lease.created();
+		if(created) userServiceMisses.incrementAndGet();
+		else userServiceHits.incrementAndGet();
+
+		UserService userService = holdForRequest(lease);
+		userService.touch();
+		if(created) evictLeastRecentlyUsedUserServices();
+		return userService;
 	}
 
 	/**
 	 * Returns an active {@link UserService} object for the given {@code userId} in the system's
-	 * default time zone. Retrieves from an internal list of active {@link UserService}s, or
+	 * default time zone. Retrieves from an internal map of active {@link UserService}s, or
 	 * instantiates a new {@link UserService} if no {@link UserService} is active for the given
 	 * user.
 	 *
@@ -216,32 +416,136 @@ public class ApplicationManager {
 	 */
 	public UserService getOrCreateActiveUserService(String userId)
 			throws IOException, DatabaseException {
-		UserService result = getActiveUserService(userId);
-		if(result != null) return result;
-		else {
-			return createActiveUserService(userId,null);
-		}
+		return getOrCreateActiveUserService(userId, null);
 	}
 
 	/**
 	 * Returns the {@link UserService} object for a user with the given {@code userId}, or {@code
-	 * null} if there is no currently active user service running.
+	 * null} if there is no currently active user service running. If the {@link UserService} for
+	 * this user is still being created by another thread, this method waits for it.
+	 *
+	 * <p>This is a plain lookup that is not counted in the {@link UserService} hits and misses
+	 * (see {@link #getUserServiceHits()}). If this is called while handling a request (see {@link
+	 * #beginRequest()}), the returned {@link UserService} is not evicted until the request has
+	 * ended.</p>
 	 *
 	 * @param userId the identifier of the user for which to retrieve a {@link UserService}.
 	 * @return a {@link UserService} object, or {@code null} if none exists.
 	 */
 	public UserService getActiveUserService(String userId) {
-		for(UserService userService : activeUserServices) {
-			if(userService.getDialogueBranchUser().getId().equals(userId)) {
-				return userService;
-			}
+		SingleFlightRegistry.Lease<UserService> lease;
+		try {
+			lease = activeUserServices.acquire(userId, null);
+		} catch(java.util.concurrent.ExecutionException e) {
+			return null;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
 		}
-		return null;
+		if(lease == null) return null;
+		UserService userService = holdForRequest(lease);
+		userService.touch();
+		return userService;
+	}
+
+	/**
+	 * Marks the start of a request that is handled by the current thread. Until {@link
+	 * #endRequest()} is called, all {@link UserService}s that are returned to this thread are in
+	 * use, and are not evicted because they are idle or because of the maximum number of active
+	 * {@link UserService}s. This is called for every query by the {@link
+	 * com.dialoguebranch.web.service.QueryRunner}.
+	 */
+	public void beginRequest() {
+		if(requestLeases.get() == null)
+			requestLeases.set(new ArrayList<>());
+	}
+
+	/**
+	 * Marks the end of the request that was started with {@link #beginRequest()}, so that the
+	 * {@link UserService}s that it used may be evicted again.
+	 */
+	public void endRequest() {
+		List<SingleFlightRegistry.Lease<UserService>> leases = requestLeases.get();
+		if(leases == null) return;
+		requestLeases.remove();
+		for(SingleFlightRegistry.Lease<UserService> lease : leases) {
+			lease.release();
+		}
+	}
+
+	/**
+	 * Returns the number of currently active {@link UserService}s.
+	 *
+	 * @return the number of currently active {@link UserService}s.
+	 */
+	public int getActiveUserServiceCount() {
+		return activeUserServices.size();
+	}
+
+	/**
+	 * Returns the number of times that a requested {@link UserService} was already active.
+	 *
+	 * @return the number of times that a requested {@link UserService} was already active.
+	 */
+	public long getUserServiceHits() {
+		return userServiceHits.get();
+	}
+
+	/**
+	 * Returns the number of times that a requested {@link UserService} had to be created.
+	 *
+	 * @return the number of times that a requested {@link UserService} had to be created.
+	 */
+	public long getUserServiceMisses() {
+		return userServiceMisses.get();
+	}
+
+	/**
+	 * Returns the number of {@link UserService}s that were removed from memory because they were
+	 * idle, or because the maximum number of active {@link UserService}s was exceeded.
+	 *
+	 * @return the number of evicted {@link UserService}s.
+	 */
+	public long getUserServiceEvictions() {
+		return userServiceEvictions.get();
+	}
+
+	/**
+	 * Returns the number of variables that were not retrieved from the external variable service
+	 * at a dialogue start, because they had been retrieved recently.
+	 *
+	 * @return the number of external variable cache hits.
+	 */
+	public long getExternalVariableCacheHits() {
+		return externalVariableCacheHits.get();
+	}
+
+	/**
+	 * Returns the number of variables that were retrieved from the external variable service at a
+	 * dialogue start.
+	 *
+	 * @return the number of external variable cache misses.
+	 */
+	public long getExternalVariableCacheMisses() {
+		return externalVariableCacheMisses.get();
+	}
+
+	/**
+	 * Counts the result of looking up variables in the external variable cache of a {@link
+	 * UserService}.
+	 *
+	 * @param hits the number of variables that were still fresh.
+	 * @param misses the number of variables that had to be retrieved.
+	 */
+	void countExternalVariableCacheLookups(int hits, int misses) {
+		externalVariableCacheHits.addAndGet(hits);
+		externalVariableCacheMisses.addAndGet(misses);
 	}
 
 	/**
 	 * Creates a new {@link UserService} object for a new user with the given {@code userId} in the
-	 * given {@code timeZone}. If successfully created, keeps a record of this active user service.
+	 * given {@code timeZone}. This method is only called from the {@link SingleFlightRegistry} of
+	 * active {@link UserService}s, in {@link #getOrCreateActiveUserService(String, ZoneId)}.
 	 *
 	 * @param userId the identifier of the user for which to create a {@link UserService}.
 	 * @param timeZone the time zone as {@link ZoneId} in which the user resides.
@@ -260,14 +564,52 @@ public class ApplicationManager {
 			newUserService = userServiceFactory.createUserService(userId, timeZone);
 		}
 
-		activeUserServices.add(newUserService);
-
 		logger.info("Created a new UserService for userId '{}' (total active users: {}).",
-				userId,activeUserServices.size());
+				userId, activeUserServices.size());
 
 		return newUserService;
 	}
-	
+
+	/**
+	 * Keeps the given {@code lease} until the end of the current request (see {@link
+	 * #beginRequest()}), or releases it immediately if the current thread is not handling a
+	 * request.
+	 *
+	 * @param lease the lease on a {@link UserService}.
+	 * @return the {@link UserService}.
+	 */
+	private UserService holdForRequest(SingleFlightRegistry.Lease<UserService> lease) {
+		List<SingleFlightRegistry.Lease<UserService>> leases = requestLeases.get();
+		if(leases != null) leases.add(lease);
+		else lease.release();
+		return lease.value();
+	}
+
+	/**
+	 * Converts an error from waiting for the creation of a {@link UserService} to the exception
+	 * that should be thrown. If the creation failed, this is the original error.
+	 *
+	 * @param userId the identifier of the user.
+	 * @param e the error from the {@link SingleFlightRegistry}.
+	 * @return the {@link DatabaseException} to throw.
+	 * @throws IOException In case of an error loading in the known variables for the User.
+	 */
+	private DatabaseException createUserServiceException(String userId, Exception e)
+			throws IOException {
+		if(e instanceof InterruptedException) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the UserService of user '"
+					+ userId + "' to be created.", e);
+		}
+		Throwable cause = e.getCause();
+		if(cause instanceof IOException ioException) throw ioException;
+		if(cause instanceof DatabaseException databaseException) return databaseException;
+		if(cause instanceof RuntimeException runtimeException) throw runtimeException;
+		if(cause instanceof Error error) throw error;
+		return new DatabaseException("Failed to create UserService for user '" + userId
+				+ "': " + cause.getMessage(), cause);
+	}
+
 	/**
 	 * Removes the given {@link UserService} from the set of active {@link UserService}s in this
 	 * {@link ApplicationManager}.
@@ -277,9 +619,279 @@ public class ApplicationManager {
 	 * false} if it was not present on the list of active {@link UserService}s in the first place.
 	 */
 	public boolean removeUserService(UserService userService) {
-		return activeUserServices.remove(userService);
+		String userId = userService.getDialogueBranchUser().getId();
+		return activeUserServices.remove(userId, userService);
 	}
-	
+
+	/**
+	 * Removes all {@link UserService}s that have not been requested for longer than the configured
+	 * idle timeout (see {@link Configuration#getUserServiceIdleTimeoutSeconds()}), and closes them.
+	 * Afterwards, makes sure that the configured maximum number of active {@link UserService}s is
+	 * respected. {@link UserService}s that are in use by a request are never removed. This method
+	 * is called periodically by the {@link com.dialoguebranch.web.service.Application}.
+	 *
+	 * @return the number of {@link UserService}s that were removed.
+	 */
+	public int evictIdleUserServices() {
+		int evicted = 0;
+		long idleTimeoutMillis =
+				Configuration.getInstance().getUserServiceIdleTimeoutSeconds() * 1000L;
+		if(idleTimeoutMillis > 0) {
+			long now = System.currentTimeMillis();
+			for(UserService userService : activeUserServices.getCreatedValues()) {
+				if(now - userService.getLastAccessTime() > idleTimeoutMillis
+						&& evictUserService(userService, true)) {
+					evicted++;
+				}
+			}
+		}
+		evicted += evictLeastRecentlyUsedUserServices();
+		if(evicted > 0) {
+			logger.info("Removed {} idle UserServices (total active users: {}, hits: {}, " +
+					"misses: {}, evictions: {}).", evicted, activeUserServices.size(),
+					userServiceHits.get(), userServiceMisses.get(), userServiceEvictions.get());
+		}
+		return evicted;
+	}
+
+	/**
+	 * Closes and removes all active {@link UserService}s, and writes any buffered dialogue logs,
+	 * variable changes and unsent notifications. This is called when the service shuts down.
+	 */
+	public void closeAllUserServices() {
+		for(UserService userService : activeUserServices.getCreatedValues()) {
+			evictUserService(userService, false);
+		}
+		if(loggedDialogueWriter != null)
+			loggedDialogueWriter.close();
+		if(variableStoreWriter != null)
+			variableStoreWriter.close();
+		if(externalVariablePrefetchExecutor != null)
+			externalVariablePrefetchExecutor.shutdownNow();
+		if(externalVariableNotifier != null)
+			externalVariableNotifier.close();
+		if(externalVariableServiceClient != null)
+			externalVariableServiceClient.close();
+	}
+
+	/**
+	 * If there are more active {@link UserService}s than the configured maximum (see {@link
+	 * Configuration#getUserServiceMaxActive()}), removes the least recently used ones. To avoid
+	 * doing this on every new user, it removes {@link UserService}s until 90% of the maximum is
+	 * reached. {@link UserService}s that are in use by a request are skipped.
+	 *
+	 * @return the number of {@link UserService}s that were removed.
+	 */
+	private int evictLeastRecentlyUsedUserServices() {
+		int maxActive = Configuration.getInstance().getUserServiceMaxActive();
+		if(maxActive <= 0 || activeUserServices.size() <= maxActive) return 0;
+
+		List<UserService> candidates = activeUserServices.getCreatedValues();
+		candidates.sort(Comparator.comparingLong(UserService::getLastAccessTime));
+
+		int target = maxActive - maxActive / 10;
+		int evicted = 0;
+		for(UserService userService : candidates) {
+			if(activeUserServices.size() <= target) break;
+			if(evictUserService(userService, true))
+				evicted++;
+		}
+		return evicted;
+	}
+
+	/**
+	 * Removes the given {@link UserService} from the active {@link UserService}s, and closes it,
+	 * unless it was already removed by another thread. If {@code onlyIfUnused} is {@code true},
+	 * it is also not removed while a request is using it (see {@link #beginRequest()}). A new
+	 * {@link UserService} for the same user is not created before the close has finished, so it
+	 * reads the state that was flushed by the close.
+	 *
+	 * @param userService the {@link UserService} to remove.
+	 * @param onlyIfUnused {@code true} if a {@link UserService} that is in use should be kept.
+	 * @return {@code true} if the {@link UserService} was removed, {@code false} otherwise.
+	 */
+	private boolean evictUserService(UserService userService, boolean onlyIfUnused) {
+		String userId = userService.getDialogueBranchUser().getId();
+		Runnable close = () -> {
+			try {
+				userService.close();
+			} catch(RuntimeException e) {
+				logger.error("Error while closing UserService for user '{}': {}", userId,
+						e.getMessage(), e);
+			}
+		};
+		boolean removed = onlyIfUnused ?
+				activeUserServices.removeIfUnused(userId, userService, close) :
+				activeUserServices.remove(userId, userService, close);
+		if(!removed) return false;
+		userServiceEvictions.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Returns a {@link LoggedDialogueStore} for reading the dialogue logs of the user with the
+	 * given {@code userId}, without creating a {@link UserService}. If a {@link UserService} is
+	 * active for the user, this returns its {@link LoggedDialogueStore}, which also knows about
+	 * buffered changes. Otherwise, it returns a read-only store that does not create any folders.
+	 * Only if the user has no local logs and they may have to be restored from the Azure Data Lake,
+	 * a {@link UserService} is created.
+	 *
+	 * @param userId the identifier of the user.
+	 * @return a {@link LoggedDialogueStore} that can be used to read the dialogue logs of the user.
+	 * @throws IOException in case of an error reading the dialogue logs.
+	 * @throws DatabaseException in case of an error creating a {@link UserService}.
+	 */
+	public LoggedDialogueStore getLoggedDialogueStoreForReading(String userId)
+			throws IOException, DatabaseException {
+		UserService userService = getActiveUserService(userId);
+		if(userService != null)
+			return userService.getLoggedDialogueStore();
+		LoggedDialogueStore loggedDialogueStore = new LoggedDialogueStore(userId, this, false);
+		if(!loggedDialogueStore.hasLogDirectory()
+				&& Configuration.getInstance().getAzureDataLakeEnabled())
+			return getOrCreateActiveUserService(userId).getLoggedDialogueStore();
+		return loggedDialogueStore;
+	}
+
+	/**
+	 * Sets the given {@code variables} for the user with the given {@code userId}, without
+	 * creating a {@link UserService}. If a {@link UserService} is active for the user, the
+	 * variables are set in its {@link VariableStore}. Otherwise, the {@link VariableStore} of the
+	 * user is read from storage and only used to write the changes, in the same way as a {@link
+	 * UserService} would (including notifying an external variable service).
+	 *
+	 * <p>The variables of a user without {@link UserService} are written while no {@link
+	 * UserService} can be created for the user (see {@link SingleFlightRegistry#runIfAbsent(String,
+	 * java.util.concurrent.Callable)}), so that a {@link UserService} that is created at the same
+	 * time reads the new values.</p>
+	 *
+	 * @param userId the identifier of the user.
+	 * @param variables the variables to set, mapping from variable name to value.
+	 * @param time the time of the change.
+	 * @throws IOException in case of an error reading the variables of the user.
+	 * @throws ParseException in case the stored variables of the user could not be understood.
+	 */
+	public void setUserVariables(String userId, Map<String, ?> variables, ZonedDateTime time)
+			throws IOException, ParseException {
+		while(true) {
+			UserService userService = getActiveUserService(userId);
+			if(userService != null) {
+				userService.getVariableStore().addAll(variables, true, time,
+						VariableStoreChange.Source.WEB_SERVICE);
+				return;
+			}
+			try {
+				if(activeUserServices.runIfAbsent(userId, () -> {
+					setStoredUserVariables(userId, variables, time);
+					return null;
+				}))
+					return;
+			} catch(java.util.concurrent.ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof IOException ioException) throw ioException;
+				if(cause instanceof ParseException parseException) throw parseException;
+				if(cause instanceof RuntimeException runtimeException) throw runtimeException;
+				if(cause instanceof Error error) throw error;
+				throw new IOException("Failed to set variables for user '" + userId + "': "
+						+ cause.getMessage(), cause);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while setting variables for user '" + userId
+						+ "'.", e);
+			}
+			// A UserService was created in the meantime, so set the variables in its store
+		}
+	}
+
+	/**
+	 * Sets the given {@code variables} in the stored {@link VariableStore} of the user with the
+	 * given {@code userId}, in the same way as a {@link UserService} would (including notifying
+	 * an external variable service). This should only be called if there is no {@link
+	 * UserService} for the user.
+	 *
+	 * @param userId the identifier of the user.
+	 * @param variables the variables to set, mapping from variable name to value.
+	 * @param time the time of the change.
+	 * @throws IOException in case of an error reading the variables of the user.
+	 * @throws ParseException in case the stored variables of the user could not be understood.
+	 */
+	private void setStoredUserVariables(String userId, Map<String, ?> variables,
+			ZonedDateTime time) throws IOException, ParseException {
+		VariableStore variableStore = variableStoreStorageHandler.read(
+				new User(userId, time.getZone()));
+		variableStore.addOnChangeListener(variableStoreStorageHandler);
+		if(Configuration.getInstance().getExternalVariableServiceEnabled())
+			variableStore.addOnChangeListener(new ExternalVariableServiceUpdater(
+					externalVariableNotifier));
+		variableStore.addAll(variables, true, time, VariableStoreChange.Source.WEB_SERVICE);
+	}
+
+	/**
+	 * Starts retrieving the variables that are used in the dialogues of the project from the
+	 * external variable service for the user of the given {@code userService}, in the background.
+	 * This is called when a session begins, so that the variables are up-to-date in the {@link
+	 * VariableStore} by the time a dialogue is started. It does nothing if prefetching is not
+	 * enabled (see {@link Configuration#getExternalVariableServicePrefetch()}).
+	 *
+	 * @param userService the {@link UserService} of the user.
+	 */
+	public void prefetchExternalVariables(UserService userService) {
+		if(externalVariablePrefetchExecutor == null || prefetchVariableNames.isEmpty())
+			return;
+		userService.prefetchVariablesFromExternalService(prefetchVariableNames,
+				externalVariablePrefetchExecutor);
+	}
+
+	/**
+	 * Creates the {@link VariableStoreStorageHandler} that is configured with {@link
+	 * Configuration#getVariableStorage()}. File-based storage handlers store their files in the
+	 * "variables" folder under the data directory.
+	 *
+	 * @return the {@link VariableStoreStorageHandler} for all users.
+	 */
+	private VariableStoreStorageHandler createVariableStoreStorageHandler() {
+		Configuration config = Configuration.getInstance();
+		String variablesDir = new File(config.getDataDir(), "variables").getPath();
+		return switch (config.getVariableStorage()) {
+			case Configuration.VARIABLE_STORAGE_JSON ->
+					new VariableStoreJSONStorageHandler(variablesDir);
+			case Configuration.VARIABLE_STORAGE_LOG ->
+					new VariableStoreLogStorageHandler(variablesDir);
+			default -> new VariableStoreDatabaseStorageHandler();
+		};
+	}
+
+	/**
+	 * Sets up the prefetching of external variables (see {@link
+	 * #prefetchExternalVariables(UserService)}). Prefetched variables are only useful if they are
+	 * cached, so nothing is set up if the cache is disabled.
+	 *
+	 * @param config the {@link Configuration} of the service.
+	 */
+	private void initExternalVariablePrefetch(Configuration config) {
+		if(config.getExternalVariableServiceCacheTtlMs() <= 0
+				&& !config.getExternalVariableServiceCacheHonourMaxAge()) {
+			logger.warn("External variable prefetch is enabled, but has no effect because the " +
+					"external variable cache is disabled.");
+			return;
+		}
+		Set<String> variableNames = new TreeSet<>();
+		for(Dialogue dialogue : project.getDialogues().values()) {
+			variableNames.addAll(dialogue.getVariablesNeeded());
+		}
+		prefetchVariableNames = Collections.unmodifiableSet(variableNames);
+		AtomicInteger threadCount = new AtomicInteger();
+		externalVariablePrefetchExecutor = new ThreadPoolExecutor(PREFETCH_THREADS,
+				PREFETCH_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(MAX_WAITING_PREFETCHES), runnable -> {
+					Thread thread = new Thread(runnable,
+							"ExternalVariablePrefetch-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		externalVariablePrefetchExecutor.allowCoreThreadTimeOut(true);
+	}
+
 	// ---------- Dialogue Management:
 
 	public Dialogue getDialogueDefinition(FileDescriptor dialogueDescription,
@@ -302,4 +914,82 @@ public class ApplicationManager {
 		return new ArrayList<>(project.getDialogues().keySet());
 	}
 
+	/**
+	 * Returns the dialogues that are available for the given preferred {@code language}, mapping
+	 * from dialogue name to the dialogue description in the language that best matches the
+	 * preferred language. If a dialogue is not available in a matching language, the first
+	 * available language is used. You can specify an ISO language tag such as "en-US".
+	 *
+	 * <p>The result for a language tag is computed only once for the loaded project, so that
+	 * finding a dialogue for a user is a single lookup in the returned map.</p>
+	 *
+	 * @param language an ISO language tag or {@code null}.
+	 * @return an unmodifiable map from dialogue name to dialogue description.
+	 */
+	public Map<String, FileDescriptor> resolveDialogues(String language) {
+		String cacheKey = language == null ? "" : language;
+		Map<String, FileDescriptor> result = resolvedDialoguesCache.get(cacheKey);
+		if(result != null) return result;
+		result = createResolvedDialogues(language);
+		if(resolvedDialoguesCache.size() < MAX_RESOLVED_LANGUAGES)
+			resolvedDialoguesCache.putIfAbsent(cacheKey, result);
+		return result;
+	}
+
+	/**
+	 * Resolves, for every dialogue in the {@link #dialogueLanguageMap}, the dialogue description
+	 * in the language that best matches the given preferred {@code language}.
+	 *
+	 * @param language an ISO language tag or {@code null}.
+	 * @return an unmodifiable map from dialogue name to dialogue description.
+	 */
+	private Map<String, FileDescriptor> createResolvedDialogues(String language) {
+		Locale prefLocale;
+		try {
+			prefLocale = I18nUtils.languageTagToLocale(language);
+		} catch (ParseException ex) {
+			logger.error("{}: {}", String.format(
+					"Invalid language tag \"%s\", falling back to system locale",
+					language), ex.getMessage());
+			prefLocale = Locale.getDefault();
+		}
+		Map<String, FileDescriptor> result = new LinkedHashMap<>();
+		for (Map.Entry<String, Map<String, FileDescriptor>> entry :
+				dialogueLanguageMap.entrySet()) {
+			Map<String, FileDescriptor> langMap = entry.getValue();
+			List<String> keys = new ArrayList<>(langMap.keySet());
+			I18nLanguageFinder i18nFinder = new I18nLanguageFinder(keys);
+			i18nFinder.setUserLocale(prefLocale);
+			String lang = i18nFinder.find();
+			if (lang != null)
+				result.put(entry.getKey(), langMap.get(lang));
+			else if (!keys.isEmpty())
+				result.put(entry.getKey(), langMap.get(keys.get(0)));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Creates an unmodifiable index of all dialogues in the given {@code project}, mapping from
+	 * dialogue name to language to dialogue description.
+	 *
+	 * @param project the loaded {@link Project}.
+	 * @return the index of dialogue descriptions by dialogue name and language.
+	 */
+	private static Map<String, Map<String, FileDescriptor>> createDialogueLanguageMap(
+			Project project) {
+		Map<String, Map<String, FileDescriptor>> dialogueLanguageMap = new LinkedHashMap<>();
+		for (FileDescriptor dialogue : project.getDialogues().keySet()) {
+			Map<String, FileDescriptor> langMap =
+					dialogueLanguageMap.computeIfAbsent(dialogue.getDialogueName(),
+							k -> new LinkedHashMap<>());
+			langMap.put(dialogue.getLanguage(), dialogue);
+		}
+		for (Map.Entry<String, Map<String, FileDescriptor>> entry :
+				dialogueLanguageMap.entrySet()) {
+			entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+		}
+		return Collections.unmodifiableMap(dialogueLanguageMap);
+	}
+
 }
@@ -0,0 +1,372 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A map of values by key, in which a missing value is created only once, even if it is requested
+ * by multiple threads at the same time. Every entry holds a {@link FutureTask}: the first thread
+ * that requests a missing key runs the creation, and all other threads that request the same key
+ * wait for that single creation. If the creation fails, the entry is removed again, so that a next
+ * request will try again.
+ *
+ * <p>A value is requested with {@link #acquire(String, Callable)}, which returns a {@link Lease}.
+ * As long as a lease has not been released, the value is in use and {@link
+ * #removeIfUnused(String, Object)} will not remove it.</p>
+ *
+ * <p>An action that must not run at the same time as the creation of a value, can be run with
+ * {@link #runIfAbsent(String, Callable)}. While it runs, requests for the same key wait, and they
+ * create the value after the action has finished. In the same way, a value can be closed after
+ * it was removed with {@link #removeIfUnused(String, Object, Runnable)}.</p>
+ *
+ * <p>The {@link ApplicationManager} uses this to keep the active {@link UserService}s.</p>
+ *
+ * @param <V> the type of the values.
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+class SingleFlightRegistry<V> {
+
+	private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+	// ---------------------------------------------------- //
+	// -------------------- Retrieving -------------------- //
+	// ---------------------------------------------------- //
+
+	/**
+	 * Returns a lease on the value for the given {@code key}. If there is no value yet and a
+	 * {@code creator} is given, the value is created with the {@code creator}, unless another
+	 * thread is already creating it, in which case this method waits for that creation. The value
+	 * is in use until the returned lease is released.
+	 *
+	 * @param key the key.
+	 * @param creator the function that creates the value if there is none, or {@code null} to
+	 *                only return an existing value.
+	 * @return the lease on the value, or {@code null} if there is no value and no {@code creator}
+	 *         was given.
+	 * @throws ExecutionException if the creation of the value failed (in this or another thread).
+	 * @throws InterruptedException if the thread was interrupted while waiting for the creation.
+	 */
+	Lease<V> acquire(String key, Callable<V> creator)
+			throws ExecutionException, InterruptedException {
+		while (true) {
+			Entry<V> entry = entries.get(key);
+			boolean created = false;
+			if (entry == null) {
+				if (creator == null)
+					return null;
+				Entry<V> newEntry = new Entry<>(new FutureTask<>(creator));
+				entry = entries.putIfAbsent(key, newEntry);
+				if (entry == null) {
+					entry = newEntry;
+					created = true;
+				}
+			}
+			// If the entry was removed after it was looked up, look up the key again
+			if (!entry.tryAcquire())
+				continue;
+			if (created)
+				entry.task.run();
+			try {
+				V value = entry.task.get();
+				if (entry.action) {
+					// The action has finished, so remove its entry and look up the key again
+					entry.release();
+					entries.remove(key, entry);
+					continue;
+				}
+				return new Lease<>(entry, value, created);
+			} catch (ExecutionException ex) {
+				entry.release();
+				entries.remove(key, entry);
+				if (entry.action)
+					continue;
+				throw ex;
+			} catch (InterruptedException ex) {
+				entry.release();
+				throw ex;
+			}
+		}
+	}
+
+	/**
+	 * Runs the given {@code action} if there is no value (and no value is being created) for the
+	 * given {@code key}. While the action runs, any thread that requests the key waits until the
+	 * action has finished, and then creates the value.
+	 *
+	 * @param key the key.
+	 * @param action the action to run.
+	 * @return {@code true} if the action was run, {@code false} if there is a value for the key,
+	 *         a value is being created, or another action is running for the key.
+	 * @throws ExecutionException if the action failed.
+	 * @throws InterruptedException if the thread was interrupted.
+	 */
+	boolean runIfAbsent(String key, Callable<?> action)
+			throws ExecutionException, InterruptedException {
+		Entry<V> entry = new Entry<>(new FutureTask<>(() -> {
+			action.call();
+			return null;
+		}), true);
+		if (entries.putIfAbsent(key, entry) != null)
+			return false;
+		try {
+			entry.task.run();
+		} finally {
+			entries.remove(key, entry);
+		}
+		entry.task.get();
+		return true;
+	}
+
+	/**
+	 * Returns the number of entries, including entries that are still being created.
+	 *
+	 * @return the number of entries.
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the values that have been created successfully.
+	 *
+	 * @return the created values.
+	 */
+	List<V> getCreatedValues() {
+		List<V> result = new ArrayList<>();
+		for (Entry<V> entry : entries.values()) {
+			V value = entry.getCompletedValue();
+			if (value != null)
+				result.add(value);
+		}
+		return result;
+	}
+
+	// -------------------------------------------------- //
+	// -------------------- Removing -------------------- //
+	// -------------------------------------------------- //
+
+	/**
+	 * Removes the entry for the given {@code key}, if its value is the given {@code value}, even
+	 * if the value is still in use. An entry that is still being created is never removed.
+	 *
+	 * @param key the key.
+	 * @param value the value that is expected for the key.
+	 * @return {@code true} if the entry was removed, {@code false} if the key has a different
+	 *         value, or no value.
+	 */
+	boolean remove(String key, V value) {
+		return remove(key, value, false, null);
+	}
+
+	/**
+	 * Removes the entry for the given {@code key} like {@link #remove(String, Object)}, and then
+	 * runs {@code onRemoved} before a new value can be created for the key. Threads that request
+	 * the key in the meantime wait until {@code onRemoved} has finished.
+	 *
+	 * @param key the key.
+	 * @param value the value that is expected for the key.
+	 * @param onRemoved the action to run after the entry was removed, for example to close the
+	 *                  value. It should handle its own errors.
+	 * @return {@code true} if the entry was removed, {@code false} if the key has a different
+	 *         value, or no value.
+	 */
+	boolean remove(String key, V value, Runnable onRemoved) {
+		return remove(key, value, false, onRemoved);
+	}
+
+	/**
+	 * Removes the entry for the given {@code key}, if its value is the given {@code value} and
+	 * the value is not in use (all leases on it have been released). An entry that is still being
+	 * created is never removed.
+	 *
+	 * @param key the key.
+	 * @param value the value that is expected for the key.
+	 * @return {@code true} if the entry was removed, {@code false} if the key has a different
+	 *         value, no value, or the value is in use.
+	 */
+	boolean removeIfUnused(String key, V value) {
+		return remove(key, value, true, null);
+	}
+
+	/**
+	 * Removes the entry for the given {@code key} like {@link #removeIfUnused(String, Object)},
+	 * and then runs {@code onRemoved} before a new value can be created for the key. Threads that
+	 * request the key in the meantime wait until {@code onRemoved} has finished.
+	 *
+	 * @param key the key.
+	 * @param value the value that is expected for the key.
+	 * @param onRemoved the action to run after the entry was removed, for example to close the
+	 *                  value. It should handle its own errors.
+	 * @return {@code true} if the entry was removed, {@code false} if the key has a different
+	 *         value, no value, or the value is in use.
+	 */
+	boolean removeIfUnused(String key, V value, Runnable onRemoved) {
+		return remove(key, value, true, onRemoved);
+	}
+
+	private boolean remove(String key, V value, boolean onlyIfUnused, Runnable onRemoved) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null || entry.getCompletedValue() != value)
+			return false;
+		if (!entry.markRemoved(onlyIfUnused))
+			return false;
+		if (onRemoved == null) {
+			entries.remove(key, entry);
+			return true;
+		}
+		// Replace the entry by an action entry, so that a new value is not created before
+		// onRemoved has finished
+		Entry<V> actionEntry = new Entry<>(new FutureTask<>(onRemoved, null), true);
+		boolean replaced = entries.replace(key, entry, actionEntry);
+		try {
+			actionEntry.task.run();
+		} finally {
+			if (replaced)
+				entries.remove(key, actionEntry);
+		}
+		return true;
+	}
+
+	// -------------------------------------------------------- //
+	// -------------------- Helper Classes -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * An entry in the registry: the task that creates the value, and the number of leases on the
+	 * value that have not been released yet. If {@code action} is true, the task is an action of
+	 * {@link #runIfAbsent(String, Callable)} or of a removal, and the entry has no value.
+	 *
+	 * @param <V> the type of the value.
+	 */
+	private static class Entry<V> {
+		private final FutureTask<V> task;
+		private final boolean action;
+		private int users = 0;
+		private boolean removed = false;
+
+		private Entry(FutureTask<V> task) {
+			this(task, false);
+		}
+
+		private Entry(FutureTask<V> task, boolean action) {
+			this.task = task;
+			this.action = action;
+		}
+
+		private synchronized boolean tryAcquire() {
+			if (removed)
+				return false;
+			users++;
+			return true;
+		}
+
+		private synchronized void release() {
+			users--;
+		}
+
+		private synchronized boolean markRemoved(boolean onlyIfUnused) {
+			if (removed || (onlyIfUnused && users > 0))
+				return false;
+			removed = true;
+			return true;
+		}
+
+		/**
+		 * Returns the value if it has been created successfully, or {@code null} if it is still
+		 * being created or if creation failed.
+		 *
+		 * @return the value or {@code null}.
+		 */
+		private V getCompletedValue() {
+			if (!task.isDone())
+				return null;
+			try {
+				return task.get();
+			} catch (InterruptedException | ExecutionException ex) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * A lease on a value, returned by {@link #acquire(String, Callable)}. The value is in use
+	 * until {@link #release()} is called.
+	 *
+	 * @param <V> the type of the value.
+	 */
+	static class Lease<V> {
+		private final Entry<V> entry;
+		private final V value;
+		private final boolean created;
+		private boolean released = false;
+
+		private Lease(Entry<V> entry, V value, boolean created) {
+			this.entry = entry;
+			this.value = value;
+			this.created = created;
+		}
+
+		/**
+		 * Returns the value.
+		 *
+		 * @return the value.
+		 */
+		V value() {
+			return value;
+		}
+
+		/**
+		 * Returns whether the value was created by the call that returned this lease.
+		 *
+		 * @return {@code true} if the value was created by the call, {@code false} if it already
+		 *         existed or was created by another thread.
+		 */
+		boolean created() {
+			return created;
+		}
+
+		/**
+		 * Releases this lease. Calling this method more than once has no effect.
+		 */
+		void release() {
+			if (released)
+				return;
+			released = true;
+			entry.release();
+		}
+	}
+
+}
@@ -37,20 +37,21 @@ import com.dialoguebranch.web.service.storage.*;
 import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.utils.exception.ParseException;
-import nl.rrd.utils.i18n.I18nLanguageFinder;
-import nl.rrd.utils.i18n.I18nUtils;
 import org.slf4j.Logger;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.context.annotation.Bean;
-import org.springframework.http.*;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponents;
-import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 
 import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * A {@link UserService} is a service class that handles all communication with the Dialogue Branch
@@ -61,6 +62,9 @@ import java.util.*;
  */
 public class UserService {
 
+	/** Pattern for the max-age (in seconds) in a Cache-Control header */
+	private static final Pattern MAX_AGE_PATTERN = Pattern.compile("max-age=(\\d{1,9})");
+
 	/** The dialogue branch user associated with this UserService */
 	private final User dialogueBranchUser;
 
@@ -73,8 +77,17 @@ public class UserService {
 
 	private TranslationContext translationContext = null;
 
-	// dialogueLanguageMap: map from dialogue name -> language -> dialogue description
-	protected Map<String, Map<String, FileDescriptor>> dialogueLanguageMap = new LinkedHashMap<>();
+	/** The time (epoch milliseconds) at which this UserService was last requested */
+	private volatile long lastAccessTime = System.currentTimeMillis();
+
+	/**
+	 * The time (epoch milliseconds) until which variables that were retrieved from the External
+	 * Variable Service are considered up-to-date, by variable name.
+	 */
+	private final Map<String, Long> externalVariablesFreshUntil = new ConcurrentHashMap<>();
+
+	/** The running or last prefetch of external variables, or {@code null} */
+	private volatile Future<?> externalVariablePrefetch = null;
 
 	// --------------------------------------------------------
 	// -------------------- Constructor(s) --------------------
@@ -87,18 +100,18 @@ public class UserService {
 	 * @param dialogueBranchUser The {@link User} for which this {@link UserService} is handling the
 	 *                           interactions.
 	 * @param applicationManager the server's {@link ApplicationManager} instance.
-	 * @param onVarChangeListener the {@link VariableStoreOnChangeListener} that will be added
-	 *                            to the {@link VariableStore} instance that this
-	 *                            {@link UserService} creates.
+	 * @param storageHandler the {@link VariableStoreStorageHandler} that is used to read the
+	 *                       variables of the user, and that will be added as a listener to the
+	 *                       {@link VariableStore} instance that this {@link UserService} creates,
+	 *                       so that it writes all changes.
 	 */
 	public UserService(User dialogueBranchUser, ApplicationManager applicationManager,
-					   VariableStoreOnChangeListener onVarChangeListener)
+					   VariableStoreStorageHandler storageHandler)
 			throws DatabaseException, IOException {
 
 		this.dialogueBranchUser = dialogueBranchUser;
 		this.applicationManager = applicationManager;
 
-		VariableStoreStorageHandler storageHandler = new VariableStoreDatabaseStorageHandler();
 		try {
 			this.variableStore = storageHandler.read(dialogueBranchUser);
 		} catch (ParseException ex) {
@@ -108,24 +121,16 @@ public class UserService {
 
 		Configuration config = AppComponents.get(Configuration.class);
 
-		this.variableStore.addOnChangeListener(onVarChangeListener);
+		this.variableStore.addOnChangeListener(storageHandler);
 
 		if(config.getExternalVariableServiceEnabled()) {
-			this.variableStore.addOnChangeListener(new ExternalVariableServiceUpdater());
+			this.variableStore.addOnChangeListener(new ExternalVariableServiceUpdater(
+					applicationManager.getExternalVariableNotifier()));
 		}
 
 		dialogueExecutor = new DialogueExecutor(this);
 
 		loggedDialogueStore = new LoggedDialogueStore(dialogueBranchUser.getId(), this);
-
-		// create dialogueLanguageMap
-		List<FileDescriptor> dialogues = applicationManager.getDialogueDescriptions();
-		for (FileDescriptor dialogue : dialogues) {
-			Map<String, FileDescriptor> langMap =
-				dialogueLanguageMap.computeIfAbsent(dialogue.getDialogueName(),
-						k -> new LinkedHashMap<>());
-			langMap.put(dialogue.getLanguage(), dialogue);
-		}
 	}
 
 
@@ -187,6 +192,48 @@ public class UserService {
 		return loggedDialogueStore;
 	}
 
+	/**
+	 * Returns the time (epoch milliseconds) at which this {@link UserService} was last requested
+	 * from the {@link ApplicationManager}.
+	 * @return the time at which this {@link UserService} was last requested.
+	 */
+	public long getLastAccessTime() {
+		return lastAccessTime;
+	}
+
+	/**
+	 * Marks this {@link UserService} as being used at the current time. This is called by the
+	 * {@link ApplicationManager} whenever this {@link UserService} is requested, and determines
+	 * when it is considered idle.
+	 */
+	public void touch() {
+		lastAccessTime = System.currentTimeMillis();
+	}
+
+	// -------------------------------------------------------------------
+	// -------------------- Other Methods: Life Cycle --------------------
+	// -------------------------------------------------------------------
+
+	/**
+	 * Closes this {@link UserService}. This is called by the {@link ApplicationManager} when this
+	 * {@link UserService} is removed from memory, either because it was idle or because of the
+	 * limit on the number of active user services, and when the service shuts down. When this
+	 * method returns, all changes made through this {@link UserService} have been written to
+	 * persistent storage. A new {@link UserService} for the same user can be created afterwards
+	 * and will read back the same state.
+	 */
+	public void close() {
+		logger.info("Closing UserService for user '{}'.", dialogueBranchUser.getId());
+		if(applicationManager.getVariableStoreWriter() != null)
+			applicationManager.getVariableStoreWriter().flush(dialogueBranchUser.getId());
+		try {
+			loggedDialogueStore.close();
+		} catch (DatabaseException | IOException ex) {
+			logger.error("Failed to write dialogue session logs for user '{}': {}",
+					dialogueBranchUser.getId(), ex.getMessage(), ex);
+		}
+	}
+
 	// ---------------------------------------------------------------------------
 	// -------------------- Other Methods: Dialogue Execution --------------------
 	// ---------------------------------------------------------------------------
@@ -328,10 +375,73 @@ public class UserService {
 	 * config.getExternalVariableServiceEnabled() == false} this method will cause no changes to
 	 * occur.
 	 *
+	 * <p>Variables that were retrieved within the cache time (see {@link
+	 * Configuration#getExternalVariableServiceCacheTtlMs()}) are not retrieved again. If variables
+	 * are being prefetched (see {@link #prefetchVariablesFromExternalService(Set,
+	 * ExecutorService)}), this method first waits for the prefetch to complete.</p>
+	 *
 	 * @param variableNames the set of DialogueBranch Variables that need to have their values
 	 *                      updated.
 	 */
 	public void updateVariablesFromExternalService(Set<String> variableNames) {
+		awaitExternalVariablePrefetch();
+		retrieveVariablesFromExternalService(variableNames);
+	}
+
+	/**
+	 * Starts retrieving the given {@code variableNames} from the External Variable Service in the
+	 * background, so that a following dialogue start finds up-to-date values in the {@link
+	 * VariableStore}. If a prefetch is still running, or the {@code executor} does not accept
+	 * more tasks, this method does nothing.
+	 *
+	 * @param variableNames the set of DialogueBranch Variables to retrieve.
+	 * @param executor the executor that runs the prefetch.
+	 */
+	public synchronized void prefetchVariablesFromExternalService(Set<String> variableNames,
+			ExecutorService executor) {
+		if(externalVariablePrefetch != null && !externalVariablePrefetch.isDone())
+			return;
+		try {
+			externalVariablePrefetch = executor.submit(
+					() -> retrieveVariablesFromExternalService(variableNames));
+		} catch (RejectedExecutionException ex) {
+			logger.warn("Skipped prefetching external variables for user '{}': too many " +
+					"prefetches waiting.", dialogueBranchUser.getId());
+		}
+	}
+
+	/**
+	 * Waits until a running prefetch of external variables has completed. It does not wait longer
+	 * than a retrieve-updates call to the External Variable Service can take (see {@link
+	 * ExternalVariableServiceClient#getRetrieveWaitTimeoutMs()}).
+	 */
+	private void awaitExternalVariablePrefetch() {
+		Future<?> prefetch = externalVariablePrefetch;
+		if(prefetch == null || prefetch.isDone())
+			return;
+		ExternalVariableServiceClient client =
+				applicationManager.getExternalVariableServiceClient();
+		if(client == null)
+			return;
+		try {
+			prefetch.get(client.getRetrieveWaitTimeoutMs(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} catch (java.util.concurrent.ExecutionException | TimeoutException ex) {
+			logger.warn("Prefetch of external variables for user '{}' did not complete: {}",
+					dialogueBranchUser.getId(), ex.getMessage());
+		}
+	}
+
+	/**
+	 * Retrieves the given {@code variableNames} that are not up-to-date from the External
+	 * Variable Service (if one has been configured), and stores the updated values in the {@link
+	 * VariableStore}.
+	 *
+	 * @param variableNames the set of DialogueBranch Variables that need to have their values
+	 *                      updated.
+	 */
+	private void retrieveVariablesFromExternalService(Set<String> variableNames) {
         logger.info("Attempting to update values from external service for the following set " +
 				"of variables: {}", variableNames);
 
@@ -342,8 +452,24 @@ public class UserService {
 					config.getExternalVariableServiceURL(),
 					config.getExternalVariableServiceAPIVersion());
 
-			List<Variable> varsToUpdate = new ArrayList<>();
+			// Skip the variables that were retrieved recently
+			long now = System.currentTimeMillis();
+			Set<String> staleVariableNames = new LinkedHashSet<>();
 			for(String variableName : variableNames) {
+				Long freshUntil = externalVariablesFreshUntil.get(variableName);
+				if(freshUntil == null || freshUntil <= now)
+					staleVariableNames.add(variableName);
+			}
+			applicationManager.countExternalVariableCacheLookups(
+					variableNames.size() - staleVariableNames.size(), staleVariableNames.size());
+			if(staleVariableNames.isEmpty()) {
+				logger.info("All variables were retrieved from the external variable service " +
+						"recently, no variables have been updated.");
+				return;
+			}
+
+			List<Variable> varsToUpdate = new ArrayList<>();
+			for(String variableName : staleVariableNames) {
 				Variable variable = variableStore.getVariable(variableName);
 				if(variable != null) {
                     logger.info("A DialogueBranch Variable '{}' exists for User '{}': {}",
@@ -359,52 +485,28 @@ public class UserService {
 				}
 			}
 
-			RestTemplate restTemplate = new RestTemplate();
-			HttpHeaders requestHeaders = new HttpHeaders();
-			requestHeaders.setContentType(MediaType.valueOf("application/json"));
-			requestHeaders.set("Authorization", "Bearer "
-					+ config.getExternalVariableServiceAPIKey());
-
-			String retrieveUpdatesUrl = config.getExternalVariableServiceURL()
-					+ "/v"+config.getExternalVariableServiceAPIVersion()
-					+ "/variables/retrieve-updates";
-
-            logger.info("RetrieveUpdatesURL: {}", retrieveUpdatesUrl);
-
-			LinkedMultiValueMap<String,String> allRequestParams = new LinkedMultiValueMap<>();
-			allRequestParams.put("userId", Collections.singletonList(dialogueBranchUser.getId()));
-			allRequestParams.put("timeZone", Collections.singletonList(
-					dialogueBranchUser.getTimeZone().toString()));
-
-			// requestBody is of string type and requestHeaders is of type HttpHeaders
-			HttpEntity<?> entity = new HttpEntity<>(varsToUpdate, requestHeaders);
-
-			// rawValidURl = http://example.com/hotels
-			UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(retrieveUpdatesUrl)
-					.queryParams(allRequestParams); // The allRequestParams must have been built
-			                                        // for all the query params
-
-			// encode() is to ensure that characters like {, }, are preserved and not encoded.
-			// Skip if not needed.
-			UriComponents uriComponents = builder.build().encode();
-
 			Variable[] retrievedVariables = null;
-			ResponseEntity<Variable[]> response = null;
 			try {
-				response = restTemplate.exchange(uriComponents.toUri(), HttpMethod.POST,
-						entity, Variable[].class);
-
-				// If call not successful
-				if (response.getStatusCode() != HttpStatus.OK) {
-					logger.warn("Error retrieving updates from external variable service.");
+				ResponseEntity<Variable[]> response =
+						applicationManager.getExternalVariableServiceClient().retrieveUpdates(
+								dialogueBranchUser.getId(),
+								dialogueBranchUser.getTimeZone().toString(), varsToUpdate);
+				retrievedVariables = response.getBody();
+
+				long cacheTtlMs = getExternalVariableCacheTtlMs(config, response.getHeaders());
+				if(cacheTtlMs > 0) {
+					for(String variableName : staleVariableNames) {
+						externalVariablesFreshUntil.put(variableName, now + cacheTtlMs);
+					}
 				}
+			} catch (ExternalVariableServiceClient.CircuitOpenException e) {
+				logger.warn("External variable service is unavailable, continuing with the " +
+						"current values of the Dialogue Branch Variables.");
 			} catch (Exception e) {
 				logger.error("Critical Error retrieving updates for Dialogue Branch Variables. " +
 						"Continuing operation while assuming no updates were needed.",e);
 			}
 
-			if(response != null) retrievedVariables = response.getBody();
-
 			if (retrievedVariables != null) {
 				if (retrievedVariables.length == 0) {
 					logger.info("Received response from Dialogue Branch Variable Service: " +
@@ -436,9 +538,26 @@ public class UserService {
 		}
 	}
 
-	@Bean
-	public RestTemplate restTemplate(RestTemplateBuilder builder) {
-		return builder.build();
+	/**
+	 * Returns the number of milliseconds during which variables that were retrieved from the
+	 * External Variable Service are not retrieved again. This is the configured cache time,
+	 * unless the External Variable Service returned a max-age in its Cache-Control header and
+	 * {@link Configuration#getExternalVariableServiceCacheHonourMaxAge()} is enabled.
+	 *
+	 * @param config the {@link Configuration} of the service.
+	 * @param headers the headers of the response of the External Variable Service.
+	 * @return the cache time in milliseconds (0 if variables should not be cached).
+	 */
+	private long getExternalVariableCacheTtlMs(Configuration config, HttpHeaders headers) {
+		String cacheControl = headers.getCacheControl();
+		if(config.getExternalVariableServiceCacheHonourMaxAge() && cacheControl != null) {
+			if(cacheControl.contains("no-store") || cacheControl.contains("no-cache"))
+				return 0;
+			Matcher matcher = MAX_AGE_PATTERN.matcher(cacheControl);
+			if(matcher.find())
+				return Long.parseLong(matcher.group(1)) * 1000;
+		}
+		return config.getExternalVariableServiceCacheTtlMs();
 	}
 
 	// ----- Methods (Retrieval)
@@ -451,29 +570,7 @@ public class UserService {
 	 * @return a list of dialogue names
 	 */
 	public List<FileDescriptor> getAvailableDialogues(String language) {
-		List<FileDescriptor> filteredAvailableDialogues =
-				new ArrayList<>();
-		Locale prefLocale;
-		try {
-			prefLocale = I18nUtils.languageTagToLocale(language);
-		} catch (ParseException ex) {
-            logger.error("{}: {}", String.format(
-                    "Invalid language tag \"%s\", falling back to system locale",
-                    language), ex.getMessage());
-			prefLocale = Locale.getDefault();
-		}
-		for (Map<String, FileDescriptor> langMap :
-				dialogueLanguageMap.values()) {
-			List<String> keys = new ArrayList<>(langMap.keySet());
-			I18nLanguageFinder i18nFinder = new I18nLanguageFinder(keys);
-			i18nFinder.setUserLocale(prefLocale);
-			String lang = i18nFinder.find();
-			if (lang != null)
-				filteredAvailableDialogues.add(langMap.get(lang));
-			else if (!keys.isEmpty())
-				filteredAvailableDialogues.add(langMap.get(keys.get(0)));
-		}
-		return filteredAvailableDialogues;
+		return new ArrayList<>(applicationManager.resolveDialogues(language).values());
 	}
 
 	/**
@@ -488,12 +585,7 @@ public class UserService {
 	 */
 	public FileDescriptor getDialogueDescriptionFromId(
 			String dialogueId, String language) {
-		for (FileDescriptor dialogueDescription : this.getAvailableDialogues(language)) {
-			if (dialogueDescription.getDialogueName().equals(dialogueId)) {
-				return dialogueDescription;
-			}
-		}
-		return null;
+		return applicationManager.resolveDialogues(language).get(dialogueId);
 	}
 
 	/**
@@ -33,16 +33,45 @@ import jakarta.persistence.*;
 
 import java.util.UUID;
 
+/**
+ * A Dialogue Branch Variable of a {@link DBUser} as stored in the database. The value is stored
+ * in a column that matches its type (see {@link ValueType}), so that it does not need to be parsed
+ * when it is read. Lists and maps are stored as JSON strings. Variables that were stored before
+ * the value type was introduced only have a JSON string in the legacy "value" column and a {@code
+ * null} value type.
+ *
+ * <p>The unique constraint on (user, name) also serves as the index for reading all variables of
+ * a user, or a variable by name.</p>
+ */
 @Entity
 @Table(
 	name = "variables",
 	uniqueConstraints = {
 		@UniqueConstraint(
 			name = "user_name",
-			columnNames = { "user, name" }
+			columnNames = { "user_id", "name" }
 		)
 	})
 public class DBVariable {
+
+	/**
+	 * The type of the value of a {@link DBVariable}, which defines the column that holds the value.
+	 */
+	public enum ValueType {
+		/** The value is null */
+		NULL,
+		/** The value is a boolean, stored in longValue as 0 or 1 */
+		BOOLEAN,
+		/** The value is an integer number, stored in longValue */
+		LONG,
+		/** The value is a floating point number, stored in doubleValue */
+		DOUBLE,
+		/** The value is a string, stored in stringValue */
+		STRING,
+		/** The value is a list or map, stored in stringValue as JSON */
+		JSON
+	}
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.UUID)
 	private UUID id;
@@ -53,11 +82,33 @@ public class DBVariable {
 
 	private String name;
 
+	/** The legacy value as a JSON string, only set if {@link #valueType} is null */
 	private String value;
 
+	@Enumerated(EnumType.STRING)
+	@Column(length = 16)
+	private ValueType valueType;
+
+	private Long longValue;
+
+	private Double doubleValue;
+
+	@Lob
+	private String stringValue;
+
+	/** The time at which the variable was last updated (epoch milliseconds) */
+	private Long updatedTime;
+
+	/** The time zone in which the variable was last updated */
+	private String updatedTimeZone;
+
 	public DBVariable() {
 	}
 
+	public DBVariable(String name) {
+		this.name = name;
+	}
+
 	public DBVariable(String name, String value) {
 		this.name = name;
 		this.value = value;
@@ -94,4 +145,52 @@ public class DBVariable {
 	public void setValue(String value) {
 		this.value = value;
 	}
+
+	public ValueType getValueType() {
+		return valueType;
+	}
+
+	public void setValueType(ValueType valueType) {
+		this.valueType = valueType;
+	}
+
+	public Long getLongValue() {
+		return longValue;
+	}
+
+	public void setLongValue(Long longValue) {
+		this.longValue = longValue;
+	}
+
+	public Double getDoubleValue() {
+		return doubleValue;
+	}
+
+	public void setDoubleValue(Double doubleValue) {
+		this.doubleValue = doubleValue;
+	}
+
+	public String getStringValue() {
+		return stringValue;
+	}
+
+	public void setStringValue(String stringValue) {
+		this.stringValue = stringValue;
+	}
+
+	public Long getUpdatedTime() {
+		return updatedTime;
+	}
+
+	public void setUpdatedTime(Long updatedTime) {
+		this.updatedTime = updatedTime;
+	}
+
+	public String getUpdatedTimeZone() {
+		return updatedTimeZone;
+	}
+
+	public void setUpdatedTimeZone(String updatedTimeZone) {
+		this.updatedTimeZone = updatedTimeZone;
+	}
 }
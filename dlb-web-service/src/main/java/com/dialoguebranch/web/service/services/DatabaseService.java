@@ -28,9 +28,14 @@
 
 package com.dialoguebranch.web.service.services;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import jakarta.persistence.Entity;
 import nl.rrd.utils.AppComponents;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.jpa.HibernatePersistenceConfiguration;
 import org.hibernate.service.spi.ServiceException;
 import org.hibernate.tool.schema.Action;
@@ -39,6 +44,7 @@ import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 
 import java.util.List;
@@ -46,7 +52,10 @@ import java.util.Set;
 
 @Configuration
 public class DatabaseService {
+	// Created on first use, so that the service can run without a database if variables are not
+	// stored in the database (see Configuration.getVariableStorage())
 	@Bean
+	@Lazy
 	public SessionFactory sessionFactory() {
 		com.dialoguebranch.web.service.Configuration cfg =
 				com.dialoguebranch.web.service.Configuration.getInstance();
@@ -63,12 +72,28 @@ public class DatabaseService {
 		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 		int retryCount = 0;
 		while (true) {
+			SessionFactory sessionFactory;
 			try {
-				return hibernateConfig
+				sessionFactory = hibernateConfig
 						.jdbcUrl("jdbc:mariadb://" + cfg.getMariadbHost() + ":" + cfg.getMariadbPort() +
 								"/" + cfg.getMariadbDatabase() + "?createDatabaseIfNotExist=true")
 						.jdbcCredentials(cfg.getMariadbUser(), cfg.getMariadbPassword())
 						.schemaToolingAction(Action.UPDATE)
+						// Pooled connections (HikariCP), selected by the short name that the
+						// hibernate-hikaricp module registers
+						.property(AvailableSettings.CONNECTION_PROVIDER, "hikaricp")
+						.property("hibernate.hikari.poolName", "DialogueBranch")
+						.property("hibernate.hikari.maximumPoolSize",
+								String.valueOf(cfg.getMariadbPoolMaxSize()))
+						.property("hibernate.hikari.minimumIdle",
+								String.valueOf(cfg.getMariadbPoolMinIdle()))
+						.property("hibernate.hikari.connectionTimeout",
+								String.valueOf(cfg.getMariadbPoolConnectionTimeoutMs()))
+						// Group inserts and updates per table into JDBC batches
+						.property(AvailableSettings.STATEMENT_BATCH_SIZE,
+								String.valueOf(cfg.getMariadbJdbcBatchSize()))
+						.property(AvailableSettings.ORDER_INSERTS, "true")
+						.property(AvailableSettings.ORDER_UPDATES, "true")
 						.createEntityManagerFactory();
 			} catch (ServiceException ex) {
 				if (retryCount < 30) {
@@ -78,10 +103,68 @@ public class DatabaseService {
 					throw ex;
 				}
 				retryCount++;
+				continue;
 			}
+			addVariableUniqueConstraint(sessionFactory, logger);
+			return sessionFactory;
 		}
 	}
 
+	/**
+	 * Adds the unique constraint on (user_id, name) to the "variables" table, if the schema update
+	 * could not add it. The schema update does not remove duplicate variables that were stored
+	 * before the constraint existed, so adding the constraint fails if there are any. This method
+	 * first deletes those duplicates, keeping the most recently updated variable of each user and
+	 * name, and then adds the constraint.
+	 *
+	 * @param sessionFactory the {@link SessionFactory} with the updated schema.
+	 * @param logger the logger.
+	 */
+	private void addVariableUniqueConstraint(SessionFactory sessionFactory, Logger logger) {
+		sessionFactory.inTransaction(session -> {
+			Number constraintCount = session.createNativeQuery(
+					"select count(*) from information_schema.TABLE_CONSTRAINTS " +
+							"where TABLE_SCHEMA = database() and TABLE_NAME = 'variables' " +
+							"and CONSTRAINT_NAME = 'user_name'", Number.class)
+					.getSingleResult();
+			if (constraintCount.intValue() > 0)
+				return;
+			int deleted = session.createNativeMutationQuery(
+					"delete v from variables v join variables newer " +
+							"on newer.user_id = v.user_id and newer.name = v.name " +
+							"and (coalesce(newer.updatedTime, 0) > coalesce(v.updatedTime, 0) " +
+							"or (coalesce(newer.updatedTime, 0) = coalesce(v.updatedTime, 0) " +
+							"and newer.id > v.id))")
+					.executeUpdate();
+			if (deleted > 0) {
+				logger.warn("Deleted " + deleted + " duplicate variables before adding the " +
+						"unique constraint on (user_id, name).");
+			}
+			session.createNativeMutationQuery("alter table variables " +
+							"add constraint user_name unique (user_id, name)")
+					.executeUpdate();
+			logger.info("Added unique constraint on (user_id, name) to table variables.");
+		});
+	}
+
+	/**
+	 * Returns the management bean of the connection pool of the given {@code sessionFactory},
+	 * which provides the current pool metrics, or {@code null} if the pool is not (yet) available.
+	 *
+	 * @param sessionFactory the {@link SessionFactory} created by this service.
+	 * @return the {@link HikariPoolMXBean} or {@code null}.
+	 */
+	public static HikariPoolMXBean getConnectionPoolMXBean(SessionFactory sessionFactory) {
+		ConnectionProvider connectionProvider = sessionFactory
+				.unwrap(SessionFactoryImplementor.class)
+				.getServiceRegistry()
+				.getService(ConnectionProvider.class);
+		if (connectionProvider == null ||
+				!connectionProvider.isUnwrappableAs(HikariDataSource.class))
+			return null;
+		return connectionProvider.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+	}
+
 	private void wait(int ms) {
 		long now = System.currentTimeMillis();
 		long end = now + ms;
@@ -31,11 +31,13 @@ package com.dialoguebranch.web.service.services;
 import jakarta.annotation.PostConstruct;
 import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 @Service
 public class DatabaseTestService {
 	@Autowired
+	@Lazy
 	private SessionFactory sessionFactory;
 
 	@PostConstruct
@@ -119,6 +119,25 @@ public class AzureDataLakeStore {
 		}
 	}
 
+	/**
+	 * Deletes the file with the same name as the given {@code file} for the given {@code user} from
+	 * the Azure Data Lake, if it exists.
+	 * @param user the identifier of the user to which the file belongs.
+	 * @param file the file to delete from the Azure Data Lake.
+	 */
+	public void deleteLoggedDialogueFile(String user, File file) {
+		DataLakeDirectoryClient directoryClient =
+				dataLakeFileSystemClient.getDirectoryClient(
+						config.getDirectoryNameDialogues() + "/" + user);
+		DataLakeFileClient fileClient = directoryClient.getFileClient(file.getName());
+		try {
+			fileClient.deleteIfExists();
+		} catch(RuntimeException e) {
+			logger.error("Failed to delete dialogue log session '"
+					+ file.getName() + "' from Azure Data Lake.");
+		}
+	}
+
 	/**
 	 * Writes an application log file to the Azure Data Lake.
 	 * @param file the log file to write.
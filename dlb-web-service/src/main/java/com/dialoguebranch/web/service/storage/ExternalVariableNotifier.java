@@ -0,0 +1,634 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.execution.Variable;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import nl.rrd.utils.AppComponents;
+import org.slf4j.Logger;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link ExternalVariableNotifier} sends notifications about changed variables to the External
+ * Variable Service in the background, so that changing a variable does not wait for the External
+ * Variable Service. Notifications are sent by a single thread through the {@link
+ * ExternalVariableServiceClient}, in the order in which they were queued.
+ *
+ * <p>While a notification for a user is waiting, later updates of the same user are merged into
+ * it, so that a series of changes results in a single call. If a call fails, it is retried with
+ * an exponentially increasing delay. A call that is rejected by the External Variable Service
+ * (HTTP 4xx) is not retried.</p>
+ *
+ * <p>Notifications that do not fit in memory, or that are queued while the External Variable
+ * Service cannot be reached, are written to spill files in a directory under the data
+ * directory. These are sent when the queue in memory is empty. When the service shuts down, the
+ * remaining notifications in memory are written to a spill file as well, so that they are sent
+ * after a restart.</p>
+ *
+ * <p>There is one {@link ExternalVariableNotifier} for the application, which is owned by the
+ * {@link com.dialoguebranch.web.service.execution.ApplicationManager}.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class ExternalVariableNotifier {
+
+	/** Delay before the first retry of a failed notification */
+	private static final long INITIAL_RETRY_DELAY_MS = 1000;
+
+	/** Maximum time to wait for the notification thread to finish when closing */
+	private static final long CLOSE_TIMEOUT_MS = 30000;
+
+	private static final String SPILL_FILE_EXTENSION = ".jsonl";
+
+	/** Thread-safe reader for spilled notifications */
+	private static final ObjectReader NOTIFICATION_READER =
+			new ObjectMapper().readerFor(Notification.class);
+
+	/** Thread-safe writer for spilled notifications */
+	private static final ObjectWriter NOTIFICATION_WRITER = new ObjectMapper()
+			.registerModule(new JavaTimeModule())
+			.configure(SerializationFeature.WRITE_DATES_WITH_CONTEXT_TIME_ZONE, true)
+			.writerFor(Notification.class);
+
+	private final Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+	private final ExternalVariableServiceClient client;
+	private final File spillDirectory;
+	private final int maxQueued;
+	private final long maxRetryDelayMs;
+	private final Thread thread;
+
+	// The following fields are guarded by this object
+
+	/** The notifications in memory, in the order in which they are sent */
+	private final Deque<Notification> queue = new ArrayDeque<>();
+
+	/** The last queued update notification per user ID that later updates can be merged into */
+	private final Map<String, Notification> mergeableUpdates = new HashMap<>();
+
+	/** The number of notifications per spill file, by sequence number (oldest first) */
+	private final TreeMap<Long, Integer> spillFiles = new TreeMap<>();
+
+	private long nextSpillSequence = 0;
+	private int spilledCount = 0;
+	private boolean failing = false;
+	private boolean closed = false;
+
+	private final AtomicLong deliveredCount = new AtomicLong();
+	private final AtomicLong retryCount = new AtomicLong();
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of an {@link ExternalVariableNotifier} that sends notifications through
+	 * the given {@code client}. Notifications that were spilled to the given {@code
+	 * spillDirectory} before, are sent first.
+	 *
+	 * @param client the {@link ExternalVariableServiceClient}.
+	 * @param spillDirectory the directory for spill files.
+	 * @param maxQueued the maximum number of notifications in memory, which is also the maximum
+	 *                  number of notifications in a spill file.
+	 * @param maxRetryDelayMs the maximum delay in milliseconds between retries.
+	 */
+	public ExternalVariableNotifier(ExternalVariableServiceClient client, File spillDirectory,
+			int maxQueued, long maxRetryDelayMs) {
+		this.client = client;
+		this.spillDirectory = spillDirectory;
+		this.maxQueued = Math.max(1, maxQueued);
+		this.maxRetryDelayMs = Math.max(INITIAL_RETRY_DELAY_MS, maxRetryDelayMs);
+		findSpillFiles();
+		thread = new Thread(this::run, "ExternalVariableNotifier");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// ----------------------------------------------------------- //
+	// -------------------- Getters & Setters -------------------- //
+	// ----------------------------------------------------------- //
+
+	/**
+	 * Returns the number of notifications that are waiting to be sent, both in memory and in
+	 * spill files.
+	 *
+	 * @return the number of notifications that are waiting to be sent.
+	 */
+	public synchronized int getQueueDepth() {
+		return queue.size() + spilledCount;
+	}
+
+	/**
+	 * Returns the number of notifications that are waiting in spill files.
+	 *
+	 * @return the number of notifications that are waiting in spill files.
+	 */
+	public synchronized int getSpilledCount() {
+		return spilledCount;
+	}
+
+	/**
+	 * Returns the number of milliseconds that the oldest notification in memory has been waiting,
+	 * or 0 if no notifications are waiting in memory.
+	 *
+	 * @return the delivery lag in milliseconds.
+	 */
+	public synchronized long getDeliveryLagMs() {
+		Notification oldest = queue.peek();
+		if (oldest == null)
+			return 0;
+		return Math.max(0, System.currentTimeMillis() - oldest.getTime());
+	}
+
+	/**
+	 * Returns the number of notifications that were sent since the start of the service.
+	 *
+	 * @return the number of notifications that were sent.
+	 */
+	public long getDeliveredCount() {
+		return deliveredCount.get();
+	}
+
+	/**
+	 * Returns the number of failed calls that were retried since the start of the service.
+	 *
+	 * @return the number of retries.
+	 */
+	public long getRetryCount() {
+		return retryCount.get();
+	}
+
+	// --------------------------------------- //
+	// ---------- Public Operations ---------- //
+	// --------------------------------------- //
+
+	/**
+	 * Queues a notification that the given {@code variables} of a user were changed.
+	 *
+	 * @param userId the identifier of the user.
+	 * @param timeZone the time zone of the user (IANA name).
+	 * @param variables the changed variables (with value {@code null} for removed variables).
+	 */
+	public void notifyUpdated(String userId, String timeZone, List<Variable> variables) {
+		enqueue(new Notification(Notification.TYPE_UPDATED, userId, timeZone,
+				new ArrayList<>(variables)));
+	}
+
+	/**
+	 * Queues a notification that all variables of a user were removed.
+	 *
+	 * @param userId the identifier of the user.
+	 * @param timeZone the time zone of the user (IANA name).
+	 */
+	public void notifyCleared(String userId, String timeZone) {
+		enqueue(new Notification(Notification.TYPE_CLEARED, userId, timeZone, null));
+	}
+
+	/**
+	 * Stops sending notifications, and writes the notifications that are still in memory to a
+	 * spill file, so that they are sent after a restart. This is called when the service shuts
+	 * down.
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			thread.join(CLOSE_TIMEOUT_MS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			if (queue.isEmpty())
+				return;
+			long sequence = spillFiles.isEmpty() ? nextSpillSequence++ :
+					spillFiles.firstKey() - 1;
+			try {
+				writeSpillFile(sequence, queue);
+				spillFiles.put(sequence, queue.size());
+				spilledCount += queue.size();
+				logger.info("Saved {} unsent external variable service notifications.",
+						queue.size());
+				queue.clear();
+				mergeableUpdates.clear();
+			} catch (IOException ex) {
+				logger.error("Failed to save {} unsent external variable service " +
+						"notifications: {}", queue.size(), ex.getMessage(), ex);
+			}
+		}
+	}
+
+	// ---------------------------------------- //
+	// ---------- Private Operations ---------- //
+	// ---------------------------------------- //
+
+	/**
+	 * Queues the given {@code notification}. If the queue in memory is full, the External
+	 * Variable Service is failing, or there are spilled notifications that must be sent first,
+	 * the notification is written to a spill file.
+	 *
+	 * @param notification the notification.
+	 */
+	private synchronized void enqueue(Notification notification) {
+		if (closed || failing || !spillFiles.isEmpty() || queue.size() >= maxQueued) {
+			try {
+				spill(notification);
+				return;
+			} catch (IOException ex) {
+				logger.error("Failed to spill external variable service notification for " +
+						"user '{}', keeping it in memory: {}", notification.getUserId(),
+						ex.getMessage(), ex);
+			}
+		}
+		addToQueue(notification);
+		notifyAll();
+	}
+
+	/**
+	 * Adds the given {@code notification} to the queue in memory. If it is an update and an
+	 * update of the same user is still waiting, it is merged into that update.
+	 *
+	 * @param notification the notification.
+	 */
+	private void addToQueue(Notification notification) {
+		String userId = notification.getUserId();
+		if (notification.getType().equals(Notification.TYPE_UPDATED)) {
+			Notification waitingUpdate = mergeableUpdates.get(userId);
+			if (waitingUpdate != null) {
+				waitingUpdate.merge(notification);
+				return;
+			}
+			mergeableUpdates.put(userId, notification);
+		} else {
+			// Updates queued after this notification may not be merged into earlier updates
+			mergeableUpdates.remove(userId);
+		}
+		queue.add(notification);
+	}
+
+	/**
+	 * Sends the queued notifications until the notifier is closed. This runs in the notification
+	 * thread. A notification that fails with a connection or server error is retried, and a
+	 * notification that is rejected by the service or fails with an unexpected error is
+	 * discarded, so that the thread keeps running.
+	 */
+	private void run() {
+		long retryDelayMs = INITIAL_RETRY_DELAY_MS;
+		while (true) {
+			Notification notification;
+			synchronized (this) {
+				try {
+					while (!closed && queue.isEmpty() && !loadSpillFile()) {
+						wait();
+					}
+				} catch (InterruptedException ex) {
+					return;
+				}
+				if (closed)
+					return;
+				notification = queue.peek();
+				// The notification may be sent now, so later updates are queued separately
+				if (mergeableUpdates.get(notification.getUserId()) == notification)
+					mergeableUpdates.remove(notification.getUserId());
+			}
+			try {
+				send(notification);
+				deliveredCount.incrementAndGet();
+				retryDelayMs = INITIAL_RETRY_DELAY_MS;
+				synchronized (this) {
+					queue.poll();
+					failing = false;
+				}
+			} catch (HttpClientErrorException ex) {
+				logger.error("External variable service rejected notification for user '{}', " +
+						"discarding it: {}", notification.getUserId(), ex.getMessage());
+				synchronized (this) {
+					queue.poll();
+				}
+			} catch (RestClientException ex) {
+				retryCount.incrementAndGet();
+				logger.warn("Failed to notify external variable service for user '{}' " +
+						"(will retry in {} ms): {}", notification.getUserId(), retryDelayMs,
+						ex.getMessage());
+				synchronized (this) {
+					failing = true;
+					try {
+						if (!closed)
+							wait(retryDelayMs);
+					} catch (InterruptedException interruptedEx) {
+						return;
+					}
+				}
+				retryDelayMs = Math.min(retryDelayMs * 2, maxRetryDelayMs);
+			} catch (RuntimeException ex) {
+				// An unexpected error (e.g. the notification cannot be serialized) would fail
+				// again on a retry, so discard the notification and keep the thread running
+				logger.error("Unexpected error while notifying external variable service for " +
+						"user '{}', discarding notification: {}", notification.getUserId(),
+						ex.getMessage(), ex);
+				synchronized (this) {
+					queue.poll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends the given {@code notification} to the External Variable Service.
+	 *
+	 * @param notification the notification.
+	 * @throws RestClientException in case of an error calling the External Variable Service.
+	 */
+	private void send(Notification notification) throws RestClientException {
+		if (notification.getType().equals(Notification.TYPE_CLEARED)) {
+			client.notifyCleared(notification.getUserId(), notification.getTimeZone());
+		} else {
+			client.notifyUpdated(notification.getUserId(), notification.getTimeZone(),
+					notification.getVariables());
+		}
+	}
+
+	// ------------------------------------------- //
+	// ---------- Spill File Operations ---------- //
+	// ------------------------------------------- //
+
+	/**
+	 * Finds the spill files that were left by a previous run of the service.
+	 */
+	private void findSpillFiles() {
+		if (!spillDirectory.exists() && !spillDirectory.mkdirs()) {
+			logger.error("Failed to create directory for external variable service " +
+					"notifications: {}", spillDirectory.getAbsolutePath());
+			return;
+		}
+		File[] files = spillDirectory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.endsWith(SPILL_FILE_EXTENSION))
+				continue;
+			long sequence;
+			try {
+				sequence = Long.parseLong(name.substring(0,
+						name.length() - SPILL_FILE_EXTENSION.length()));
+			} catch (NumberFormatException ex) {
+				continue;
+			}
+			int count;
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+					StandardCharsets.UTF_8)) {
+				count = (int) reader.lines().filter(line -> !line.isBlank()).count();
+			} catch (IOException ex) {
+				logger.error("Failed to read spill file {}: {}", file.getAbsolutePath(),
+						ex.getMessage(), ex);
+				continue;
+			}
+			spillFiles.put(sequence, count);
+			spilledCount += count;
+			nextSpillSequence = Math.max(nextSpillSequence, sequence + 1);
+		}
+		if (spilledCount > 0) {
+			logger.info("Found {} unsent external variable service notifications.",
+					spilledCount);
+		}
+	}
+
+	/**
+	 * Appends the given {@code notification} to the newest spill file, or to a new spill file if
+	 * the newest one is full.
+	 *
+	 * @param notification the notification.
+	 * @throws IOException if a writing error occurs.
+	 */
+	private void spill(Notification notification) throws IOException {
+		Map.Entry<Long, Integer> newest = spillFiles.lastEntry();
+		long sequence;
+		int count;
+		if (newest == null || newest.getValue() >= maxQueued) {
+			sequence = nextSpillSequence++;
+			count = 0;
+		} else {
+			sequence = newest.getKey();
+			count = newest.getValue();
+		}
+		Files.writeString(getSpillFile(sequence).toPath(),
+				NOTIFICATION_WRITER.writeValueAsString(notification) + "\n",
+				StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		spillFiles.put(sequence, count + 1);
+		spilledCount++;
+	}
+
+	/**
+	 * Moves the notifications from the oldest spill file to the queue in memory, and deletes the
+	 * file. If the file cannot be read, it is skipped, so that it does not block the queue.
+	 *
+	 * @return {@code true} if notifications were added to the queue, {@code false} otherwise.
+	 */
+	private boolean loadSpillFile() {
+		while (!spillFiles.isEmpty()) {
+			Map.Entry<Long, Integer> oldest = spillFiles.pollFirstEntry();
+			File file = getSpillFile(oldest.getKey());
+			List<Notification> notifications = new ArrayList<>();
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+					StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.isBlank())
+						notifications.add(NOTIFICATION_READER.readValue(line));
+				}
+			} catch (IOException ex) {
+				logger.error("Failed to read spill file {}, skipping it: {}",
+						file.getAbsolutePath(), ex.getMessage(), ex);
+			}
+			spilledCount -= oldest.getValue();
+			if (!file.delete())
+				logger.error("Failed to delete spill file {}", file.getAbsolutePath());
+			for (Notification notification : notifications) {
+				addToQueue(notification);
+			}
+			if (!queue.isEmpty())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the given {@code notifications} to a new spill file.
+	 *
+	 * @param sequence the sequence number of the spill file.
+	 * @param notifications the notifications.
+	 * @throws IOException if a writing error occurs.
+	 */
+	private void writeSpillFile(long sequence, Iterable<Notification> notifications)
+			throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (Notification notification : notifications) {
+			lines.append(NOTIFICATION_WRITER.writeValueAsString(notification)).append("\n");
+		}
+		Files.writeString(getSpillFile(sequence).toPath(), lines, StandardCharsets.UTF_8);
+	}
+
+	private File getSpillFile(long sequence) {
+		return new File(spillDirectory, sequence + SPILL_FILE_EXTENSION);
+	}
+
+	// ---------------------------------- //
+	// ---------- Notification ---------- //
+	// ---------------------------------- //
+
+	/**
+	 * A notification for the External Variable Service, which is queued in memory or written as a
+	 * single line in a spill file.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public static class Notification {
+
+		/** Notification that the given variables were changed */
+		public static final String TYPE_UPDATED = "updated";
+
+		/** Notification that all variables were removed */
+		public static final String TYPE_CLEARED = "cleared";
+
+		private String type;
+		private String userId;
+		private String timeZone;
+		private List<Variable> variables = null;
+		private long time;
+
+		/**
+		 * Creates an instance of an empty {@link Notification}, used for JSON deserialization.
+		 */
+		public Notification() { }
+
+		/**
+		 * Creates an instance of a {@link Notification} of the given {@code type}, that is
+		 * queued now.
+		 *
+		 * @param type the type of notification.
+		 * @param userId the identifier of the user.
+		 * @param timeZone the time zone of the user (IANA name).
+		 * @param variables the changed variables for an update, or {@code null}.
+		 */
+		public Notification(String type, String userId, String timeZone,
+				List<Variable> variables) {
+			this.type = type;
+			this.userId = userId;
+			this.timeZone = timeZone;
+			this.variables = variables;
+			this.time = System.currentTimeMillis();
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public void setType(String type) {
+			this.type = type;
+		}
+
+		public String getUserId() {
+			return userId;
+		}
+
+		public void setUserId(String userId) {
+			this.userId = userId;
+		}
+
+		public String getTimeZone() {
+			return timeZone;
+		}
+
+		public void setTimeZone(String timeZone) {
+			this.timeZone = timeZone;
+		}
+
+		public List<Variable> getVariables() {
+			return variables;
+		}
+
+		public void setVariables(List<Variable> variables) {
+			this.variables = variables;
+		}
+
+		/**
+		 * Returns the time (in epoch milliseconds) at which this notification was queued.
+		 *
+		 * @return the time at which this notification was queued.
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		public void setTime(long time) {
+			this.time = time;
+		}
+
+		/**
+		 * Merges the variables of the given later update into this update. A variable in the
+		 * later update replaces a variable with the same name in this update.
+		 *
+		 * @param later the later update.
+		 */
+		private void merge(Notification later) {
+			Map<String, Variable> merged = new LinkedHashMap<>();
+			for (Variable variable : variables) {
+				merged.put(variable.getName(), variable);
+			}
+			for (Variable variable : later.variables) {
+				merged.put(variable.getName(), variable);
+			}
+			variables = new ArrayList<>(merged.values());
+			timeZone = later.timeZone;
+		}
+	}
+
+}
@@ -0,0 +1,405 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.execution.Variable;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The {@link ExternalVariableRetrieveBatcher} combines retrieve-updates requests for different
+ * users into batched requests to the /variables/retrieve-updates-batch end-point of the External
+ * Variable Service (protocol version 2).
+ *
+ * <p>The first request that arrives starts a batch window. All requests that arrive within the
+ * window are sent together in one request when the window ends, or as soon as the batch reaches
+ * its maximum size. Each caller waits for its own part of the response, so for a caller the
+ * batching looks like a normal retrieve-updates call that takes at most the window longer.</p>
+ *
+ * <p>If the External Variable Service rejects the request of one user in a batch, only the
+ * caller for that user gets an error. If it rejects the entire batch (for example an older
+ * version that does not report errors per user), each request in the batch is sent again on its
+ * own, so that only the invalid request fails.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class ExternalVariableRetrieveBatcher {
+
+	private final ExternalVariableServiceClient client;
+	private final long windowMs;
+	private final int maxSize;
+	private final long timeoutMs;
+
+	/** Executor that runs the batch window timers and sends the batches */
+	private final ScheduledThreadPoolExecutor executor;
+
+	private final Object lock = new Object();
+	private List<PendingRequest> pendingRequests = new ArrayList<>();
+	private ScheduledFuture<?> windowTimer = null;
+	private boolean closed = false;
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of an {@link ExternalVariableRetrieveBatcher} that sends its batches
+	 * through the given {@code client}.
+	 *
+	 * @param client the client for the External Variable Service.
+	 * @param windowMs the time in milliseconds during which requests are collected into a batch.
+	 * @param maxSize the maximum number of requests in a batch.
+	 * @param maxConcurrentBatches the maximum number of batches that are sent at the same time.
+	 * @param timeoutMs the maximum time in milliseconds that a caller waits for the response,
+	 *                  after the batch window.
+	 */
+	public ExternalVariableRetrieveBatcher(ExternalVariableServiceClient client, long windowMs,
+			int maxSize, int maxConcurrentBatches, long timeoutMs) {
+		this.client = client;
+		this.windowMs = windowMs;
+		this.maxSize = Math.max(1, maxSize);
+		this.timeoutMs = timeoutMs;
+		executor = new ScheduledThreadPoolExecutor(Math.max(1, maxConcurrentBatches),
+				runnable -> {
+					Thread thread = new Thread(runnable, "ExternalVariableRetrieveBatcher");
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	// ---------------------------------------------------- //
+	// -------------------- Retrieving -------------------- //
+	// ---------------------------------------------------- //
+
+	/**
+	 * Adds a retrieve-updates request for the given user to the current batch and waits for the
+	 * response. The returned response has the same headers and status as the response to the
+	 * batch, and contains the updated variables of this user as body.
+	 *
+	 * @param userId the identifier of the user.
+	 * @param timeZone the time zone of the user (IANA name).
+	 * @param variables the variables with their current values.
+	 * @return the response, with the updated variables of the user as body, and its headers.
+	 * @throws RestClientException in case of an error calling the External Variable Service, or
+	 *                             if no response was received in time.
+	 */
+	public ResponseEntity<Variable[]> retrieveUpdates(String userId, String timeZone,
+			List<Variable> variables) throws RestClientException {
+		PendingRequest request = new PendingRequest(
+				new UserVariables(userId, timeZone, variables));
+		List<PendingRequest> fullBatch = null;
+		synchronized (lock) {
+			if (closed)
+				throw new ResourceAccessException("External variable service client is closed");
+			pendingRequests.add(request);
+			if (pendingRequests.size() >= maxSize) {
+				fullBatch = takePendingRequests();
+			} else if (windowTimer == null) {
+				windowTimer = executor.schedule(this::sendWindowBatch, windowMs,
+						TimeUnit.MILLISECONDS);
+			}
+		}
+		if (fullBatch != null) {
+			List<PendingRequest> batch = fullBatch;
+			try {
+				executor.execute(() -> sendBatch(batch));
+			} catch (RejectedExecutionException ex) {
+				// The batcher was closed in the meantime
+				sendBatch(batch);
+			}
+		}
+		try {
+			return request.result.get(windowMs + timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (java.util.concurrent.ExecutionException ex) {
+			if (ex.getCause() instanceof RestClientException restEx)
+				throw restEx;
+			throw new RestClientException("Batched retrieve-updates failed: " +
+					ex.getCause().getMessage(), ex.getCause());
+		} catch (TimeoutException ex) {
+			throw new ResourceAccessException("No response to batched retrieve-updates within " +
+					(windowMs + timeoutMs) + " ms");
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ResourceAccessException("Interrupted while waiting for batched " +
+					"retrieve-updates");
+		}
+	}
+
+	/**
+	 * Stops sending batches. Requests that are still waiting fail with a {@link
+	 * RestClientException}. This is called when the service shuts down.
+	 */
+	public void close() {
+		List<PendingRequest> remaining;
+		synchronized (lock) {
+			closed = true;
+			remaining = takePendingRequests();
+		}
+		executor.shutdownNow();
+		RestClientException ex = new ResourceAccessException(
+				"External variable service client is closed");
+		for (PendingRequest request : remaining) {
+			request.result.completeExceptionally(ex);
+		}
+	}
+
+	// ---------------------------------------------------------- //
+	// -------------------- Helper Functions -------------------- //
+	// ---------------------------------------------------------- //
+
+	/**
+	 * Takes the current batch and cancels its window timer. This method must be called while
+	 * holding the lock.
+	 *
+	 * @return the requests in the current batch.
+	 */
+	private List<PendingRequest> takePendingRequests() {
+		List<PendingRequest> batch = pendingRequests;
+		pendingRequests = new ArrayList<>();
+		if (windowTimer != null) {
+			windowTimer.cancel(false);
+			windowTimer = null;
+		}
+		return batch;
+	}
+
+	/**
+	 * Sends the current batch at the end of its window.
+	 */
+	private void sendWindowBatch() {
+		List<PendingRequest> batch;
+		synchronized (lock) {
+			batch = takePendingRequests();
+		}
+		sendBatch(batch);
+	}
+
+	/**
+	 * Sends the given batch and completes each request with its part of the response, or
+	 * completes all requests with the error if the call failed. If the External Variable Service
+	 * rejected the request of a user, only that request is completed with an error.
+	 *
+	 * @param batch the requests to send.
+	 */
+	private void sendBatch(List<PendingRequest> batch) {
+		if (batch.isEmpty())
+			return;
+		try {
+			List<UserVariables> requestBody = new ArrayList<>();
+			for (PendingRequest request : batch) {
+				requestBody.add(request.userVariables);
+			}
+			ResponseEntity<UserVariables[]> response;
+			try {
+				response = client.retrieveUpdatesBatch(requestBody);
+			} catch (HttpClientErrorException.BadRequest ex) {
+				if (batch.size() == 1)
+					throw ex;
+				// Find the invalid request by sending each request on its own
+				for (PendingRequest request : batch) {
+					sendBatch(List.of(request));
+				}
+				return;
+			}
+			UserVariables[] results = response.getBody();
+			if (results == null || results.length != batch.size()) {
+				throw new RestClientException("Batched retrieve-updates returned " +
+						(results == null ? 0 : results.length) + " results for " + batch.size() +
+						" users");
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				PendingRequest request = batch.get(i);
+				UserVariables result = results[i];
+				if (!request.userVariables.getUserId().equals(result.getUserId())) {
+					request.result.completeExceptionally(new RestClientException(
+							"Batched retrieve-updates returned result for user '" +
+							result.getUserId() + "' instead of '" +
+							request.userVariables.getUserId() + "'"));
+					continue;
+				}
+				if (result.getError() != null) {
+					request.result.completeExceptionally(new HttpClientErrorException(
+							HttpStatus.BAD_REQUEST, "Batched retrieve-updates rejected user '" +
+							result.getUserId() + "': " + result.getError()));
+					continue;
+				}
+				List<Variable> variables = result.getVariables() == null ?
+						new ArrayList<>() : result.getVariables();
+				request.result.complete(new ResponseEntity<>(variables.toArray(new Variable[0]),
+						response.getHeaders(), response.getStatusCode()));
+			}
+		} catch (RuntimeException ex) {
+			for (PendingRequest request : batch) {
+				request.result.completeExceptionally(ex);
+			}
+		}
+	}
+
+	// -------------------------------------------------------- //
+	// -------------------- Helper Classes -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * A request that is waiting in a batch, with the future that receives its response.
+	 */
+	private static class PendingRequest {
+		private final UserVariables userVariables;
+		private final CompletableFuture<ResponseEntity<Variable[]>> result =
+				new CompletableFuture<>();
+
+		private PendingRequest(UserVariables userVariables) {
+			this.userVariables = userVariables;
+		}
+	}
+
+	/**
+	 * The variables of one user in a batched retrieve-updates request or response. This is
+	 * serialized to and from JSON. In a response, it contains an error message instead of
+	 * variables if the request of the user was rejected.
+	 */
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public static class UserVariables {
+		private String userId;
+		private String timeZone;
+		private List<Variable> variables = new ArrayList<>();
+		private String error = null;
+
+		/**
+		 * Constructs a new instance for JSON deserialization.
+		 */
+		public UserVariables() {
+		}
+
+		/**
+		 * Constructs a new instance with the variables of a user.
+		 *
+		 * @param userId the identifier of the user.
+		 * @param timeZone the time zone of the user (IANA name).
+		 * @param variables the variables.
+		 */
+		public UserVariables(String userId, String timeZone, List<Variable> variables) {
+			this.userId = userId;
+			this.timeZone = timeZone;
+			this.variables = variables;
+		}
+
+		/**
+		 * Returns the identifier of the user.
+		 *
+		 * @return the identifier of the user.
+		 */
+		public String getUserId() {
+			return userId;
+		}
+
+		/**
+		 * Sets the identifier of the user.
+		 *
+		 * @param userId the identifier of the user.
+		 */
+		public void setUserId(String userId) {
+			this.userId = userId;
+		}
+
+		/**
+		 * Returns the time zone of the user as an IANA name (e.g. 'Europe/Lisbon').
+		 *
+		 * @return the time zone of the user.
+		 */
+		public String getTimeZone() {
+			return timeZone;
+		}
+
+		/**
+		 * Sets the time zone of the user as an IANA name (e.g. 'Europe/Lisbon').
+		 *
+		 * @param timeZone the time zone of the user.
+		 */
+		public void setTimeZone(String timeZone) {
+			this.timeZone = timeZone;
+		}
+
+		/**
+		 * Returns the variables of the user. In a request, these are the variables that should be
+		 * updated. In a response, these are the updated variables, unless the request of the user
+		 * was rejected (see {@link #getError()}).
+		 *
+		 * @return the variables of the user.
+		 */
+		public List<Variable> getVariables() {
+			return variables;
+		}
+
+		/**
+		 * Sets the variables of the user (see {@link #getVariables()}).
+		 *
+		 * @param variables the variables of the user.
+		 */
+		public void setVariables(List<Variable> variables) {
+			this.variables = variables;
+		}
+
+		/**
+		 * Returns the error message if the External Variable Service rejected the request of this
+		 * user, or {@code null} if the request succeeded. This is only set in a response.
+		 *
+		 * @return the error message or {@code null}.
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * Sets the error message if the External Variable Service rejected the request of this
+		 * user, or {@code null} if the request succeeded.
+		 *
+		 * @param error the error message or {@code null}.
+		 */
+		public void setError(String error) {
+			this.error = error;
+		}
+	}
+
+}
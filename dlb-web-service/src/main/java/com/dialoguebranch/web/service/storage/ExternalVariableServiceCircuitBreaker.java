@@ -0,0 +1,184 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link ExternalVariableServiceCircuitBreaker} keeps track of failing and slow calls to the
+ * External Variable Service, so that calls can fail immediately while the External Variable
+ * Service is unavailable, instead of waiting for a timeout every time.
+ *
+ * <p>The circuit breaker starts {@link State#CLOSED}, which means that all calls are allowed. A
+ * call fails if it results in an error (other than a rejected request), or if it takes longer than
+ * the latency budget. After a number of consecutive failed calls, the circuit breaker trips and
+ * becomes {@link State#OPEN}: calls are rejected right away. After a configured time, it becomes
+ * {@link State#HALF_OPEN} and allows a single trial call. If that call succeeds, the circuit
+ * breaker is closed again, otherwise it opens again.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class ExternalVariableServiceCircuitBreaker {
+
+	/** The possible states of the circuit breaker */
+	public enum State {
+		/** All calls are allowed */
+		CLOSED,
+		/** All calls are rejected */
+		OPEN,
+		/** A single trial call is allowed */
+		HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openTimeMs;
+	private final long latencyBudgetMs;
+
+	// The following fields are guarded by this object
+	private State state = State.CLOSED;
+	private int consecutiveFailures = 0;
+	private long openedTime = 0;
+	private boolean trialCallRunning = false;
+
+	private final AtomicLong tripCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of a closed {@link ExternalVariableServiceCircuitBreaker}.
+	 *
+	 * @param failureThreshold the number of consecutive failed calls after which the circuit
+	 *                         breaker opens.
+	 * @param openTimeMs the time in milliseconds after which an open circuit breaker allows a
+	 *                   trial call.
+	 * @param latencyBudgetMs the duration in milliseconds after which a call is considered to
+	 *                        have failed, even if it returned a result.
+	 */
+	public ExternalVariableServiceCircuitBreaker(int failureThreshold, long openTimeMs,
+			long latencyBudgetMs) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openTimeMs = openTimeMs;
+		this.latencyBudgetMs = latencyBudgetMs;
+	}
+
+	// ----------------------------------------------------------- //
+	// -------------------- Getters & Setters -------------------- //
+	// ----------------------------------------------------------- //
+
+	/**
+	 * Returns the current state of the circuit breaker.
+	 *
+	 * @return the current state of the circuit breaker.
+	 */
+	public synchronized State getState() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedTime >= openTimeMs)
+			return State.HALF_OPEN;
+		return state;
+	}
+
+	/**
+	 * Returns the number of times that the circuit breaker opened since the start of the service.
+	 *
+	 * @return the number of times that the circuit breaker opened.
+	 */
+	public long getTripCount() {
+		return tripCount.get();
+	}
+
+	/**
+	 * Returns the number of calls that were rejected since the start of the service, because the
+	 * circuit breaker was open.
+	 *
+	 * @return the number of rejected calls.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	// --------------------------------------- //
+	// ---------- Public Operations ---------- //
+	// --------------------------------------- //
+
+	/**
+	 * Returns whether a call is allowed now. If this method returns {@code true}, the caller must
+	 * report the result of the call with {@link #onCallCompleted(long)} or {@link
+	 * #onCallFailed()}.
+	 *
+	 * @return {@code true} if the call is allowed, {@code false} if it should be rejected.
+	 */
+	public synchronized boolean allowCall() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedTime >= openTimeMs)
+			state = State.HALF_OPEN;
+		if (state == State.CLOSED)
+			return true;
+		if (state == State.HALF_OPEN && !trialCallRunning) {
+			trialCallRunning = true;
+			return true;
+		}
+		rejectedCount.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Reports that an allowed call completed after the given {@code durationMs}. If it took
+	 * longer than the latency budget, it is counted as a failed call.
+	 *
+	 * @param durationMs the duration of the call in milliseconds.
+	 */
+	public synchronized void onCallCompleted(long durationMs) {
+		if (durationMs > latencyBudgetMs) {
+			onCallFailed();
+			return;
+		}
+		trialCallRunning = false;
+		consecutiveFailures = 0;
+		state = State.CLOSED;
+	}
+
+	/**
+	 * Reports that an allowed call failed. This opens the circuit breaker if the failure
+	 * threshold is reached, or if the call was the trial call of a half-open circuit breaker.
+	 */
+	public synchronized void onCallFailed() {
+		trialCallRunning = false;
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || (state == State.CLOSED
+				&& consecutiveFailures >= failureThreshold)) {
+			state = State.OPEN;
+			openedTime = System.currentTimeMillis();
+			tripCount.incrementAndGet();
+		}
+	}
+
+}
@@ -0,0 +1,402 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.execution.Variable;
+import com.dialoguebranch.web.service.Configuration;
+import com.dialoguebranch.web.service.storage.ExternalVariableRetrieveBatcher.UserVariables;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The {@link ExternalVariableServiceClient} performs the REST calls to the configured External
+ * Variable Service. There is one instance for the application, which is owned by the {@link
+ * com.dialoguebranch.web.service.execution.ApplicationManager}, so that all calls share a pool of
+ * keep-alive connections.
+ *
+ * <p>The connect and read timeouts and the maximum number of connections are taken from the
+ * {@link Configuration}. A call that cannot get a connection within the connect timeout, or that
+ * gets no response within the read timeout, fails with a {@link RestClientException}. A user
+ * waits for the retrieve-updates calls, so they do not wait longer than the latency budget (see
+ * {@link Configuration#getExternalVariableServiceLatencyBudgetMs()}) for a connection from the
+ * pool or for the response, if that is shorter than the timeouts (see {@link
+ * #getRetrieveTimeoutMs()}).</p>
+ *
+ * <p>All calls go through an {@link ExternalVariableServiceCircuitBreaker}. While it is open,
+ * calls fail immediately with a {@link CircuitOpenException}.</p>
+ *
+ * <p>If the External Variable Service supports protocol version 2 and a batch window is
+ * configured, retrieve-updates calls for different users are combined by an {@link
+ * ExternalVariableRetrieveBatcher}.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class ExternalVariableServiceClient {
+
+	/** Time after which idle connections are closed */
+	private static final long IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+
+	private final Configuration config;
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final RestTemplate restTemplate;
+	private final RestTemplate retrieveRestTemplate;
+	private final long retrieveTimeoutMs;
+	private final ExternalVariableServiceCircuitBreaker circuitBreaker;
+	private final ExternalVariableRetrieveBatcher retrieveBatcher;
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of an {@link ExternalVariableServiceClient} for the External Variable
+	 * Service that is defined in the given {@code config}.
+	 *
+	 * @param config the {@link Configuration} of the service.
+	 */
+	public ExternalVariableServiceClient(Configuration config) {
+		this.config = config;
+		Timeout connectTimeout = Timeout.ofMilliseconds(
+				config.getExternalVariableServiceConnectTimeoutMs());
+		Timeout readTimeout = Timeout.ofMilliseconds(
+				config.getExternalVariableServiceReadTimeoutMs());
+		int maxConnections = config.getExternalVariableServiceMaxConnections();
+
+		// All calls go to the same host, so the maximum per route is the maximum in total
+		connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(connectTimeout)
+						.setSocketTimeout(readTimeout)
+						.build())
+				.setMaxConnPerRoute(maxConnections)
+				.setMaxConnTotal(maxConnections)
+				.build();
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectionRequestTimeout(connectTimeout)
+						.setResponseTimeout(readTimeout)
+						.build())
+				.evictExpiredConnections()
+				.evictIdleConnections(TimeValue.ofSeconds(IDLE_CONNECTION_TIMEOUT_SECONDS))
+				.build();
+		restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+		// Retrieve calls share the connection pool, but have a shorter timeout
+		long latencyBudgetMs = config.getExternalVariableServiceLatencyBudgetMs();
+		long readTimeoutMs = config.getExternalVariableServiceReadTimeoutMs();
+		retrieveTimeoutMs = latencyBudgetMs > 0 ? Math.min(latencyBudgetMs, readTimeoutMs) :
+				readTimeoutMs;
+		HttpComponentsClientHttpRequestFactory retrieveRequestFactory =
+				new HttpComponentsClientHttpRequestFactory(httpClient);
+		retrieveRequestFactory.setConnectionRequestTimeout(Duration.ofMillis(
+				Math.min(retrieveTimeoutMs, config.getExternalVariableServiceConnectTimeoutMs())));
+		retrieveRequestFactory.setReadTimeout(Duration.ofMillis(retrieveTimeoutMs));
+		retrieveRestTemplate = new RestTemplate(retrieveRequestFactory);
+		circuitBreaker = new ExternalVariableServiceCircuitBreaker(
+				config.getExternalVariableServiceBreakerFailureThreshold(),
+				config.getExternalVariableServiceBreakerOpenMs(),
+				config.getExternalVariableServiceLatencyBudgetMs());
+		if (isBatchRetrieveSupported() && config.getExternalVariableServiceBatchWindowMs() > 0) {
+			retrieveBatcher = new ExternalVariableRetrieveBatcher(this,
+					config.getExternalVariableServiceBatchWindowMs(),
+					config.getExternalVariableServiceBatchMaxSize(), maxConnections,
+					getRetrieveWaitTimeoutMs());
+		} else {
+			retrieveBatcher = null;
+		}
+	}
+
+	// ----------------------------------------------------------- //
+	// -------------------- Getters & Setters -------------------- //
+	// ----------------------------------------------------------- //
+
+	/**
+	 * Returns the circuit breaker that guards the calls to the External Variable Service.
+	 *
+	 * @return the {@link ExternalVariableServiceCircuitBreaker}.
+	 */
+	public ExternalVariableServiceCircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Returns the response timeout of retrieve-updates calls in milliseconds. This is the latency
+	 * budget, unless the read timeout is shorter.
+	 *
+	 * @return the response timeout of retrieve-updates calls in milliseconds.
+	 */
+	public long getRetrieveTimeoutMs() {
+		return retrieveTimeoutMs;
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds that a retrieve-updates call can take: the connect
+	 * timeout plus the response timeout of retrieve-updates calls (see {@link
+	 * #getRetrieveTimeoutMs()}).
+	 *
+	 * @return the maximum duration of a retrieve-updates call in milliseconds.
+	 */
+	public long getRetrieveWaitTimeoutMs() {
+		return config.getExternalVariableServiceConnectTimeoutMs() + retrieveTimeoutMs;
+	}
+
+	/**
+	 * Returns the number of pooled connections that are currently in use.
+	 *
+	 * @return the number of pooled connections that are currently in use.
+	 */
+	public int getLeasedConnections() {
+		return connectionManager.getTotalStats().getLeased();
+	}
+
+	/**
+	 * Returns the number of idle (keep-alive) connections in the pool.
+	 *
+	 * @return the number of idle connections in the pool.
+	 */
+	public int getAvailableConnections() {
+		return connectionManager.getTotalStats().getAvailable();
+	}
+
+	/**
+	 * Returns the number of calls that are waiting for a connection.
+	 *
+	 * @return the number of calls that are waiting for a connection.
+	 */
+	public int getPendingConnections() {
+		return connectionManager.getTotalStats().getPending();
+	}
+
+	// ---------------------------------------------------- //
+	// -------------------- REST Calls -------------------- //
+	// ---------------------------------------------------- //
+
+	/**
+	 * Calls the /variables/retrieve-updates end-point of the External Variable Service with the
+	 * given {@code variables}. The body of the response contains the variables that have an
+	 * updated value.
+	 *
+	 * <p>If batching is enabled, the call is combined with the calls for other users in one
+	 * request to the /variables/retrieve-updates-batch end-point.</p>
+	 *
+	 * @param userId the identifier of the user.
+	 * @param timeZone the time zone of the user (IANA name).
+	 * @param variables the variables with their current values.
+	 * @return the response, with the updated variables as body (or no body), and its headers.
+	 * @throws RestClientException in case of an error calling the External Variable Service.
+	 */
+	public ResponseEntity<Variable[]> retrieveUpdates(String userId, String timeZone,
+			List<Variable> variables) throws RestClientException {
+		if (retrieveBatcher != null)
+			return retrieveBatcher.retrieveUpdates(userId, timeZone, variables);
+		return execute(() -> retrieveRestTemplate.exchange(
+				createUri("retrieve-updates", userId, timeZone), HttpMethod.POST,
+				new HttpEntity<>(variables, createHeaders(true)), Variable[].class));
+	}
+
+	/**
+	 * Calls the /variables/retrieve-updates-batch end-point of the External Variable Service with
+	 * the variables of multiple users. The body of the response contains the updated variables of
+	 * each user, in the same order as the request.
+	 *
+	 * @param userVariables the users with the variables and their current values.
+	 * @return the response, with the updated variables of each user as body, and its headers.
+	 * @throws RestClientException in case of an error calling the External Variable Service.
+	 */
+	ResponseEntity<UserVariables[]> retrieveUpdatesBatch(List<UserVariables> userVariables)
+			throws RestClientException {
+		return execute(() -> retrieveRestTemplate.exchange(createUri("retrieve-updates-batch"),
+				HttpMethod.POST, new HttpEntity<>(userVariables, createHeaders(true)),
+				UserVariables[].class));
+	}
+
+	/**
+	 * Calls the /variables/notify-updated end-point of the External Variable Service, to notify
+	 * it that the given {@code variables} were changed.
+	 *
+	 * @param userId the identifier of the user.
+	 * @param timeZone the time zone of the user (IANA name).
+	 * @param variables the changed variables.
+	 * @throws RestClientException in case of an error calling the External Variable Service.
+	 */
+	public void notifyUpdated(String userId, String timeZone, List<Variable> variables)
+			throws RestClientException {
+		execute(() -> restTemplate.exchange(createUri("notify-updated", userId, timeZone),
+				HttpMethod.POST, new HttpEntity<>(variables, createHeaders(true)), Object.class));
+	}
+
+	/**
+	 * Calls the /variables/notify-cleared end-point of the External Variable Service, to notify
+	 * it that all variables of the user were removed.
+	 *
+	 * @param userId the identifier of the user.
+	 * @param timeZone the time zone of the user (IANA name).
+	 * @throws RestClientException in case of an error calling the External Variable Service.
+	 */
+	public void notifyCleared(String userId, String timeZone) throws RestClientException {
+		execute(() -> restTemplate.exchange(createUri("notify-cleared", userId, timeZone),
+				HttpMethod.POST, new HttpEntity<>(createHeaders(false)), Object.class));
+	}
+
+	/**
+	 * Closes all pooled connections. This is called when the service shuts down.
+	 */
+	public void close() {
+		if (retrieveBatcher != null)
+			retrieveBatcher.close();
+		httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	// ---------------------------------------------------------- //
+	// -------------------- Helper Functions -------------------- //
+	// ---------------------------------------------------------- //
+
+	/**
+	 * Executes the given {@code call} if the circuit breaker allows it, and reports the result to
+	 * the circuit breaker. A rejected request (HTTP 4xx) means that the External Variable Service
+	 * is available, so it does not count as a failure.
+	 *
+	 * @param call the call to the External Variable Service.
+	 * @param <T> the type of the result.
+	 * @return the result of the call.
+	 * @throws RestClientException in case of an error calling the External Variable Service, or
+	 *                             a {@link CircuitOpenException} if the call was rejected.
+	 */
+	private <T> T execute(Supplier<T> call) throws RestClientException {
+		if (!circuitBreaker.allowCall())
+			throw new CircuitOpenException();
+		long start = System.nanoTime();
+		try {
+			T result = call.get();
+			circuitBreaker.onCallCompleted((System.nanoTime() - start) / 1000000);
+			return result;
+		} catch (HttpClientErrorException ex) {
+			circuitBreaker.onCallCompleted((System.nanoTime() - start) / 1000000);
+			throw ex;
+		} catch (RuntimeException ex) {
+			circuitBreaker.onCallFailed();
+			throw ex;
+		}
+	}
+
+	private HttpHeaders createHeaders(boolean jsonBody) {
+		HttpHeaders requestHeaders = new HttpHeaders();
+		if(jsonBody)
+			requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+		requestHeaders.set("Authorization", "Bearer "
+				+ config.getExternalVariableServiceAPIKey());
+		return requestHeaders;
+	}
+
+	/**
+	 * Returns whether the configured API version of the External Variable Service supports the
+	 * /variables/retrieve-updates-batch end-point (protocol version 2 or higher). The protocol
+	 * versions of the External Variable Service are independent of those of this service, so the
+	 * version is compared as a number.
+	 *
+	 * @return {@code true} if batched retrieve-updates calls are supported.
+	 */
+	private boolean isBatchRetrieveSupported() {
+		try {
+			return Integer.parseInt(config.getExternalVariableServiceAPIVersion().trim()) >= 2;
+		} catch (NullPointerException | NumberFormatException ex) {
+			return false;
+		}
+	}
+
+	private URI createUri(String endPoint) {
+		return UriComponentsBuilder.fromUriString(createUrl(endPoint))
+				.build()
+				.encode()
+				.toUri();
+	}
+
+	private URI createUri(String endPoint, String userId, String timeZone) {
+		String url = createUrl(endPoint);
+		LinkedMultiValueMap<String, String> allRequestParams = new LinkedMultiValueMap<>();
+		allRequestParams.put("userId", Collections.singletonList(userId));
+		allRequestParams.put("timeZone", Collections.singletonList(timeZone));
+		return UriComponentsBuilder.fromUriString(url)
+				.queryParams(allRequestParams)
+				.build()
+				.encode()
+				.toUri();
+	}
+
+	private String createUrl(String endPoint) {
+		return config.getExternalVariableServiceURL()
+				+ "/v" + config.getExternalVariableServiceAPIVersion()
+				+ "/variables/" + endPoint;
+	}
+
+	// -------------------------------------------------------------- //
+	// -------------------- CircuitOpenException -------------------- //
+	// -------------------------------------------------------------- //
+
+	/**
+	 * Exception that is thrown when a call is not made, because the circuit breaker for the
+	 * External Variable Service is open.
+	 */
+	public static class CircuitOpenException extends RestClientException {
+
+		/**
+		 * Creates an instance of a {@link CircuitOpenException}.
+		 */
+		public CircuitOpenException() {
+			super("External variable service is unavailable (circuit breaker open)");
+		}
+	}
+
+}
@@ -33,15 +33,9 @@ import com.dialoguebranch.execution.VariableStore;
 import com.dialoguebranch.execution.VariableStoreChange;
 import com.dialoguebranch.execution.VariableStoreOnChangeListener;
 import com.dialoguebranch.web.service.Configuration;
-import com.dialoguebranch.web.service.execution.UserService;
 import nl.rrd.utils.AppComponents;
 import org.slf4j.Logger;
-import org.springframework.http.*;
 import org.springframework.util.ClassUtils;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponents;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.*;
 
@@ -50,6 +44,17 @@ public class ExternalVariableServiceUpdater implements VariableStoreOnChangeList
 	private final Logger logger =
 			AppComponents.getLogger(ClassUtils.getUserClass(getClass()).getSimpleName());
 	private final Configuration config = AppComponents.get(Configuration.class);
+	private final ExternalVariableNotifier notifier;
+
+	/**
+	 * Creates an instance of an {@link ExternalVariableServiceUpdater} that queues notifications
+	 * for the External Variable Service at the given {@code notifier}.
+	 *
+	 * @param notifier the {@link ExternalVariableNotifier}.
+	 */
+	public ExternalVariableServiceUpdater(ExternalVariableNotifier notifier) {
+		this.notifier = notifier;
+	}
 
 	@Override
 	public void onChange(VariableStore variableStore, List<VariableStoreChange> changes) {
@@ -72,33 +77,12 @@ public class ExternalVariableServiceUpdater implements VariableStoreOnChangeList
 							config.getExternalVariableServiceAPIVersion());
 
 					if(change instanceof VariableStoreChange.Clear) {
-						RestTemplate restTemplate = new RestTemplate();
-						HttpHeaders requestHeaders = new HttpHeaders();
-						requestHeaders.set("Authorization", "Bearer "
-								+ config.getExternalVariableServiceAPIKey());
-
-						String notifyClearedUrl = config.getExternalVariableServiceURL()
-							+ "/v" + config.getExternalVariableServiceAPIVersion()
-							+ "/variables/notify-cleared";
-
-						LinkedMultiValueMap<String, String> allRequestParams =
-							new LinkedMultiValueMap<>();
-						allRequestParams.put("userId", Arrays.asList(userId));
-						allRequestParams.put("timeZone", Arrays.asList(userTimeZoneString));
-
-						HttpEntity<?> entity = new HttpEntity<>(requestHeaders);
-						UriComponentsBuilder builder =
-							UriComponentsBuilder.fromUriString(notifyClearedUrl)
-								.queryParams(
-									(LinkedMultiValueMap<String, String>) allRequestParams);
-						UriComponents uriComponents = builder.build().encode();
-
-						// Todo: check if we need to do something with the 200 OK response
-						ResponseEntity<Object> response = restTemplate.exchange(
-							uriComponents.toUri(),
-							HttpMethod.POST,
-							entity,
-							Object.class);
+						// Keep the order of the updates before the clear
+						if(!variablesToUpdate.isEmpty()) {
+							notifier.notifyUpdated(userId, userTimeZoneString, variablesToUpdate);
+							variablesToUpdate.clear();
+						}
+						notifier.notifyCleared(userId, userTimeZoneString);
 
 					} else if (change instanceof VariableStoreChange.Remove) {
 						Collection<String> variableNames
@@ -134,38 +118,9 @@ public class ExternalVariableServiceUpdater implements VariableStoreOnChangeList
 			}
 		}
 
-		// Perform the actual REST call
-		if(!variablesToUpdate.isEmpty()) {
-
-			RestTemplate restTemplate = new RestTemplate();
-			HttpHeaders requestHeaders = new HttpHeaders();
-			requestHeaders.setContentType(MediaType.valueOf("application/json"));
-			requestHeaders.set("Authorization", "Bearer "
-					+ config.getExternalVariableServiceAPIKey());
-
-			String notifyUpdatesUrl = config.getExternalVariableServiceURL()
-					+ "/v" + config.getExternalVariableServiceAPIVersion()
-					+ "/variables/notify-updated";
-
-			LinkedMultiValueMap<String, String> allRequestParams =
-					new LinkedMultiValueMap<>();
-			allRequestParams.put("userId", Arrays.asList(userId));
-			allRequestParams.put("timeZone", Arrays.asList(userTimeZoneString));
-
-			HttpEntity<?> entity = new HttpEntity<>(variablesToUpdate, requestHeaders);
-			UriComponentsBuilder builder =
-					UriComponentsBuilder.fromUriString(notifyUpdatesUrl)
-							.queryParams(
-									(LinkedMultiValueMap<String, String>) allRequestParams);
-			UriComponents uriComponents = builder.build().encode();
-
-			// Todo: check if we need to do something with the 200 OK response
-			ResponseEntity<Object> response = restTemplate.exchange(
-					uriComponents.toUri(),
-					HttpMethod.POST,
-					entity,
-					Object.class);
-		}
+		// Queue the notification, which is sent in the background
+		if(!variablesToUpdate.isEmpty())
+			notifier.notifyUpdated(userId, userTimeZoneString, variablesToUpdate);
 	}
 
 }
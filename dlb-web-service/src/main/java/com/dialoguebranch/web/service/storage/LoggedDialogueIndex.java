@@ -0,0 +1,324 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A {@link LoggedDialogueIndex} is a persistent index of the logged dialogues of a single user,
+ * used by the {@link LoggedDialogueStore} to find a logged dialogue by its id, or the latest
+ * ongoing dialogue, without reading the user's complete dialogue history.
+ *
+ * <p>For every logged dialogue the index contains the session that it was stored in, its name,
+ * its start time and whether it is ongoing. The index is kept in memory and persisted as an
+ * append-only file with one JSON {@link Entry} per line, where the last line for a dialogue id
+ * takes precedence, and a line without session removes the dialogue. The file is rewritten when
+ * it contains too many outdated lines.</p>
+ *
+ * <p>The index only contains hints: a {@link LoggedDialogueStore} must verify any dialogue that it
+ * finds through the index against the session files, which remain the source of truth. This class
+ * is not thread-safe; it is guarded by the lock of the {@link LoggedDialogueStore}.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class LoggedDialogueIndex {
+
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+	// Thread-safe reader and writer, shared by all users, so that the entry class is only
+	// introspected once
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectReader ENTRY_READER = MAPPER.readerFor(Entry.class);
+	private static final ObjectWriter ENTRY_WRITER = MAPPER.writerFor(Entry.class);
+
+	private final File indexFile;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private int lineCount = 0;
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of a {@link LoggedDialogueIndex} that is persisted in the given {@code
+	 * indexFile}, and reads the entries from that file if it exists. Lines that cannot be parsed
+	 * are skipped, as the index can always be completed from the session files.
+	 *
+	 * @param indexFile the file in which the index is persisted.
+	 * @throws IOException in case of an error reading the index file.
+	 */
+	public LoggedDialogueIndex(File indexFile) throws IOException {
+		this.indexFile = indexFile;
+		if (!indexFile.exists())
+			return;
+		try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(),
+				StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank())
+					continue;
+				lineCount++;
+				try {
+					Entry entry = ENTRY_READER.readValue(line);
+					if (entry.getSession() == null)
+						entries.remove(entry.getDialogueId());
+					else
+						entries.put(entry.getDialogueId(), entry);
+				} catch (JsonProcessingException ignored) {
+					// Incomplete line; the entry is restored from the session files if needed
+				}
+			}
+		}
+	}
+
+	// --------------------------------------- //
+	// ---------- Public Operations ---------- //
+	// --------------------------------------- //
+
+	/**
+	 * Returns the entry for the logged dialogue with the given {@code dialogueId}, or {@code null}
+	 * if the dialogue is not in the index.
+	 *
+	 * @param dialogueId the id of the logged dialogue.
+	 * @return the entry or {@code null}.
+	 */
+	public Entry get(String dialogueId) {
+		return entries.get(dialogueId);
+	}
+
+	/**
+	 * Returns the base names of all sessions that are included in this index.
+	 *
+	 * @return the base names of all indexed sessions.
+	 */
+	public Set<String> getSessions() {
+		Set<String> result = new HashSet<>();
+		for (Entry entry : entries.values()) {
+			result.add(entry.getSession());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the entries of all ongoing dialogues, optionally only those with the given {@code
+	 * dialogueName}. The entries are sorted like the session files are searched: newest session
+	 * first, and within a session by start time.
+	 *
+	 * @param dialogueName the name of the dialogue, or {@code null} to return all ongoing
+	 *                     dialogues.
+	 * @return the entries of the ongoing dialogues.
+	 */
+	public List<Entry> getOngoingEntries(String dialogueName) {
+		List<Entry> result = new ArrayList<>();
+		for (Entry entry : entries.values()) {
+			if (entry.isOngoing() && (dialogueName == null ||
+					dialogueName.equals(entry.getDialogueName())))
+				result.add(entry);
+		}
+		result.sort(Comparator.comparing(Entry::getSession, Comparator.reverseOrder())
+				.thenComparingLong(Entry::getUtcTime));
+		return result;
+	}
+
+	/**
+	 * Adds or updates the entries for the given {@code dialogues}, which are stored in the session
+	 * with the given base name, and persists any changed entries.
+	 *
+	 * @param session the base name of the session files.
+	 * @param dialogues the dialogues that are stored in the session.
+	 * @throws IOException in case of an error writing the index file.
+	 */
+	public void put(String session, Collection<ServerLoggedDialogue> dialogues)
+			throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (ServerLoggedDialogue dialogue : dialogues) {
+			Entry entry = new Entry(dialogue.getId(), session, dialogue.getDialogueName(),
+					dialogue.getUtcTime(), !dialogue.isCompleted() && !dialogue.isCancelled());
+			if (entry.equals(entries.get(entry.getDialogueId())))
+				continue;
+			entries.put(entry.getDialogueId(), entry);
+			lines.append(ENTRY_WRITER.writeValueAsString(entry)).append("\n");
+			lineCount++;
+		}
+		if (lines.isEmpty())
+			return;
+		if (lineCount > 2 * entries.size() + 64) {
+			rewrite();
+		} else {
+			Files.writeString(indexFile.toPath(), lines, StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		}
+	}
+
+	/**
+	 * Removes the entry for the logged dialogue with the given {@code dialogueId}, if it exists.
+	 *
+	 * @param dialogueId the id of the logged dialogue.
+	 * @throws IOException in case of an error writing the index file.
+	 */
+	public void remove(String dialogueId) throws IOException {
+		if (entries.remove(dialogueId) == null)
+			return;
+		Entry removal = new Entry();
+		removal.setDialogueId(dialogueId);
+		Files.writeString(indexFile.toPath(), ENTRY_WRITER.writeValueAsString(removal) + "\n",
+				StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		lineCount++;
+	}
+
+	/**
+	 * Rewrites the index file so that it contains exactly one line for every entry. The entries
+	 * are written to a temporary file that then replaces the index file, so that an interrupted
+	 * rewrite leaves the old index file intact.
+	 *
+	 * @throws IOException in case of an error writing the index file.
+	 */
+	private void rewrite() throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (Entry entry : entries.values()) {
+			lines.append(ENTRY_WRITER.writeValueAsString(entry)).append("\n");
+		}
+		File tempFile = new File(indexFile.getParentFile(), indexFile.getName() +
+				TEMP_FILE_EXTENSION);
+		Files.writeString(tempFile.toPath(), lines, StandardCharsets.UTF_8);
+		Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		lineCount = entries.size();
+	}
+
+	// ------------------------------------------------------------- //
+	// -------------------- Index Entry (class) -------------------- //
+	// ------------------------------------------------------------- //
+
+	/**
+	 * An entry in the {@link LoggedDialogueIndex}, describing a single logged dialogue.
+	 */
+	@JsonIgnoreProperties(ignoreUnknown=true)
+	public static class Entry {
+
+		private String dialogueId;
+		private String session;
+		private String dialogueName;
+		private long utcTime;
+		private boolean ongoing;
+
+		/**
+		 * Creates an empty instance of an {@link Entry}, used for deserialization.
+		 */
+		public Entry() {
+		}
+
+		/**
+		 * Creates an instance of an {@link Entry} with the given values.
+		 *
+		 * @param dialogueId the id of the logged dialogue.
+		 * @param session the base name of the session files that contain the dialogue.
+		 * @param dialogueName the name of the dialogue.
+		 * @param utcTime the start time of the dialogue as a unix time in milliseconds.
+		 * @param ongoing whether the dialogue is neither completed nor cancelled.
+		 */
+		public Entry(String dialogueId, String session, String dialogueName, long utcTime,
+				boolean ongoing) {
+			this.dialogueId = dialogueId;
+			this.session = session;
+			this.dialogueName = dialogueName;
+			this.utcTime = utcTime;
+			this.ongoing = ongoing;
+		}
+
+		public String getDialogueId() {
+			return dialogueId;
+		}
+
+		public void setDialogueId(String dialogueId) {
+			this.dialogueId = dialogueId;
+		}
+
+		public String getSession() {
+			return session;
+		}
+
+		public void setSession(String session) {
+			this.session = session;
+		}
+
+		public String getDialogueName() {
+			return dialogueName;
+		}
+
+		public void setDialogueName(String dialogueName) {
+			this.dialogueName = dialogueName;
+		}
+
+		public long getUtcTime() {
+			return utcTime;
+		}
+
+		public void setUtcTime(long utcTime) {
+			this.utcTime = utcTime;
+		}
+
+		public boolean isOngoing() {
+			return ongoing;
+		}
+
+		public void setOngoing(boolean ongoing) {
+			this.ongoing = ongoing;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Entry other))
+				return false;
+			return utcTime == other.utcTime && ongoing == other.ongoing &&
+					Objects.equals(dialogueId, other.dialogueId) &&
+					Objects.equals(session, other.session) &&
+					Objects.equals(dialogueName, other.dialogueName);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(dialogueId, session, dialogueName, utcTime, ongoing);
+		}
+	}
+
+}
@@ -29,18 +29,25 @@
 package com.dialoguebranch.web.service.storage;
 
 import com.dialoguebranch.web.service.Configuration;
+import com.dialoguebranch.web.service.execution.ApplicationManager;
 import com.dialoguebranch.web.service.execution.UserService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.exception.DatabaseException;
-import nl.rrd.utils.io.FileUtils;
-import nl.rrd.utils.json.JsonMapper;
 import org.slf4j.Logger;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
@@ -51,17 +58,106 @@ import java.util.*;
  * <p>A {@link LoggedDialogueStore} does not maintain any data in-memory, but immediately stores
  * any changes made to the configured storage mechanism.</p>
  *
+ * <p>Every dialogue session is stored in a JSON file named "{sessionStartTime} {sessionId}.json".
+ * If the {@link Configuration#DIALOGUE_LOG_FORMAT} is set to {@link
+ * Configuration#DIALOGUE_LOG_FORMAT_JSONL}, changes to a session are not written by rewriting this
+ * file, but by appending a {@link LoggedDialogueUpdate} to the file
+ * "{sessionStartTime} {sessionId}.jsonl". Once this file contains {@link
+ * Configuration#getDialogueLogCompactionThreshold()} updates, or when the store is closed, it is
+ * compacted into the JSON file. Sessions are always read from both files, so the format can be
+ * changed at any time.</p>
+ *
+ * <p>If a write-behind interval is configured (see {@link
+ * Configuration#getDialogueLogWriteBehindIntervalMs()}), changes are not written on the request
+ * thread, but buffered in memory and written by the application's {@link LoggedDialogueWriter}.
+ * All buffered changes to the same session are then written at once. Buffered changes are
+ * included when reading sessions, and they are written when the store is closed.</p>
+ *
+ * <p>To find logged dialogues without reading the user's complete history, the store maintains a
+ * {@link LoggedDialogueIndex} in the file "dialogues.idx". Any sessions that are missing from this
+ * index (e.g. after the index was first introduced, or after logs were restored from an Azure Data
+ * Lake) are added to it when it is loaded.</p>
+ *
  * @author Harm op den Akker (Fruit Tree Labs)
  */
 public class LoggedDialogueStore {
 
+	private static final String SESSION_FILE_EXTENSION = ".json";
+	private static final String SESSION_LOG_FILE_EXTENSION = ".jsonl";
+	private static final String INDEX_FILE_NAME = "dialogues.idx";
+
+	// Thread-safe readers and writers, shared by all users, so that the dialogue classes are
+	// only introspected once
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectReader SESSION_READER =
+			MAPPER.readerFor(new TypeReference<List<ServerLoggedDialogue>>() {});
+	private static final ObjectWriter SESSION_WRITER =
+			MAPPER.writerFor(new TypeReference<List<ServerLoggedDialogue>>() {});
+	private static final ObjectReader SESSION_LOG_READER =
+			MAPPER.readerFor(LoggedDialogueUpdate.class);
+	private static final ObjectWriter SESSION_LOG_WRITER =
+			MAPPER.writerFor(LoggedDialogueUpdate.class);
+
+	private final Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 	private final Configuration config = Configuration.getInstance();
-	private final UserService userService;
+	private final ApplicationManager applicationManager;
 	private final String userId;
 	private final File userLogDirectory;
-	private static final Object LOCK = new Object();
+
+	/**
+	 * The locks that guard the dialogue log files, one per user, so that reading and writing the
+	 * logs of one user (including a possibly slow upload to Azure) never blocks other users.
+	 */
+	private static final UserLocks LOCKS = new UserLocks();
+
+	/**
+	 * The lock from {@link #LOCKS} that guards the dialogue log files of this user. It is shared by
+	 * all stores of this user, and it stays in {@link #LOCKS} as long as this store exists.
+	 */
+	private final Object lock;
+
 	private ServerLoggedDialogue latestStoredServerLoggedDialogue = null;
 
+	/**
+	 * For every dialogue that was written to a session log by this store, the number of its
+	 * interactions that have been written, mapped by dialogue id.
+	 */
+	private final Map<String, Integer> writtenInteractionCounts = new HashMap<>();
+
+	/**
+	 * For every session log that was written by this store, the number of updates that were
+	 * appended since it was last compacted, mapped by session file base name.
+	 */
+	private final Map<String, Integer> sessionLogUpdateCounts = new HashMap<>();
+
+	/**
+	 * The base names of the session logs that were checked to end with a complete line before this
+	 * store appended to them (see {@link #repairSessionLog(String, File)}).
+	 */
+	private final Set<String> completeSessionLogs = new HashSet<>();
+
+	/**
+	 * The base names of this user's sessions, mapped by session id. It is loaded from the log
+	 * directory when it is first needed, and updated on every save.
+	 */
+	private Map<String, String> sessions = null;
+
+	/** The index of this user's logged dialogues, which is loaded when it is first needed. */
+	private LoggedDialogueIndex index = null;
+
+	/** The background writer for buffered changes, or {@code null} if writes are immediate. */
+	private final LoggedDialogueWriter writer;
+
+	/**
+	 * Copies of the buffered dialogues that have not been written yet, mapped by session file base
+	 * name and dialogue id.
+	 */
+	private final Map<String, Map<String, ServerLoggedDialogue>> pendingDialogues =
+			new LinkedHashMap<>();
+
+	/** The number of changes that were buffered since the last write. */
+	private int pendingCount = 0;
+
 	// -------------------------------------------------------- //
 	// -------------------- Constructor(s) -------------------- //
 	// -------------------------------------------------------- //
@@ -77,14 +173,38 @@ public class LoggedDialogueStore {
 	 * @throws IOException in case of an error instantiating the log folder.
 	 */
 	public LoggedDialogueStore(String userId, UserService userService) throws IOException {
-        Logger logger = AppComponents.getLogger(getClass().getSimpleName());
-        logger.info("Initializing LoggedDialogueStore for user '" + userId + "'.");
+		this(userId, userService.getApplicationManager(), true);
+	}
 
-		this.userService = userService;
+	/**
+	 * Creates an instance of a {@link LoggedDialogueStore} for the user identified by the given
+	 * {@code userId}. If {@code initialize} is true, this {@link LoggedDialogueStore} attempts to
+	 * create the directory to be used for logging dialogues, and populates it from the Azure Data
+	 * Lake if it did not exist yet. If {@code initialize} is false, nothing is created, which is
+	 * meant for reading the logs of a user without a {@link UserService} (see {@link
+	 * ApplicationManager#getLoggedDialogueStoreForReading(String)}). Such a store should not be
+	 * used to save dialogues.
+	 *
+	 * @param userId the identifier of the DialogueBranch User for which to instantiate this {@link
+	 *               LoggedDialogueStore}
+	 * @param applicationManager the server's {@link ApplicationManager} instance.
+	 * @param initialize true to create (and populate) the log folder, false to only read.
+	 * @throws IOException in case of an error instantiating the log folder.
+	 */
+	public LoggedDialogueStore(String userId, ApplicationManager applicationManager,
+			boolean initialize) throws IOException {
+		this.applicationManager = applicationManager;
 		this.userId = userId;
+		this.lock = LOCKS.get(userId);
+		this.writer = applicationManager.getLoggedDialogueWriter();
 
 		File dialogueLogDirectory = new File(config.getDataDir() + File.separator
 				+ config.getDirectoryNameDialogues());
+		this.userLogDirectory = new File(dialogueLogDirectory, userId);
+		if(!initialize)
+			return;
+
+        logger.info("Initializing LoggedDialogueStore for user '" + userId + "'.");
 
 		// If the application's dialogue log directory doesn't exist yet
 		if(!dialogueLogDirectory.exists()) {
@@ -98,10 +218,7 @@ public class LoggedDialogueStore {
 			}
 		}
 
-		// Now instantiate this user's specific directory
-		this.userLogDirectory = new File(dialogueLogDirectory, userId);
-
-		// If the folder doesn't exist, initialize it
+		// If the user's specific directory doesn't exist, initialize it
 		if(!userLogDirectory.exists()) {
 			if(userLogDirectory.mkdirs()) {
 				logger.info("Created user's dialogue log directory at: "+userLogDirectory);
@@ -109,7 +226,7 @@ public class LoggedDialogueStore {
 				// enabled, check if there is data to populate this directory here.
 				if(config.getAzureDataLakeEnabled()) {
 					try {
-						userService.getApplicationManager().getAzureDataLakeStore().
+						applicationManager.getAzureDataLakeStore().
 								populateLocalDialogueLogs(userId);
 					} catch(IOException e) {
 						logger.error("Error populating local dialogue log folder from Azure Data " +
@@ -128,10 +245,39 @@ public class LoggedDialogueStore {
 		}
 	}
 
+	/**
+	 * Creates an instance of a {@link LoggedDialogueStore} for the user identified by the given
+	 * {@code userId}, that writes to the given existing {@code userLogDirectory} without an
+	 * {@link ApplicationManager}. This is meant for tests and benchmarks, and it can only be used
+	 * if the Azure Data Lake is not enabled in the {@link Configuration}.
+	 *
+	 * @param userId the identifier of the DialogueBranch User.
+	 * @param userLogDirectory the dialogue log directory of the user.
+	 * @param writer the background writer for buffered changes, or {@code null} to write changes
+	 *               immediately.
+	 */
+	LoggedDialogueStore(String userId, File userLogDirectory, LoggedDialogueWriter writer) {
+		this.applicationManager = null;
+		this.userId = userId;
+		this.lock = LOCKS.get(userId);
+		this.writer = writer;
+		this.userLogDirectory = userLogDirectory;
+	}
+
 	// --------------------------------------- //
 	// ---------- Public Operations ---------- //
 	// --------------------------------------- //
 
+	/**
+	 * Returns whether the dialogue log directory of this user exists. This is always true for a
+	 * store that was initialized, and false for a read-only store of a user without local logs.
+	 *
+	 * @return true if the dialogue log directory of this user exists, false otherwise.
+	 */
+	public boolean hasLogDirectory() {
+		return userLogDirectory.isDirectory();
+	}
+
 	public ServerLoggedDialogue findLoggedDialogue(String id)
 			throws DatabaseException, IOException {
 		return readLatestDialogueWithConditions(false,null,id);
@@ -156,9 +302,88 @@ public class LoggedDialogueStore {
 	public void saveToSession(ServerLoggedDialogue dialogue)
 			throws DatabaseException, IOException {
 		this.latestStoredServerLoggedDialogue = dialogue;
-		synchronized(LOCK) {
-			List<ServerLoggedDialogue> dialogues = readSessionWith(dialogue);
-			saveToSession(dialogue.getSessionId(), dialogue.getSessionStartTime(), dialogues);
+		synchronized (lock) {
+			String baseName = getSessionBaseName(dialogue.getSessionId(),
+					dialogue.getSessionStartTime());
+			// Load the index before the session is stored, so that loading it does not index the
+			// new session before the store is complete
+			LoggedDialogueIndex index = getIndex();
+			getSessions().put(dialogue.getSessionId(), baseName);
+			if(writer != null) {
+				// Buffer a copy, as the dialogue is modified further by the request threads
+				pendingDialogues.computeIfAbsent(baseName, key -> new LinkedHashMap<>())
+						.put(dialogue.getId(), new ServerLoggedDialogue(dialogue));
+				pendingCount++;
+				if(pendingCount >= config.getDialogueLogWriteBehindMaxPending())
+					writer.flushSoon(this);
+				else
+					writer.schedule(this);
+			} else if(config.getDialogueLogFormat().equals(
+					Configuration.DIALOGUE_LOG_FORMAT_JSONL)) {
+				appendToSessionLog(dialogue);
+			} else {
+				List<ServerLoggedDialogue> dialogues = readSessionWith(dialogue);
+				writeSessionFile(baseName, dialogues);
+			}
+			// Only index the dialogue once it is stored, or buffered (buffered dialogues are
+			// included when sessions are read), so that the index never points to a change that
+			// failed to be stored
+			index.put(baseName, List.of(dialogue));
+		}
+	}
+
+	/**
+	 * Writes all buffered changes of this {@link LoggedDialogueStore}, so that every session is
+	 * written only once. This is called by the {@link LoggedDialogueWriter}. If writing fails, the
+	 * changes that were not written remain buffered.
+	 *
+	 * @throws DatabaseException in case of an error reading from the dialogue log files.
+	 * @throws IOException in case of an error reading or writing the dialogue log files.
+	 */
+	public void flushPendingWrites() throws DatabaseException, IOException {
+		synchronized (lock) {
+			if(pendingDialogues.isEmpty()) return;
+			Map<String, Map<String, ServerLoggedDialogue>> writes =
+					new LinkedHashMap<>(pendingDialogues);
+			pendingDialogues.clear();
+			pendingCount = 0;
+			Iterator<Map.Entry<String, Map<String, ServerLoggedDialogue>>> it =
+					writes.entrySet().iterator();
+			try {
+				while(it.hasNext()) {
+					Map.Entry<String, Map<String, ServerLoggedDialogue>> write = it.next();
+					writeSessionChanges(write.getKey(), write.getValue().values());
+					it.remove();
+				}
+			} catch(DatabaseException | IOException ex) {
+				// Keep the changes that were not written, unless they have been superseded
+				for(Map.Entry<String, Map<String, ServerLoggedDialogue>> write :
+						writes.entrySet()) {
+					Map<String, ServerLoggedDialogue> pending = pendingDialogues.computeIfAbsent(
+							write.getKey(), key -> new LinkedHashMap<>());
+					for(ServerLoggedDialogue dialogue : write.getValue().values()) {
+						pending.putIfAbsent(dialogue.getId(), dialogue);
+					}
+				}
+				throw ex;
+			}
+		}
+	}
+
+	/**
+	 * Closes this {@link LoggedDialogueStore}: writes all buffered changes and compacts all session
+	 * logs that were written by this store into the JSON files of their sessions. This should be
+	 * called when the store is no longer used.
+	 *
+	 * @throws DatabaseException in case of an error reading from the dialogue log files.
+	 * @throws IOException in case of an error reading or writing the dialogue log files.
+	 */
+	public void close() throws DatabaseException, IOException {
+		synchronized (lock) {
+			flushPendingWrites();
+			for(String baseName : new ArrayList<>(sessionLogUpdateCounts.keySet())) {
+				compactSessionLog(baseName);
+			}
 		}
 	}
 
@@ -175,90 +400,360 @@ public class LoggedDialogueStore {
 			}
 		}
 
-		// If not, check through the available files
-		File[] userLogFiles;
-
-		synchronized (LOCK) {
-			userLogFiles = userLogDirectory.listFiles();
-		}
-
-		if(userLogFiles == null) throw new DatabaseException("Error retrieving file listing " +
-				"from dialogue log directory for user '" + userId + "'.");
-
-		for(File f : userLogFiles) {
-			if (f.getName().endsWith(sessionId + ".json")) {
-				return true;
-			}
+		// If not, check the known sessions
+		synchronized (lock) {
+			return getSessions().containsKey(sessionId);
 		}
-		return false;
 	}
 
 	public List<ServerLoggedDialogue> readSession(String sessionId)
 			throws DatabaseException, IOException {
-
-		File[] userLogFiles;
-
-		synchronized (LOCK) {
-			userLogFiles = userLogDirectory.listFiles();
+		synchronized (lock) {
+			String baseName = getSessions().get(sessionId);
+			if(baseName == null) return new ArrayList<>();
+			return readSessionFiles(baseName);
 		}
-
-		if(userLogFiles == null) throw new DatabaseException("Error retrieving file listing " +
-				"from dialogue log directory for user '" + userId + "'.");
-
-		for(File f : userLogFiles) {
-			if (f.getName().endsWith(sessionId + ".json")) {
-				return readSession(f);
-			}
-		}
-		return new ArrayList<>();
 	}
 
 	// -------------------------------------------------- //
 	// ---------- Private Read & Write Methods ---------- //
 	// -------------------------------------------------- //
 
-	private void saveToSession(String sessionId, long sessionStartTime,
-									  List<ServerLoggedDialogue> dialogues) throws IOException {
-		synchronized (LOCK) {
-			String json = JsonMapper.generate(dialogues);
-			File dataFile = new File(userLogDirectory, sessionStartTime + " " + sessionId +
-					".json");
-			FileUtils.writeFileString(dataFile, json);
+	/**
+	 * Writes the given changed {@code dialogues} of the session with the given {@code baseName} in
+	 * the configured format, using a single write of the JSON file of the session.
+	 *
+	 * @param baseName the base name of the session files.
+	 * @param dialogues the changed dialogues.
+	 * @throws DatabaseException in case of an error reading from the dialogue log files.
+	 * @throws IOException in case of an error reading or writing the dialogue log files.
+	 */
+	private void writeSessionChanges(String baseName, Collection<ServerLoggedDialogue> dialogues)
+			throws DatabaseException, IOException {
+		synchronized (lock) {
+			if(config.getDialogueLogFormat().equals(Configuration.DIALOGUE_LOG_FORMAT_JSONL)) {
+				for(ServerLoggedDialogue dialogue : dialogues) {
+					appendToSessionLog(dialogue);
+				}
+			} else {
+				List<ServerLoggedDialogue> sessionDialogues = readSessionFiles(baseName);
+				for(ServerLoggedDialogue dialogue : dialogues) {
+					sessionDialogues.removeIf(current -> current.getId().equals(dialogue.getId()));
+					sessionDialogues.add(dialogue);
+				}
+				sessionDialogues.sort(Comparator.comparingLong(ServerLoggedDialogue::getUtcTime));
+				writeSessionFile(baseName, sessionDialogues);
+			}
+		}
+	}
+
+	/**
+	 * Writes the given {@code dialogues} as the complete JSON file of the session with the given
+	 * {@code baseName}, and removes the session log of that session, as all its updates are now
+	 * included in the JSON file.
+	 *
+	 * @param baseName the base name of the session files.
+	 * @param dialogues all dialogues in the session.
+	 * @throws IOException in case of an error writing the dialogue log files.
+	 */
+	private void writeSessionFile(String baseName, List<ServerLoggedDialogue> dialogues)
+			throws IOException {
+		synchronized (lock) {
+			File dataFile = new File(userLogDirectory, baseName + SESSION_FILE_EXTENSION);
+			writeFile(dataFile, SESSION_WRITER.writeValueAsBytes(dialogues), false);
 			if(config.getAzureDataLakeEnabled()) {
-				userService.getApplicationManager().getAzureDataLakeStore()
+				applicationManager.getAzureDataLakeStore()
 						.writeLoggedDialogueFile(userId,dataFile);
 			}
+			File logFile = new File(userLogDirectory, baseName + SESSION_LOG_FILE_EXTENSION);
+			if(logFile.exists()) {
+				Files.delete(logFile.toPath());
+				if(config.getAzureDataLakeEnabled()) {
+					applicationManager.getAzureDataLakeStore()
+							.deleteLoggedDialogueFile(userId,logFile);
+				}
+			}
+			sessionLogUpdateCounts.remove(baseName);
+		}
+	}
+
+	/**
+	 * Appends the changes to the given {@code dialogue} since it was last written by this store to
+	 * the session log of its session. If the dialogue was not written before, the complete dialogue
+	 * is appended. When the session log reaches the configured number of updates, it is compacted
+	 * into the JSON file of the session.
+	 *
+	 * @param dialogue the {@link ServerLoggedDialogue} that was changed.
+	 * @throws DatabaseException in case of an error reading from the dialogue log files.
+	 * @throws IOException in case of an error reading or writing the dialogue log files.
+	 */
+	private void appendToSessionLog(ServerLoggedDialogue dialogue)
+			throws DatabaseException, IOException {
+		synchronized (lock) {
+			String baseName = getSessionBaseName(dialogue.getSessionId(),
+					dialogue.getSessionStartTime());
+			File logFile = new File(userLogDirectory, baseName + SESSION_LOG_FILE_EXTENSION);
+			// If the log was repaired, an update that was written before may have been lost
+			boolean repaired = repairSessionLog(baseName, logFile);
+			int interactionCount = dialogue.getInteractionList().size();
+			Integer writtenCount = writtenInteractionCounts.get(dialogue.getId());
+			LoggedDialogueUpdate update;
+			if(repaired || writtenCount == null || writtenCount > interactionCount)
+				update = LoggedDialogueUpdate.forDialogue(dialogue);
+			else
+				update = LoggedDialogueUpdate.forChanges(dialogue, writtenCount);
+			try {
+				writeFile(logFile, (SESSION_LOG_WRITER.writeValueAsString(update) + "\n")
+						.getBytes(StandardCharsets.UTF_8), true);
+			} catch(IOException ex) {
+				// The update may have been written partially, so check the log on the next append
+				completeSessionLogs.remove(baseName);
+				throw ex;
+			}
+			writtenInteractionCounts.put(dialogue.getId(), interactionCount);
+			if(config.getAzureDataLakeEnabled()) {
+				applicationManager.getAzureDataLakeStore()
+						.writeLoggedDialogueFile(userId,logFile);
+			}
+			int updateCount = sessionLogUpdateCounts.merge(baseName, 1, Integer::sum);
+			if(updateCount >= config.getDialogueLogCompactionThreshold())
+				compactSessionLog(baseName);
 		}
 	}
 
-	private List<ServerLoggedDialogue> readSession(String sessionId, long sessionStartTime)
+	/**
+	 * Checks whether the session log of the session with the given {@code baseName} ends with a
+	 * complete line. If the last line was not written completely (for example after a crash while
+	 * appending), the next update would be appended to that line and could not be read either. In
+	 * that case the session log is compacted, which skips the incomplete line and removes the log.
+	 * A session log is checked only once by this store, unless an append to it fails.
+	 *
+	 * @param baseName the base name of the session files.
+	 * @param logFile the session log file.
+	 * @return true if the session log was repaired, false if it was complete.
+	 * @throws DatabaseException in case of an error reading from the dialogue log files.
+	 * @throws IOException in case of an error reading or writing the dialogue log files.
+	 */
+	private boolean repairSessionLog(String baseName, File logFile)
 			throws DatabaseException, IOException {
-		File dataFile = new File(userLogDirectory, sessionStartTime + " " + sessionId +
-				".json");
-		return readSession(dataFile);
+		synchronized (lock) {
+			if(!completeSessionLogs.add(baseName) || !logFile.exists())
+				return false;
+			try (FileChannel channel = FileChannel.open(logFile.toPath(),
+					StandardOpenOption.READ)) {
+				long size = channel.size();
+				if(size == 0)
+					return false;
+				ByteBuffer last = ByteBuffer.allocate(1);
+				channel.read(last, size - 1);
+				if(last.get(0) == '\n')
+					return false;
+			}
+			logger.warn("Repairing incomplete last line in session log '{}'.",
+					logFile.getAbsolutePath());
+			compactSessionLog(baseName);
+			return true;
+		}
+	}
+
+	/**
+	 * Compacts the session log of the session with the given {@code baseName} into the JSON file
+	 * of that session.
+	 *
+	 * @param baseName the base name of the session files.
+	 * @throws DatabaseException in case of an error reading from the dialogue log files.
+	 * @throws IOException in case of an error reading or writing the dialogue log files.
+	 */
+	private void compactSessionLog(String baseName) throws DatabaseException, IOException {
+		synchronized (lock) {
+			writeSessionFile(baseName, readSessionFiles(baseName));
+		}
 	}
 
-	private List<ServerLoggedDialogue> readSession(File sessionFile)
+	/**
+	 * Reads all dialogues of the session with the given {@code baseName}, by reading its JSON file
+	 * and applying all updates from its session log.
+	 *
+	 * @param baseName the base name of the session files.
+	 * @return the dialogues in the session sorted by time, or an empty list if the session does not
+	 *         exist.
+	 * @throws DatabaseException in case of an error parsing the dialogue log files.
+	 * @throws IOException in case of an error reading from the dialogue log files.
+	 */
+	private List<ServerLoggedDialogue> readSessionFiles(String baseName)
 			throws DatabaseException, IOException {
 		List<ServerLoggedDialogue> result;
-		synchronized (LOCK) {
-			if (!sessionFile.exists())
-				return new ArrayList<>();
-			ObjectMapper mapper = new ObjectMapper();
-			try {
-				result = mapper.readValue(sessionFile,
-						new TypeReference<>() {
-						});
-			} catch (JsonProcessingException ex) {
-				throw new DatabaseException(
-						"Failed to parse logged dialogues: " + sessionFile.getAbsolutePath() +
-								": " + ex.getMessage(), ex);
+		synchronized (lock) {
+			File sessionFile = new File(userLogDirectory, baseName + SESSION_FILE_EXTENSION);
+			if (sessionFile.exists())
+				result = readSessionFile(sessionFile);
+			else
+				result = new ArrayList<>();
+			File logFile = new File(userLogDirectory, baseName + SESSION_LOG_FILE_EXTENSION);
+			if (logFile.exists()) {
+				for (LoggedDialogueUpdate update : readSessionLogFile(logFile)) {
+					update.applyTo(result);
+				}
+			}
+			Map<String, ServerLoggedDialogue> pending = pendingDialogues.get(baseName);
+			if (pending != null) {
+				for (ServerLoggedDialogue dialogue : pending.values()) {
+					LoggedDialogueUpdate.forDialogue(new ServerLoggedDialogue(dialogue))
+							.applyTo(result);
+				}
 			}
 		}
 		result.sort(Comparator.comparingLong(ServerLoggedDialogue::getUtcTime));
 		return result;
 	}
 
+	/**
+	 * Reads all {@link LoggedDialogueUpdate}s from the given session log file, one line at a time.
+	 * If the last line of the file cannot be parsed, it was not written completely and it is
+	 * skipped. It is removed before the next update is appended (see {@link
+	 * #repairSessionLog(String, File)}).
+	 *
+	 * @param logFile the session log file.
+	 * @return the updates in the order in which they were written.
+	 * @throws DatabaseException in case of an error parsing the session log file.
+	 * @throws IOException in case of an error reading the session log file.
+	 */
+	private List<LoggedDialogueUpdate> readSessionLogFile(File logFile)
+			throws DatabaseException, IOException {
+		List<LoggedDialogueUpdate> result = new ArrayList<>();
+		JsonProcessingException lineError = null;
+		try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(),
+				StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank())
+					continue;
+				if (lineError != null) {
+					throw new DatabaseException("Failed to parse logged dialogue updates: "
+							+ logFile.getAbsolutePath() + ": " + lineError.getMessage(),
+							lineError);
+				}
+				try {
+					result.add(SESSION_LOG_READER.readValue(line));
+				} catch (JsonProcessingException ex) {
+					lineError = ex;
+				}
+			}
+		}
+		if (lineError != null) {
+			logger.warn("Skipping incomplete last line in session log '{}'.",
+					logFile.getAbsolutePath());
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the given {@code content} to the given {@code file}, replacing or appending to its
+	 * current content. If configured (see {@link Configuration#getDialogueLogFsync()}), the file is
+	 * synced to the storage device before this method returns.
+	 *
+	 * @param file the file to write.
+	 * @param content the content to write.
+	 * @param append true to append to the file, false to replace its content.
+	 * @throws IOException in case of an error writing the file.
+	 */
+	private void writeFile(File file, byte[] content, boolean append) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND :
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			if (config.getDialogueLogFsync())
+				channel.force(false);
+		}
+	}
+
+	/**
+	 * Returns the base names of this user's sessions, mapped by session id. When it is first
+	 * called, this method lists the user's log directory; after that, sessions are added by {@link
+	 * #saveToSession(ServerLoggedDialogue)}.
+	 *
+	 * @return the base names of this user's sessions, mapped by session id.
+	 * @throws DatabaseException in case of an error listing the dialogue log directory.
+	 */
+	private Map<String, String> getSessions() throws DatabaseException {
+		synchronized (lock) {
+			if(sessions != null) return sessions;
+			// A read-only store of a user without logs has no log directory
+			if(!userLogDirectory.exists()) {
+				sessions = new HashMap<>();
+				return sessions;
+			}
+			File[] userLogFiles = userLogDirectory.listFiles();
+			if(userLogFiles == null) throw new DatabaseException("Error retrieving file listing " +
+					"from dialogue log directory for user '" + userId + "'.");
+			Map<String, String> loadedSessions = new HashMap<>();
+			for(File f : userLogFiles) {
+				String baseName = getSessionBaseName(f);
+				if(baseName != null) {
+					int separator = baseName.indexOf(' ');
+					loadedSessions.put(baseName.substring(separator + 1), baseName);
+				}
+			}
+			sessions = loadedSessions;
+			return sessions;
+		}
+	}
+
+	/**
+	 * Returns the {@link LoggedDialogueIndex} of this user. When it is first called, this method
+	 * loads the index and adds any sessions that are not yet included in it.
+	 *
+	 * @return the {@link LoggedDialogueIndex}.
+	 * @throws DatabaseException in case of an error reading from the dialogue log files.
+	 * @throws IOException in case of an error reading or writing the dialogue log files.
+	 */
+	private LoggedDialogueIndex getIndex() throws DatabaseException, IOException {
+		synchronized (lock) {
+			if(index != null) return index;
+			LoggedDialogueIndex loadedIndex = new LoggedDialogueIndex(
+					new File(userLogDirectory, INDEX_FILE_NAME));
+			Set<String> indexedSessions = loadedIndex.getSessions();
+			for(String baseName : getSessions().values()) {
+				if(indexedSessions.add(baseName)) {
+					loadedIndex.put(baseName, readSessionFiles(baseName));
+				}
+			}
+			index = loadedIndex;
+			return index;
+		}
+	}
+
+	/**
+	 * Returns the base name of the session files for the given session, which is the file name
+	 * without extension.
+	 *
+	 * @param sessionId the session id.
+	 * @param sessionStartTime the start time of the session.
+	 * @return the base name of the session files.
+	 */
+	private String getSessionBaseName(String sessionId, long sessionStartTime) {
+		return sessionStartTime + " " + sessionId;
+	}
+
+	/**
+	 * Returns the base name of the session that the given {@code file} belongs to, or {@code null}
+	 * if it is not a session file or session log file.
+	 *
+	 * @param file a file in the user's dialogue log directory.
+	 * @return the base name of the session files or {@code null}.
+	 */
+	private String getSessionBaseName(File file) {
+		String name = file.getName();
+		if (name.endsWith(SESSION_LOG_FILE_EXTENSION))
+			return name.substring(0, name.length() - SESSION_LOG_FILE_EXTENSION.length());
+		if (name.endsWith(SESSION_FILE_EXTENSION))
+			return name.substring(0, name.length() - SESSION_FILE_EXTENSION.length());
+		return null;
+	}
+
 	/**
 	 * Provide the complete list of all LoggedDialogues that are part of the same session as the
 	 * given serverLoggedDialogue, including itself.
@@ -274,8 +769,8 @@ public class LoggedDialogueStore {
 			throws DatabaseException, IOException {
 
 		// Read all logged dialogues in this session from file
-		List<ServerLoggedDialogue> dialogues = readSession(serverLoggedDialogue.getSessionId(),
-				serverLoggedDialogue.getSessionStartTime());
+		List<ServerLoggedDialogue> dialogues = readSessionFiles(getSessionBaseName(
+				serverLoggedDialogue.getSessionId(), serverLoggedDialogue.getSessionStartTime()));
 
 		// Remove any serverLoggedDialogue (well, it should only be 1) that has the same id as the one
 		// we are adding.
@@ -308,6 +803,11 @@ public class LoggedDialogueStore {
 	 * <p>Finally, if no {@link ServerLoggedDialogue} is found that matches all given conditions,
 	 * this method will return {@code null}.</p>
 	 *
+	 * <p>If an {@code id} is provided or {@code mustBeOngoing} is {@code true}, the candidates are
+	 * taken from the {@link LoggedDialogueIndex}, so that only the sessions containing those
+	 * candidates are read, regardless of the length of the user's history. Only if a dialogue with
+	 * the given {@code id} is not found through the index, all sessions are read.</p>
+	 *
 	 * @param mustBeOngoing true if this method should only look for "ongoing" dialogues.
 	 * @param dialogueName an optional dialogue name to look for (or {@code null}).
 	 * @param id an optional id to look for (or {@code null}).
@@ -322,61 +822,118 @@ public class LoggedDialogueStore {
 
 		// We maintain a reference to the latest stored ServerLoggedDialogue in memory, which
 		// is the prime candidate for any search, so we check it first.
-		if(this.latestStoredServerLoggedDialogue != null) {
-			boolean match = true;
-
-			if(mustBeOngoing) {
-				if(latestStoredServerLoggedDialogue.isCancelled()
-						|| latestStoredServerLoggedDialogue.isCompleted()) match = false;
-			}
+		if(this.latestStoredServerLoggedDialogue != null && matchesConditions(
+				latestStoredServerLoggedDialogue, mustBeOngoing, dialogueName, id)) {
+			return latestStoredServerLoggedDialogue;
+		}
 
-			if(match && dialogueName != null) {
-				if(!latestStoredServerLoggedDialogue.getDialogueName().equals(dialogueName))
-					match = false;
+		synchronized (lock) {
+			// Look up a specific dialogue in the index, and verify it against its session
+			if(id != null) {
+				LoggedDialogueIndex.Entry entry = getIndex().get(id);
+				ServerLoggedDialogue ld = null;
+				if(entry != null)
+					ld = findInSession(readSessionFiles(entry.getSession()), id);
+				if(ld == null) {
+					// The index entry is missing or outdated (for example because an append to
+					// the index file was interrupted), so look in all sessions and correct it
+					if(entry != null)
+						getIndex().remove(id);
+					ld = findInAllSessions(id);
+				}
+				if(ld != null && matchesConditions(ld, mustBeOngoing, dialogueName, id))
+					return ld;
+				return null;
 			}
 
-			if(match && id != null) {
-				if(!latestStoredServerLoggedDialogue.getId().equals(id)) match = false;
+			// Look up the ongoing dialogues in the index, and verify them against their session
+			if(mustBeOngoing) {
+				for(LoggedDialogueIndex.Entry entry : getIndex().getOngoingEntries(dialogueName)) {
+					List<ServerLoggedDialogue> dialogues = readSessionFiles(entry.getSession());
+					ServerLoggedDialogue ld = findInSession(dialogues, entry.getDialogueId());
+					if(ld != null && matchesConditions(ld, true, dialogueName, null))
+						return ld;
+
+					// The index entry was outdated, so correct it
+					if(ld == null)
+						getIndex().remove(entry.getDialogueId());
+					else
+						getIndex().put(entry.getSession(), List.of(ld));
+				}
+				return null;
 			}
-
-			if(match) return latestStoredServerLoggedDialogue;
 		}
 
-		File[] userLogFiles;
-
-		synchronized (LOCK) {
-			userLogFiles = userLogDirectory.listFiles();
+		// Go through all sessions in reverse order (newest first)
+		SortedSet<String> sessionBaseNames = new TreeSet<>(Collections.reverseOrder());
+		synchronized (lock) {
+			sessionBaseNames.addAll(getSessions().values());
 		}
 
-		if(userLogFiles == null) throw new DatabaseException("Error retrieving file listing " +
-			"from dialogue log directory for user '" + userId + "'.");
-
-		// Go through all files in reverse order (newest first)
-		Arrays.sort(userLogFiles, Collections.reverseOrder());
-
-		for(File f : userLogFiles) {
-			List<ServerLoggedDialogue> serverLoggedDialogues = readSessionFile(f);
-			if(serverLoggedDialogues != null) {
-				for(ServerLoggedDialogue ld : serverLoggedDialogues) {
-					boolean match = true;
-
-					if(mustBeOngoing) {
-						if(ld.isCancelled() || ld.isCompleted()) match = false;
-					}
-
-					if(match && dialogueName != null) {
-						if(!ld.getDialogueName().equals(dialogueName)) match = false;
-					}
+		for(String baseName : sessionBaseNames) {
+			for(ServerLoggedDialogue ld : readSessionFiles(baseName)) {
+				if(matchesConditions(ld, mustBeOngoing, dialogueName, null)) return ld;
+			}
+		}
 
-					if(match && id != null) {
-						if(!ld.getId().equals(id)) match = false;
-					}
+		return null;
+	}
 
-					if(match) return ld;
+	/**
+	 * Looks for the {@link ServerLoggedDialogue} with the given {@code id} in all sessions of this
+	 * user (newest first), and adds it to the {@link LoggedDialogueIndex} if it is found. This is
+	 * used if the dialogue could not be found through the index.
+	 *
+	 * @param id the id of the logged dialogue.
+	 * @return the {@link ServerLoggedDialogue} or {@code null} if it does not exist.
+	 * @throws DatabaseException in case of an error reading from the dialogue log files.
+	 * @throws IOException in case of an error reading or writing the dialogue log files.
+	 */
+	private ServerLoggedDialogue findInAllSessions(String id)
+			throws DatabaseException, IOException {
+		synchronized (lock) {
+			SortedSet<String> sessionBaseNames = new TreeSet<>(Collections.reverseOrder());
+			sessionBaseNames.addAll(getSessions().values());
+			for(String baseName : sessionBaseNames) {
+				ServerLoggedDialogue ld = findInSession(readSessionFiles(baseName), id);
+				if(ld != null) {
+					getIndex().put(baseName, List.of(ld));
+					return ld;
 				}
 			}
+			return null;
 		}
+	}
 
+	/**
+	 * Returns whether the given {@link ServerLoggedDialogue} matches the conditions of {@link
+	 * #readLatestDialogueWithConditions(boolean, String, String)}.
+	 *
+	 * @param ld the {@link ServerLoggedDialogue} to check.
+	 * @param mustBeOngoing true if the dialogue must be "ongoing".
+	 * @param dialogueName an optional dialogue name that must match (or {@code null}).
+	 * @param id an optional id that must match (or {@code null}).
+	 * @return true if the dialogue matches all conditions, false otherwise.
+	 */
+	private boolean matchesConditions(ServerLoggedDialogue ld, boolean mustBeOngoing,
+									  String dialogueName, String id) {
+		if(mustBeOngoing && (ld.isCancelled() || ld.isCompleted())) return false;
+		if(dialogueName != null && !ld.getDialogueName().equals(dialogueName)) return false;
+		return id == null || ld.getId().equals(id);
+	}
+
+	/**
+	 * Returns the {@link ServerLoggedDialogue} with the given {@code id} from the given list of
+	 * {@code dialogues} of a session, or {@code null} if it is not part of the session.
+	 *
+	 * @param dialogues the dialogues of a session.
+	 * @param id the id of the logged dialogue.
+	 * @return the {@link ServerLoggedDialogue} or {@code null}.
+	 */
+	private ServerLoggedDialogue findInSession(List<ServerLoggedDialogue> dialogues, String id) {
+		for(ServerLoggedDialogue ld : dialogues) {
+			if(ld.getId().equals(id)) return ld;
+		}
 		return null;
 	}
 
@@ -390,13 +947,10 @@ public class LoggedDialogueStore {
 	 */
 	private List<ServerLoggedDialogue> readSessionFile(File sessionFile)
 			throws DatabaseException, IOException {
-		ObjectMapper mapper = new ObjectMapper();
 		List<ServerLoggedDialogue> result;
-		synchronized(LOCK) {
+		synchronized (lock) {
 			try {
-				result = mapper.readValue(sessionFile,
-						new TypeReference<>() {
-						});
+				result = SESSION_READER.readValue(sessionFile);
 			} catch (JsonProcessingException ex) {
 				throw new DatabaseException("Failed to parse logged dialogues: "
 						+ sessionFile.getAbsolutePath() + ": " + ex.getMessage(), ex);
@@ -0,0 +1,191 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.model.LoggedInteraction;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link LoggedDialogueUpdate} is a single line in the append-only (JSON Lines) log of a dialogue
+ * session, as written by the {@link LoggedDialogueStore}. It either contains a complete {@link
+ * ServerLoggedDialogue}, or the changes to a {@link ServerLoggedDialogue} that was written before:
+ * its new status and the interactions that were added since.
+ *
+ * <p>Applying an update is idempotent: the interactions of an update are placed at their index in
+ * the interaction list, so replaying a log over a session file that already contains its changes
+ * leaves the session unchanged.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+@JsonIgnoreProperties(ignoreUnknown=true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LoggedDialogueUpdate {
+
+	private ServerLoggedDialogue dialogue;
+	private String dialogueId;
+	private boolean completed;
+	private boolean cancelled;
+	private int interactionIndex;
+	private List<LoggedInteraction> interactions;
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an empty instance of a {@link LoggedDialogueUpdate}, used for deserialization.
+	 */
+	public LoggedDialogueUpdate() {
+	}
+
+	/**
+	 * Creates an update that contains the complete given {@code dialogue}.
+	 *
+	 * @param dialogue the complete {@link ServerLoggedDialogue}.
+	 * @return the update.
+	 */
+	public static LoggedDialogueUpdate forDialogue(ServerLoggedDialogue dialogue) {
+		LoggedDialogueUpdate update = new LoggedDialogueUpdate();
+		update.dialogue = dialogue;
+		return update;
+	}
+
+	/**
+	 * Creates an update that contains the status of the given {@code dialogue} and its interactions
+	 * starting at {@code interactionIndex}.
+	 *
+	 * @param dialogue the {@link ServerLoggedDialogue} that was changed.
+	 * @param interactionIndex the index of the first interaction that was added.
+	 * @return the update.
+	 */
+	public static LoggedDialogueUpdate forChanges(ServerLoggedDialogue dialogue,
+			int interactionIndex) {
+		LoggedDialogueUpdate update = new LoggedDialogueUpdate();
+		update.dialogueId = dialogue.getId();
+		update.completed = dialogue.isCompleted();
+		update.cancelled = dialogue.isCancelled();
+		update.interactionIndex = interactionIndex;
+		List<LoggedInteraction> interactionList = dialogue.getInteractionList();
+		update.interactions = new ArrayList<>(
+				interactionList.subList(interactionIndex, interactionList.size()));
+		return update;
+	}
+
+	// ----------------------------------------------------------- //
+	// -------------------- Getters & Setters -------------------- //
+	// ----------------------------------------------------------- //
+
+	public ServerLoggedDialogue getDialogue() {
+		return dialogue;
+	}
+
+	public void setDialogue(ServerLoggedDialogue dialogue) {
+		this.dialogue = dialogue;
+	}
+
+	public String getDialogueId() {
+		return dialogueId;
+	}
+
+	public void setDialogueId(String dialogueId) {
+		this.dialogueId = dialogueId;
+	}
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	public void setCompleted(boolean completed) {
+		this.completed = completed;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	public int getInteractionIndex() {
+		return interactionIndex;
+	}
+
+	public void setInteractionIndex(int interactionIndex) {
+		this.interactionIndex = interactionIndex;
+	}
+
+	public List<LoggedInteraction> getInteractions() {
+		return interactions;
+	}
+
+	public void setInteractions(List<LoggedInteraction> interactions) {
+		this.interactions = interactions;
+	}
+
+	// ------------------------------------------------------- //
+	// -------------------- Other Methods -------------------- //
+	// ------------------------------------------------------- //
+
+	/**
+	 * Applies this update to the given list of {@code dialogues} of a session.
+	 *
+	 * @param dialogues the dialogues of the session, which is modified by this method.
+	 */
+	public void applyTo(List<ServerLoggedDialogue> dialogues) {
+		if (dialogue != null) {
+			dialogues.removeIf(current -> current.getId().equals(dialogue.getId()));
+			dialogues.add(dialogue);
+			return;
+		}
+		for (ServerLoggedDialogue current : dialogues) {
+			if (!current.getId().equals(dialogueId))
+				continue;
+			current.setCompleted(completed);
+			current.setCancelled(cancelled);
+			if (interactions == null)
+				return;
+			List<LoggedInteraction> interactionList = current.getInteractionList();
+			int index = interactionIndex;
+			for (LoggedInteraction interaction : interactions) {
+				if (index < interactionList.size())
+					interactionList.set(index, interaction);
+				else
+					interactionList.add(interaction);
+				index++;
+			}
+			return;
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link LoggedDialogueWriter} is the background writer for {@link LoggedDialogueStore}s that
+ * buffer their changes (write-behind). A store that has buffered changes registers itself with
+ * {@link #schedule(LoggedDialogueStore)}, and the writer calls {@link
+ * LoggedDialogueStore#flushPendingWrites()} for it at a fixed interval, so that all changes to a
+ * session within an interval are written at once, outside of the request threads.
+ *
+ * <p>There is one {@link LoggedDialogueWriter} for the application, which is owned by the {@link
+ * com.dialoguebranch.web.service.execution.ApplicationManager}. When it is closed, it writes all
+ * remaining buffered changes.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class LoggedDialogueWriter {
+
+	private final Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+	private final Set<LoggedDialogueStore> pendingStores = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService executor;
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of a {@link LoggedDialogueWriter} that writes buffered changes every
+	 * {@code intervalMs} milliseconds.
+	 *
+	 * @param intervalMs the interval in milliseconds.
+	 */
+	public LoggedDialogueWriter(long intervalMs) {
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "LoggedDialogueWriter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::flushAll, intervalMs, intervalMs,
+				TimeUnit.MILLISECONDS);
+	}
+
+	// --------------------------------------- //
+	// ---------- Public Operations ---------- //
+	// --------------------------------------- //
+
+	/**
+	 * Registers that the given {@code store} has buffered changes that should be written at the
+	 * next interval.
+	 *
+	 * @param store the {@link LoggedDialogueStore} with buffered changes.
+	 */
+	public void schedule(LoggedDialogueStore store) {
+		pendingStores.add(store);
+	}
+
+	/**
+	 * Requests that the buffered changes of the given {@code store} are written as soon as
+	 * possible, without waiting for the next interval. If the writer is already closed, the
+	 * changes are written on the calling thread.
+	 *
+	 * @param store the {@link LoggedDialogueStore} with buffered changes.
+	 */
+	public void flushSoon(LoggedDialogueStore store) {
+		pendingStores.add(store);
+		try {
+			executor.execute(() -> flush(store));
+		} catch (RejectedExecutionException ex) {
+			flush(store);
+		}
+	}
+
+	/**
+	 * Writes the buffered changes of all registered {@link LoggedDialogueStore}s.
+	 */
+	public void flushAll() {
+		for (LoggedDialogueStore store : pendingStores) {
+			flush(store);
+		}
+	}
+
+	/**
+	 * Stops the background writer and writes all remaining buffered changes. This is called when
+	 * the service shuts down.
+	 */
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+				logger.warn("Timeout while waiting for the dialogue log writer to finish.");
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		flushAll();
+	}
+
+	// ---------------------------------------- //
+	// ---------- Private Operations ---------- //
+	// ---------------------------------------- //
+
+	/**
+	 * Writes the buffered changes of the given {@code store}. If this fails, the store remains
+	 * registered, so that it is retried at the next interval.
+	 *
+	 * @param store the {@link LoggedDialogueStore} with buffered changes.
+	 */
+	private void flush(LoggedDialogueStore store) {
+		if (!pendingStores.remove(store))
+			return;
+		try {
+			store.flushPendingWrites();
+		} catch (DatabaseException | IOException | RuntimeException ex) {
+			logger.error("Failed to write buffered dialogue logs (will retry): {}",
+					ex.getMessage(), ex);
+			pendingStores.add(store);
+		}
+	}
+
+}
@@ -78,6 +78,28 @@ public class ServerLoggedDialogue implements com.dialoguebranch.model.LoggedDial
 		this.id = UUID.randomUUID().toString().toLowerCase().replaceAll("-", "");
 	}
 
+	/**
+	 * Constructs a copy of the given {@code other} logged dialogue. The interaction list is copied,
+	 * but the {@link LoggedInteraction}s themselves are shared, as interactions are only ever
+	 * added to a logged dialogue and never modified.
+	 *
+	 * @param other the logged dialogue to copy.
+	 */
+	public ServerLoggedDialogue(ServerLoggedDialogue other) {
+		this.id = other.id;
+		this.sessionId = other.sessionId;
+		this.sessionStartTime = other.sessionStartTime;
+		this.user = other.user;
+		this.localTime = other.localTime;
+		this.utcTime = other.utcTime;
+		this.timezone = other.timezone;
+		this.dialogueName = other.dialogueName;
+		this.language = other.language;
+		this.completed = other.completed;
+		this.cancelled = other.cancelled;
+		this.interactionList = new ArrayList<>(other.interactionList);
+	}
+
 	@Override
 	public String getId() {
 		return id;
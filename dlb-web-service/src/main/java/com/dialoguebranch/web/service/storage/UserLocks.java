@@ -0,0 +1,103 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dialoguebranch.web.service.storage;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of lock objects, one for every user, that guard the local storage of that user. As long as
+ * a lock is referenced (e.g. by a store of the user), every call to {@link #get(String)} for the
+ * same user returns the same lock, so that the storage of one user is never blocked by the storage
+ * of another user. Locks that are no longer referenced are garbage collected and removed, so that
+ * the number of locks does not grow with the number of users that were ever active.
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+class UserLocks {
+
+	private final Map<String, LockReference> locks = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Object> collectedLocks = new ReferenceQueue<>();
+
+	/**
+	 * Returns the lock for the user with the given {@code userId}. The caller should keep a
+	 * reference to the lock for as long as it uses it.
+	 *
+	 * @param userId the user id.
+	 * @return the lock.
+	 */
+	Object get(String userId) {
+		removeCollectedLocks();
+		// Keep a strong reference, so the lock cannot be collected before it is returned
+		Object[] lock = new Object[1];
+		locks.compute(userId, (key, current) -> {
+			lock[0] = current == null ? null : current.get();
+			if (lock[0] != null)
+				return current;
+			lock[0] = new Object();
+			return new LockReference(key, lock[0], collectedLocks);
+		});
+		return lock[0];
+	}
+
+	/**
+	 * Returns the number of users that currently have a lock, including locks that have been
+	 * garbage collected but not removed yet.
+	 *
+	 * @return the number of locks.
+	 */
+	int size() {
+		removeCollectedLocks();
+		return locks.size();
+	}
+
+	private void removeCollectedLocks() {
+		LockReference ref;
+		while ((ref = (LockReference)collectedLocks.poll()) != null) {
+			locks.remove(ref.userId, ref);
+		}
+	}
+
+	/**
+	 * A weak reference to the lock of a user, which remembers the user id so that it can be
+	 * removed after the lock was garbage collected.
+	 */
+	private static class LockReference extends WeakReference<Object> {
+		private final String userId;
+
+		private LockReference(String userId, Object lock, ReferenceQueue<Object> queue) {
+			super(lock, queue);
+			this.userId = userId;
+		}
+	}
+
+}
@@ -40,21 +40,36 @@ import nl.rrd.utils.exception.ParseException;
 import nl.rrd.utils.json.JsonMapper;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.query.SelectionQuery;
 import org.slf4j.Logger;
 import org.springframework.util.ClassUtils;
 
 import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Supplier;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class VariableStoreDatabaseStorageHandler implements VariableStoreStorageHandler {
 
     private final Logger logger =
             AppComponents.getLogger(ClassUtils.getUserClass(getClass()).getSimpleName());
 
+	/**
+	 * The ids of known {@link DBUser}s, mapped by username, shared by all handlers. The username
+	 * of a {@link DBUser} never changes, so a cached id remains valid.
+	 */
+	private static final Map<String, UUID> DB_USER_IDS = new ConcurrentHashMap<>();
+
+	/** The maximum number of cached {@link DBUser} ids, after which the cache is cleared. */
+	private static final int MAX_CACHED_DB_USER_IDS = 100000;
+
     @Override
     public VariableStore read(User user) throws IOException, ParseException {
 		final List<DBVariable> dbVariables = new ArrayList<>();
@@ -69,75 +84,330 @@ public class VariableStoreDatabaseStorageHandler implements VariableStoreStorage
 		});
 
 		List<Variable> variables = new ArrayList<>();
+		ZonedDateTime now = DateTimeUtils.nowMs();
 		for (DBVariable dbVariable : dbVariables) {
-			ZonedDateTime now = DateTimeUtils.nowMs();
-			variables.add(new Variable(dbVariable.getName(),
-					JsonMapper.parse(dbVariable.getValue(), Object.class),
-					now.toInstant().toEpochMilli(),
-					now.getZone().getId()));
+			variables.add(toVariable(dbVariable, now));
 		}
 
 		return new VariableStore(user, variables.toArray(new Variable[0]));
     }
 
+	@Override
+	public List<String> readUserIds(String afterUserId, int limit) {
+		List<String> userIds = new ArrayList<>();
+		getSessionFactory().inTransaction(session -> {
+			if (afterUserId == null) {
+				userIds.addAll(session.createSelectionQuery(
+						"select username from DBUser order by username", String.class)
+						.setMaxResults(limit)
+						.getResultList());
+			} else {
+				userIds.addAll(session.createSelectionQuery(
+						"select username from DBUser where username > :after " +
+								"order by username", String.class)
+						.setParameter("after", afterUserId)
+						.setMaxResults(limit)
+						.getResultList());
+			}
+		});
+		return userIds;
+	}
+
+	/**
+	 * Reads the variables of all given users with a single query.
+	 *
+	 * @param userIds the IDs of the users.
+	 * @param variableNames the names of the variables to read, or an empty collection to read all
+	 *                      variables.
+	 * @return the variables mapped by user ID.
+	 * @throws ParseException in case a variable value could not be parsed.
+	 */
+	@Override
+	public Map<String, List<Variable>> readVariables(List<String> userIds,
+			Collection<String> variableNames) throws ParseException {
+		Map<String, List<Variable>> result = new LinkedHashMap<>();
+		for (String userId : userIds) {
+			result.put(userId, new ArrayList<>());
+		}
+		if (userIds.isEmpty())
+			return result;
+
+		final List<Object[]> rows = new ArrayList<>();
+		getSessionFactory().inTransaction(session -> {
+			String query = "select u.username, v from DBVariable v join v.user u " +
+					"where u.username in (:userIds)";
+			if (!variableNames.isEmpty())
+				query += " and v.name in (:names)";
+			SelectionQuery<Object[]> selection = session.createSelectionQuery(query, Object[].class)
+					.setParameterList("userIds", userIds);
+			if (!variableNames.isEmpty())
+				selection.setParameterList("names", variableNames);
+			rows.addAll(selection.getResultList());
+		});
+
+		// The database may compare usernames case-insensitively, so it can return a username in
+		// a different case than it was requested
+		Map<String, List<Variable>> resultIgnoreCase = new TreeMap<>(
+				String.CASE_INSENSITIVE_ORDER);
+		for (Map.Entry<String, List<Variable>> entry : result.entrySet()) {
+			resultIgnoreCase.putIfAbsent(entry.getKey(), entry.getValue());
+		}
+		ZonedDateTime now = DateTimeUtils.nowMs();
+		for (Object[] row : rows) {
+			String username = (String) row[0];
+			List<Variable> variables = result.get(username);
+			if (variables == null)
+				variables = resultIgnoreCase.get(username);
+			if (variables == null) {
+				logger.warn("Skipping variable of unexpected user '{}'.", username);
+				continue;
+			}
+			variables.add(toVariable((DBVariable) row[1], now));
+		}
+		return result;
+	}
+
     @Override
     public void write(VariableStore variableStore) throws IOException {
 		getSessionFactory().inTransaction(session -> {
 			DBUser dbUser = getDBUser(session, variableStore.getUser().getId());
 
-			List<DBVariable> prevDbVariables = session.createSelectionQuery(
+			Map<String, DBVariable> prevDbVariables = new HashMap<>();
+			for (DBVariable prevDbVariable : session.createSelectionQuery(
 					"from DBVariable where user.id = :userId", DBVariable.class)
 					.setParameter("userId", dbUser.getId())
-					.getResultList();
+					.getResultList()) {
+				prevDbVariables.put(prevDbVariable.getName(), prevDbVariable);
+			}
 
 			// create or update current variables
 			for (Variable variable : variableStore.getVariables()) {
-				DBVariable dbVariable = prevDbVariables.stream()
-						.filter(prevDbVariable -> prevDbVariable.getName().equals(variable.getName()))
-						.findFirst()
-						.orElseGet(() -> {
-							DBVariable newDbVariable = new DBVariable(variable.getName(), null);
-							newDbVariable.setUser(dbUser);
-							return newDbVariable;
-						});
-				dbVariable.setValue(JsonMapper.generate(variable.getValue()));
-				session.persist(dbVariable);
+				DBVariable dbVariable = prevDbVariables.remove(variable.getName());
+				if (dbVariable == null) {
+					dbVariable = new DBVariable(variable.getName());
+					dbVariable.setUser(dbUser);
+					session.persist(dbVariable);
+				}
+				setValue(dbVariable, variable.getValue(), variable.getUpdatedTime(),
+						variable.getUpdatedTimeZone());
 			}
 
 			// delete old variables
-			List<String> varNames = Arrays.stream(variableStore.getVariables())
-					.map(Variable::getName)
-					.toList();
-			for (DBVariable prevDbVariable : prevDbVariables) {
-				if (!varNames.contains(prevDbVariable.getName())) {
-					session.createMutationQuery("delete from DBVariable where id = :id")
-							.setParameter("id", prevDbVariable.getId())
-							.executeUpdate();
+			if (!prevDbVariables.isEmpty()) {
+				List<UUID> ids = new ArrayList<>();
+				for (DBVariable prevDbVariable : prevDbVariables.values()) {
+					ids.add(prevDbVariable.getId());
 				}
+				session.createMutationQuery("delete from DBVariable where id in (:ids)")
+						.setParameterList("ids", ids)
+						.executeUpdate();
 			}
 		});
     }
 
+	/**
+	 * Writes only the given {@code changes} to the database, instead of the complete {@link
+	 * VariableStore}: variables from a {@link VariableStoreChange.Put} are inserted or updated,
+	 * and removed or cleared variables are deleted, using one statement per change. Consecutive
+	 * {@link VariableStoreChange.Put}s are merged and need one query to find the existing
+	 * variables. All changes are written in a single transaction.
+	 *
+	 * @param variableStore the {@link VariableStore} that was changed.
+	 * @param changes the changes that were made to the {@link VariableStore}.
+	 */
     @Override
     public void onChange(VariableStore variableStore, List<VariableStoreChange> changes) {
-        try {
-            write(variableStore);
-        } catch(IOException e) {
-            logger.error("Failed to write variable store changes: " + e.getMessage(), e);
-        }
+		getSessionFactory().inTransaction(session -> {
+			DBUser dbUser = getDBUser(session, variableStore.getUser().getId());
+
+			// Consecutive puts are merged, so that buffered changes are written with as few
+			// queries as possible
+			Map<String, Variable> putVariables = new LinkedHashMap<>();
+			for (VariableStoreChange change : changes) {
+				if (change instanceof VariableStoreChange.Put put) {
+					long updatedTime = change.getTime().toInstant().toEpochMilli();
+					String updatedTimeZone = change.getTime().getZone().getId();
+					for (Map.Entry<String, Object> variable : put.getVariables().entrySet()) {
+						putVariables.put(variable.getKey(), new Variable(variable.getKey(),
+								variable.getValue(), updatedTime, updatedTimeZone));
+					}
+					continue;
+				}
+				putVariables(session, dbUser, putVariables);
+				putVariables.clear();
+				if (change instanceof VariableStoreChange.Remove remove) {
+					if (!remove.getVariableNames().isEmpty()) {
+						session.createMutationQuery("delete from DBVariable " +
+										"where user.id = :userId and name in (:names)")
+								.setParameter("userId", dbUser.getId())
+								.setParameterList("names", remove.getVariableNames())
+								.executeUpdate();
+					}
+				} else if (change instanceof VariableStoreChange.Clear) {
+					session.createMutationQuery("delete from DBVariable where user.id = :userId")
+							.setParameter("userId", dbUser.getId())
+							.executeUpdate();
+				}
+			}
+			putVariables(session, dbUser, putVariables);
+		});
     }
 
+	/**
+	 * Inserts or updates the given {@code variables} (mapped by name) for the given {@code
+	 * dbUser}.
+	 *
+	 * @param session the current database session.
+	 * @param dbUser the user that owns the variables.
+	 * @param variables the variables to write, mapped by name.
+	 */
+	private void putVariables(Session session, DBUser dbUser, Map<String, Variable> variables) {
+		if (variables.isEmpty())
+			return;
+
+		Map<String, DBVariable> prevDbVariables = new HashMap<>();
+		for (DBVariable prevDbVariable : session.createSelectionQuery(
+				"from DBVariable where user.id = :userId and name in (:names)", DBVariable.class)
+				.setParameter("userId", dbUser.getId())
+				.setParameterList("names", variables.keySet())
+				.getResultList()) {
+			prevDbVariables.put(prevDbVariable.getName(), prevDbVariable);
+		}
+
+		for (Variable variable : variables.values()) {
+			DBVariable dbVariable = prevDbVariables.get(variable.getName());
+			if (dbVariable == null) {
+				dbVariable = new DBVariable(variable.getName());
+				dbVariable.setUser(dbUser);
+				session.persist(dbVariable);
+			}
+			setValue(dbVariable, variable.getValue(), variable.getUpdatedTime(),
+					variable.getUpdatedTimeZone());
+		}
+	}
+
+	/**
+	 * Sets the given {@code value} and updated time in the given {@code dbVariable}. The value is
+	 * stored in the column that matches its type (see {@link DBVariable.ValueType}), and the legacy
+	 * JSON value is cleared.
+	 *
+	 * @param dbVariable the {@link DBVariable} to update.
+	 * @param value the value of the variable.
+	 * @param updatedTime the time at which the variable was updated (epoch milliseconds), or
+	 *                    {@code null} if unknown.
+	 * @param updatedTimeZone the time zone in which the variable was updated, or {@code null} if
+	 *                        unknown.
+	 */
+	private static void setValue(DBVariable dbVariable, Object value, Long updatedTime,
+			String updatedTimeZone) {
+		DBVariable.ValueType valueType;
+		Long longValue = null;
+		Double doubleValue = null;
+		String stringValue = null;
+		if (value == null) {
+			valueType = DBVariable.ValueType.NULL;
+		} else if (value instanceof Boolean booleanValue) {
+			valueType = DBVariable.ValueType.BOOLEAN;
+			longValue = booleanValue ? 1L : 0L;
+		} else if (value instanceof Integer || value instanceof Long ||
+				value instanceof Short || value instanceof Byte) {
+			valueType = DBVariable.ValueType.LONG;
+			longValue = ((Number) value).longValue();
+		} else if (value instanceof Double || value instanceof Float) {
+			valueType = DBVariable.ValueType.DOUBLE;
+			doubleValue = ((Number) value).doubleValue();
+		} else if (value instanceof String string) {
+			valueType = DBVariable.ValueType.STRING;
+			stringValue = string;
+		} else {
+			valueType = DBVariable.ValueType.JSON;
+			stringValue = JsonMapper.generate(value);
+		}
+		dbVariable.setValueType(valueType);
+		dbVariable.setLongValue(longValue);
+		dbVariable.setDoubleValue(doubleValue);
+		dbVariable.setStringValue(stringValue);
+		dbVariable.setValue(null);
+		dbVariable.setUpdatedTime(updatedTime);
+		dbVariable.setUpdatedTimeZone(updatedTimeZone);
+	}
+
+	/**
+	 * Converts the given {@code dbVariable} to a {@link Variable}. Variables that were stored
+	 * before the updated time was introduced get the given current time.
+	 *
+	 * @param dbVariable the {@link DBVariable}.
+	 * @param now the current time.
+	 * @return the {@link Variable}.
+	 * @throws ParseException in case a JSON value cannot be parsed.
+	 */
+	private static Variable toVariable(DBVariable dbVariable, ZonedDateTime now)
+			throws ParseException {
+		return new Variable(dbVariable.getName(),
+				getValue(dbVariable),
+				dbVariable.getUpdatedTime() != null ?
+						dbVariable.getUpdatedTime() : now.toInstant().toEpochMilli(),
+				dbVariable.getUpdatedTimeZone() != null ?
+						dbVariable.getUpdatedTimeZone() : now.getZone().getId());
+	}
+
+	/**
+	 * Returns the value of the given {@code dbVariable} from the column that matches its type. An
+	 * integer number is returned as an {@link Integer} if it fits, and otherwise as a {@link Long},
+	 * like when it is parsed from JSON.
+	 *
+	 * @param dbVariable the {@link DBVariable}.
+	 * @return the value of the variable.
+	 * @throws ParseException in case a JSON value cannot be parsed.
+	 */
+	private static Object getValue(DBVariable dbVariable) throws ParseException {
+		if (dbVariable.getValueType() == null)
+			return JsonMapper.parse(dbVariable.getValue(), Object.class);
+		return switch (dbVariable.getValueType()) {
+			case NULL -> null;
+			case BOOLEAN -> dbVariable.getLongValue() != 0;
+			case LONG -> {
+				long longValue = dbVariable.getLongValue();
+				if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE)
+					yield (int) longValue;
+				yield longValue;
+			}
+			case DOUBLE -> dbVariable.getDoubleValue();
+			case STRING -> dbVariable.getStringValue();
+			case JSON -> JsonMapper.parse(dbVariable.getStringValue(), Object.class);
+		};
+	}
+
 	private SessionFactory getSessionFactory() {
 		return AppComponents.get(SessionFactory.class);
 	}
 
+	/**
+	 * Returns the {@link DBUser} with the given {@code username}, creating it if it doesn't exist
+	 * yet. If the id of the user is known, this returns a reference to the user without querying
+	 * the database.
+	 *
+	 * @param session the current database session.
+	 * @param username the username of the user.
+	 * @return the {@link DBUser} (which may be an uninitialized reference).
+	 */
 	private DBUser getDBUser(Session session, String username) {
+		UUID dbUserId = DB_USER_IDS.get(username);
+		if (dbUserId != null) {
+			return session.getReference(DBUser.class, dbUserId);
+		}
+
 		DBUser dbUser = session.createSelectionQuery("from DBUser where username = :username",
 						DBUser.class)
 				.setParameter("username", username)
 				.getSingleResultOrNull();
 
 		if (dbUser != null) {
+			// Only cache users that were already stored, as a new user is not stored until its
+			// transaction is committed
+			if (DB_USER_IDS.size() >= MAX_CACHED_DB_USER_IDS)
+				DB_USER_IDS.clear();
+			DB_USER_IDS.put(username, dbUser.getId());
 			return dbUser;
 		}
 
@@ -33,19 +33,21 @@ import com.dialoguebranch.execution.Variable;
 import com.dialoguebranch.execution.VariableStore;
 import com.dialoguebranch.execution.VariableStoreChange;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.exception.ParseException;
 import nl.rrd.utils.io.FileUtils;
-import org.slf4j.Logger;
-import org.springframework.util.ClassUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * A {@link VariableStoreJSONStorageHandler} can manage reading and writing {@link VariableStore}s
@@ -60,8 +62,16 @@ public class VariableStoreJSONStorageHandler implements VariableStoreStorageHand
 
     private final String dataDirectory;
     private static final Object LOCK = new Object();
-    private final Logger logger =
-            AppComponents.getLogger(ClassUtils.getUserClass(getClass()).getSimpleName());
+
+    /** Thread-safe reader for variable store files, shared by all users */
+    private static final ObjectReader VARIABLES_READER =
+            new ObjectMapper().readerFor(Variable[].class);
+
+    /** Thread-safe writer for variable store files, shared by all users */
+    private static final ObjectWriter VARIABLES_WRITER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(SerializationFeature.WRITE_DATES_WITH_CONTEXT_TIME_ZONE, true)
+            .writer();
 
     /**
      * Creates an instance of a {@link VariableStoreJSONStorageHandler} that can read and write
@@ -81,11 +91,8 @@ public class VariableStoreJSONStorageHandler implements VariableStoreStorageHand
             File dataFile = new File(dataDir, user.getId() + ".json");
             if (!dataFile.exists())
                 return new VariableStore(user);
-            ObjectMapper mapper = new ObjectMapper();
-
             try {
-                Variable[] variables = mapper.readValue(dataFile,
-                        new TypeReference<>() {});
+                Variable[] variables = VARIABLES_READER.readValue(dataFile);
                 return new VariableStore(user, variables);
             } catch (JsonProcessingException ex) {
                 throw new ParseException(
@@ -98,11 +105,6 @@ public class VariableStoreJSONStorageHandler implements VariableStoreStorageHand
     @Override
     public void write(VariableStore variableStore) throws IOException {
         synchronized (LOCK) {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.registerModule(new JavaTimeModule());
-            objectMapper.configure(SerializationFeature.WRITE_DATES_WITH_CONTEXT_TIME_ZONE,
-                    true);
-
             File dataDir = new File(dataDirectory);
             FileUtils.mkdir(dataDir);
             File dataFile = new File(dataDir,
@@ -110,17 +112,57 @@ public class VariableStoreJSONStorageHandler implements VariableStoreStorageHand
 
             // Write the VariableStore only as a list of DLBVariables
             // (for easier deserialization).
-            objectMapper.writeValue(dataFile,variableStore.getVariables());
+            VARIABLES_WRITER.writeValue(dataFile,variableStore.getVariables());
         }
     }
 
+    @Override
+    public List<String> readUserIds(String afterUserId, int limit) {
+        return listUserIds(new File(dataDirectory), ".json", afterUserId, limit);
+    }
+
+    /**
+     * Writes the complete {@link VariableStore} after a change. If it cannot be written, an {@link
+     * UncheckedIOException} is thrown, so that a {@link VariableStoreWriter} keeps the changes and
+     * retries them.
+     *
+     * @param variableStore the {@link VariableStore} that was changed.
+     * @param changes the changes that were made to the {@link VariableStore}.
+     * @throws UncheckedIOException if the {@link VariableStore} cannot be written.
+     */
     @Override
     public void onChange(VariableStore variableStore, List<VariableStoreChange> changes) {
         try {
             write(variableStore);
         } catch(IOException e) {
-            logger.error("Failed to write variable store changes: " + e.getMessage(), e);
+            throw new UncheckedIOException("Failed to write variable store changes: " +
+                    e.getMessage(), e);
         }
     }
 
+    /**
+     * Returns a page of the IDs of users that have a file with the given {@code extension} in the
+     * given {@code directory}, sorted alphabetically and starting after the given {@code
+     * afterUserId}.
+     *
+     * @param directory the directory with one file per user.
+     * @param extension the file extension, e.g. ".json".
+     * @param afterUserId the user ID after which the page starts, or {@code null} to start at the
+     *                    first user.
+     * @param limit the maximum number of user IDs to return.
+     * @return the user IDs.
+     */
+    static List<String> listUserIds(File directory, String extension, String afterUserId,
+            int limit) {
+        String[] fileNames = directory.list((dir, name) -> name.endsWith(extension));
+        if (fileNames == null)
+            return new ArrayList<>();
+        return Arrays.stream(fileNames)
+                .map(name -> name.substring(0, name.length() - extension.length()))
+                .filter(userId -> afterUserId == null || userId.compareTo(afterUserId) > 0)
+                .sorted()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
 }
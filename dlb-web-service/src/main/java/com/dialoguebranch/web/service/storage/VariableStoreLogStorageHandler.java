@@ -0,0 +1,447 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.execution.User;
+import com.dialoguebranch.execution.Variable;
+import com.dialoguebranch.execution.VariableStore;
+import com.dialoguebranch.execution.VariableStoreChange;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.ParseException;
+import nl.rrd.utils.io.FileUtils;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link VariableStoreLogStorageHandler} stores the {@link VariableStore} of every user as an
+ * append-only log of changes in a JSON Lines file "{userId}.jsonl" under a given data directory.
+ * Every change to a {@link VariableStore} appends a single line to the file, instead of rewriting
+ * all variables, so that writes are fast regardless of the number of variables of a user. A
+ * {@link VariableStore} is read by replaying its log.
+ *
+ * <p>When the log of a user exceeds {@link #COMPACTION_THRESHOLD} records, it is compacted into a
+ * single snapshot record with all current variables. The snapshot is written to a temporary file
+ * that then replaces the log, so that an interrupted compaction leaves the old log intact. An
+ * incomplete last line (for example after a crash while appending) is skipped when reading, and
+ * removed by compacting the log.</p>
+ *
+ * <p>This storage handler does not need a database, which makes it suitable for single-node
+ * deployments. The locks that guard the log files are static, so multiple instances in the same
+ * JVM can use the same data directory, but the files must not be used by another process (such as
+ * a second node) at the same time.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class VariableStoreLogStorageHandler implements VariableStoreStorageHandler {
+
+	private static final String LOG_FILE_EXTENSION = ".jsonl";
+	private static final String TEMP_FILE_EXTENSION = ".jsonl.tmp";
+
+	/** The number of records in a log file after which it is compacted */
+	private static final int COMPACTION_THRESHOLD = 1000;
+
+	private static final int LOCK_COUNT = 64;
+	private static final Object[] LOCKS = createLocks();
+
+	/** The maximum number of users for which the number of records is kept in memory */
+	private static final int MAX_RECORD_COUNTS = 10000;
+
+	/**
+	 * The number of records in the log file of recently used users. The least recently used
+	 * counts are dropped when there are more than {@link #MAX_RECORD_COUNTS}; a dropped count is
+	 * restored from the log file when the user's log is appended to again.
+	 */
+	private static final Map<String, Integer> RECORD_COUNTS = Collections.synchronizedMap(
+			new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+					return size() > MAX_RECORD_COUNTS;
+				}
+			});
+
+	/** Thread-safe reader for log records, shared by all users */
+	private static final ObjectReader RECORD_READER =
+			new ObjectMapper().readerFor(Record.class);
+
+	/** Thread-safe writer for log records, shared by all users */
+	private static final ObjectWriter RECORD_WRITER = new ObjectMapper()
+			.registerModule(new JavaTimeModule())
+			.configure(SerializationFeature.WRITE_DATES_WITH_CONTEXT_TIME_ZONE, true)
+			.writerFor(Record.class);
+
+	private final Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+	private final File dataDirectory;
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of a {@link VariableStoreLogStorageHandler} that reads and writes {@link
+	 * VariableStore}s to and from log files in the given {@code dataDirectory}.
+	 *
+	 * @param dataDirectory a string description of the directory where to read and write from.
+	 */
+	public VariableStoreLogStorageHandler(String dataDirectory) {
+		this.dataDirectory = new File(dataDirectory);
+	}
+
+	// --------------------------------------- //
+	// ---------- Public Operations ---------- //
+	// --------------------------------------- //
+
+	@Override
+	public VariableStore read(User user) throws IOException, ParseException {
+		String userId = user.getId();
+		synchronized (getLock(userId)) {
+			File logFile = getLogFile(userId);
+			if (!logFile.exists()) {
+				RECORD_COUNTS.put(userId, 0);
+				return new VariableStore(user);
+			}
+			Map<String, Variable> variables = new LinkedHashMap<>();
+			int recordCount = 0;
+			JsonProcessingException lineError = null;
+			try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(),
+					StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.isBlank())
+						continue;
+					if (lineError != null) {
+						throw new ParseException("Failed to parse variable log file: "
+								+ logFile.getAbsolutePath() + ": " + lineError.getMessage(),
+								lineError);
+					}
+					try {
+						Record record = RECORD_READER.readValue(line);
+						record.applyTo(variables);
+						recordCount++;
+					} catch (JsonProcessingException ex) {
+						lineError = ex;
+					}
+				}
+			}
+			VariableStore variableStore = new VariableStore(user,
+					variables.values().toArray(new Variable[0]));
+			if (lineError != null) {
+				logger.warn("Skipping incomplete last line in variable log '{}'.",
+						logFile.getAbsolutePath());
+				writeSnapshot(variableStore);
+			} else {
+				RECORD_COUNTS.put(userId, recordCount);
+			}
+			return variableStore;
+		}
+	}
+
+	@Override
+	public void write(VariableStore variableStore) throws IOException {
+		synchronized (getLock(variableStore.getUser().getId())) {
+			writeSnapshot(variableStore);
+		}
+	}
+
+	@Override
+	public List<String> readUserIds(String afterUserId, int limit) {
+		return VariableStoreJSONStorageHandler.listUserIds(dataDirectory, LOG_FILE_EXTENSION,
+				afterUserId, limit);
+	}
+
+	/**
+	 * Appends the given {@code changes} to the log file of the user. If the log then exceeds
+	 * {@link #COMPACTION_THRESHOLD} records, it is replaced by a snapshot of the given {@code
+	 * variableStore}. If the changes are passed on with a delay (see {@link VariableStoreWriter}),
+	 * the snapshot may already contain changes that are appended later, which is harmless,
+	 * because replaying them on the snapshot results in the same variables.
+	 *
+	 * <p>If the changes cannot be written, an {@link UncheckedIOException} is thrown, so that a
+	 * {@link VariableStoreWriter} keeps the changes and retries them.</p>
+	 *
+	 * @param variableStore the {@link VariableStore} that was changed.
+	 * @param changes the changes that were made to the {@link VariableStore}.
+	 * @throws UncheckedIOException if the changes cannot be written.
+	 */
+	@Override
+	public void onChange(VariableStore variableStore, List<VariableStoreChange> changes) {
+		String userId = variableStore.getUser().getId();
+		try {
+			StringBuilder lines = new StringBuilder();
+			int recordCount = 0;
+			for (VariableStoreChange change : changes) {
+				Record record = Record.forChange(change);
+				if (record != null) {
+					lines.append(RECORD_WRITER.writeValueAsString(record)).append("\n");
+					recordCount++;
+				}
+			}
+			if (recordCount == 0)
+				return;
+			synchronized (getLock(userId)) {
+				FileUtils.mkdir(dataDirectory);
+				File logFile = getLogFile(userId);
+				if (!RECORD_COUNTS.containsKey(userId))
+					RECORD_COUNTS.put(userId, countRecords(logFile));
+				writeFile(logFile, lines.toString().getBytes(StandardCharsets.UTF_8), true);
+				if (RECORD_COUNTS.merge(userId, recordCount, Integer::sum) > COMPACTION_THRESHOLD)
+					writeSnapshot(variableStore);
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Failed to write variable store changes for user '"
+					+ userId + "': " + ex.getMessage(), ex);
+		}
+	}
+
+	// ---------------------------------------- //
+	// ---------- Private Operations ---------- //
+	// ---------------------------------------- //
+
+	/**
+	 * Replaces the log file of the user of the given {@code variableStore} with a single snapshot
+	 * record containing all its variables. This method should be called while holding the lock of
+	 * the user.
+	 *
+	 * @param variableStore the {@link VariableStore} to write.
+	 * @throws IOException in case of an error writing the log file.
+	 */
+	private void writeSnapshot(VariableStore variableStore) throws IOException {
+		String userId = variableStore.getUser().getId();
+		List<Variable> variables = new ArrayList<>();
+		for (Variable variable : variableStore.getVariables()) {
+			variables.add(variable);
+		}
+		Record record = new Record(Record.ACTION_SNAPSHOT, variables, null);
+		FileUtils.mkdir(dataDirectory);
+		File tempFile = new File(dataDirectory, userId + TEMP_FILE_EXTENSION);
+		writeFile(tempFile, (RECORD_WRITER.writeValueAsString(record) + "\n")
+				.getBytes(StandardCharsets.UTF_8), false);
+		Files.move(tempFile.toPath(), getLogFile(userId).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		RECORD_COUNTS.put(userId, 1);
+	}
+
+	/**
+	 * Writes the given {@code content} to the given {@code file}, replacing or appending to its
+	 * current content.
+	 *
+	 * @param file the file to write.
+	 * @param content the content to write.
+	 * @param append true to append to the file, false to replace its content.
+	 * @throws IOException in case of an error writing the file.
+	 */
+	private void writeFile(File file, byte[] content, boolean append) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND :
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of records in the given log file, without parsing them. This is used if
+	 * the number of records of a user is not known (anymore).
+	 *
+	 * @param logFile the log file.
+	 * @return the number of records, or 0 if the file does not exist.
+	 * @throws IOException in case of an error reading the log file.
+	 */
+	private int countRecords(File logFile) throws IOException {
+		if (!logFile.exists())
+			return 0;
+		int count = 0;
+		try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(),
+				StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isBlank())
+					count++;
+			}
+		}
+		return count;
+	}
+
+	private File getLogFile(String userId) {
+		return new File(dataDirectory, userId + LOG_FILE_EXTENSION);
+	}
+
+	private static Object getLock(String userId) {
+		return LOCKS[Math.floorMod(userId.hashCode(), LOCK_COUNT)];
+	}
+
+	private static Object[] createLocks() {
+		Object[] locks = new Object[LOCK_COUNT];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+		return locks;
+	}
+
+	// ------------------------------------------------------- //
+	// -------------------- Inner Classes -------------------- //
+	// ------------------------------------------------------- //
+
+	/**
+	 * A single line in a variable log file, which describes one change to a {@link
+	 * VariableStore}.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public static class Record {
+
+		/** Action that sets the given variables */
+		public static final String ACTION_PUT = "put";
+
+		/** Action that removes the variables with the given names */
+		public static final String ACTION_REMOVE = "remove";
+
+		/** Action that removes all variables */
+		public static final String ACTION_CLEAR = "clear";
+
+		/** Action that replaces all variables with the given variables */
+		public static final String ACTION_SNAPSHOT = "snapshot";
+
+		private String action;
+		private List<Variable> variables = null;
+		private List<String> names = null;
+
+		/**
+		 * Creates an instance of an empty {@link Record}, used for JSON deserialization.
+		 */
+		public Record() { }
+
+		/**
+		 * Creates an instance of a {@link Record} with the given {@code action}.
+		 *
+		 * @param action the action.
+		 * @param variables the variables for a put or snapshot, or {@code null}.
+		 * @param names the variable names for a remove, or {@code null}.
+		 */
+		public Record(String action, List<Variable> variables, List<String> names) {
+			this.action = action;
+			this.variables = variables;
+			this.names = names;
+		}
+
+		/**
+		 * Creates a {@link Record} for the given {@code change}, or returns {@code null} if the
+		 * change is of an unknown type.
+		 *
+		 * @param change the change to a {@link VariableStore}.
+		 * @return the {@link Record} or {@code null}.
+		 */
+		public static Record forChange(VariableStoreChange change) {
+			if (change instanceof VariableStoreChange.Put put) {
+				ZonedDateTime time = change.getTime();
+				List<Variable> variables = new ArrayList<>();
+				for (Map.Entry<String, Object> entry : put.getVariables().entrySet()) {
+					variables.add(new Variable(entry.getKey(), entry.getValue(),
+							time.toInstant().toEpochMilli(), time.getZone().getId()));
+				}
+				return new Record(ACTION_PUT, variables, null);
+			} else if (change instanceof VariableStoreChange.Remove remove) {
+				return new Record(ACTION_REMOVE, null,
+						new ArrayList<>(remove.getVariableNames()));
+			} else if (change instanceof VariableStoreChange.Clear) {
+				return new Record(ACTION_CLEAR, null, null);
+			}
+			return null;
+		}
+
+		/**
+		 * Applies this record to the given {@code variables}, mapped by name.
+		 *
+		 * @param variables the variables to change.
+		 */
+		public void applyTo(Map<String, Variable> variables) {
+			if (ACTION_CLEAR.equals(action) || ACTION_SNAPSHOT.equals(action))
+				variables.clear();
+			if (this.variables != null) {
+				for (Variable variable : this.variables) {
+					variables.put(variable.getName(), variable);
+				}
+			}
+			if (names != null) {
+				for (String name : names) {
+					variables.remove(name);
+				}
+			}
+		}
+
+		public String getAction() {
+			return action;
+		}
+
+		public void setAction(String action) {
+			this.action = action;
+		}
+
+		public List<Variable> getVariables() {
+			return variables;
+		}
+
+		public void setVariables(List<Variable> variables) {
+			this.variables = variables;
+		}
+
+		public List<String> getNames() {
+			return names;
+		}
+
+		public void setNames(List<String> names) {
+			this.names = names;
+		}
+
+	}
+
+}
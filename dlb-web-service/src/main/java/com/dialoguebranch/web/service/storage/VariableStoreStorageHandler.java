@@ -29,11 +29,17 @@
 package com.dialoguebranch.web.service.storage;
 
 import com.dialoguebranch.execution.User;
+import com.dialoguebranch.execution.Variable;
 import com.dialoguebranch.execution.VariableStore;
 import com.dialoguebranch.execution.VariableStoreOnChangeListener;
 import nl.rrd.utils.exception.ParseException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Interface for classes that can read and write a {@link VariableStore}.
@@ -60,4 +66,47 @@ public interface VariableStoreStorageHandler extends VariableStoreOnChangeListen
      */
     void write(VariableStore variableStore) throws IOException;
 
+    /**
+     * Returns a page of the IDs of users whose variables are stored, sorted alphabetically. The
+     * page starts after the given {@code afterUserId}, so that the last ID of a page can be used
+     * to retrieve the next page.
+     *
+     * @param afterUserId the user ID after which the page starts, or {@code null} to start at the
+     *                    first user.
+     * @param limit the maximum number of user IDs to return.
+     * @return the user IDs.
+     * @throws IOException in case of a read (or other I/O) error.
+     */
+    List<String> readUserIds(String afterUserId, int limit) throws IOException;
+
+    /**
+     * Reads the variables with the given {@code variableNames} of all given users, without
+     * creating a {@link VariableStore} for them. The returned map contains every given user ID, in
+     * the same order, mapped to the variables that were found (possibly an empty list).
+     *
+     * <p>The default implementation reads the complete {@link VariableStore} of every user.
+     * Implementations should override this if they can read the variables of many users more
+     * efficiently.</p>
+     *
+     * @param userIds the IDs of the users.
+     * @param variableNames the names of the variables to read, or an empty collection to read all
+     *                      variables.
+     * @return the variables mapped by user ID.
+     * @throws IOException in case of a read (or other I/O) error.
+     * @throws ParseException in case the contents of a variable store could not be understood.
+     */
+    default Map<String, List<Variable>> readVariables(List<String> userIds,
+            Collection<String> variableNames) throws IOException, ParseException {
+        Map<String, List<Variable>> result = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            List<Variable> variables = new ArrayList<>();
+            for (Variable variable : read(new User(userId)).getVariables()) {
+                if (variableNames.isEmpty() || variableNames.contains(variable.getName()))
+                    variables.add(variable);
+            }
+            result.put(userId, variables);
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,342 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.execution.User;
+import com.dialoguebranch.execution.Variable;
+import com.dialoguebranch.execution.VariableStore;
+import com.dialoguebranch.execution.VariableStoreChange;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.ParseException;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link VariableStoreWriter} is a {@link VariableStoreStorageHandler} that buffers the
+ * changes to {@link VariableStore}s (write-behind) and passes them on to another {@link
+ * VariableStoreStorageHandler} at a fixed interval. All changes of a user that were buffered
+ * within an interval are passed on at once, so that a database storage handler writes them in a
+ * single transaction.
+ *
+ * <p>The total number of buffered changes is bounded. When a change arrives while the limit is
+ * reached, the buffered changes of that user are written on the calling thread, so that requests
+ * are slowed down to the speed of the storage instead of filling up memory. If that write fails,
+ * the exception is passed on to the caller.</p>
+ *
+ * <p>Changes of the same user are always written in order. There is one {@link
+ * VariableStoreWriter} for the application, which is owned by the {@link
+ * com.dialoguebranch.web.service.execution.ApplicationManager}. When it is closed, it writes all
+ * remaining buffered changes.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class VariableStoreWriter implements VariableStoreStorageHandler {
+
+	private static final int LOCK_COUNT = 64;
+
+	private final Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+	private final VariableStoreStorageHandler storageHandler;
+	private final int maxPending;
+	private final ScheduledExecutorService executor;
+
+	/** The buffered changes per user ID */
+	private final Map<String, PendingChanges> pendingChanges = new ConcurrentHashMap<>();
+
+	/** Locks that ensure that the changes of a user are not written by two threads at once */
+	private final Object[] locks = new Object[LOCK_COUNT];
+
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicLong writeCount = new AtomicLong();
+	private final AtomicLong writeTimeNanos = new AtomicLong();
+	private final AtomicLong maxWriteTimeNanos = new AtomicLong();
+
+	// -------------------------------------------------------- //
+	// -------------------- Constructor(s) -------------------- //
+	// -------------------------------------------------------- //
+
+	/**
+	 * Creates an instance of a {@link VariableStoreWriter} that passes buffered changes to the
+	 * given {@code storageHandler} every {@code intervalMs} milliseconds.
+	 *
+	 * @param storageHandler the {@link VariableStoreStorageHandler} that writes the changes.
+	 * @param intervalMs the interval in milliseconds.
+	 * @param maxPending the total number of buffered changes after which changes are written on
+	 *                   the calling thread.
+	 */
+	public VariableStoreWriter(VariableStoreStorageHandler storageHandler, long intervalMs,
+			int maxPending) {
+		this.storageHandler = storageHandler;
+		this.maxPending = maxPending;
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "VariableStoreWriter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::flushAll, intervalMs, intervalMs,
+				TimeUnit.MILLISECONDS);
+	}
+
+	// ----------------------------------------------------------- //
+	// -------------------- Getters & Setters -------------------- //
+	// ----------------------------------------------------------- //
+
+	/**
+	 * Returns the number of variable changes that are currently buffered.
+	 *
+	 * @return the number of buffered variable changes.
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * Returns the number of writes to the {@link VariableStoreStorageHandler} since the start of
+	 * the service, where each write contains the buffered changes of one user.
+	 *
+	 * @return the number of writes.
+	 */
+	public long getWriteCount() {
+		return writeCount.get();
+	}
+
+	/**
+	 * Returns the average duration of a write to the {@link VariableStoreStorageHandler} in
+	 * milliseconds, or 0 if nothing has been written yet.
+	 *
+	 * @return the average write latency in milliseconds.
+	 */
+	public double getAverageWriteLatencyMs() {
+		long count = writeCount.get();
+		if (count == 0)
+			return 0;
+		return writeTimeNanos.get() / (count * 1_000_000.0);
+	}
+
+	/**
+	 * Returns the longest duration of a write to the {@link VariableStoreStorageHandler} in
+	 * milliseconds.
+	 *
+	 * @return the maximum write latency in milliseconds.
+	 */
+	public double getMaxWriteLatencyMs() {
+		return maxWriteTimeNanos.get() / 1_000_000.0;
+	}
+
+	// --------------------------------------- //
+	// ---------- Public Operations ---------- //
+	// --------------------------------------- //
+
+	/**
+	 * Writes the buffered changes of the given {@code user} and then reads the {@link
+	 * VariableStore} from the underlying {@link VariableStoreStorageHandler}.
+	 *
+	 * @param user the {@link User} that the {@link VariableStore} belongs to.
+	 * @return the {@link VariableStore} object.
+	 * @throws IOException in case of a read/write (or other I/O) error.
+	 * @throws ParseException in case the contents of the variable store could not be understood.
+	 */
+	@Override
+	public VariableStore read(User user) throws IOException, ParseException {
+		flush(user.getId(), true);
+		return storageHandler.read(user);
+	}
+
+	/**
+	 * Discards the buffered changes of the user of the given {@code variableStore}, as they are
+	 * replaced by the complete {@link VariableStore}, and writes it to the underlying {@link
+	 * VariableStoreStorageHandler}.
+	 *
+	 * @param variableStore the {@link VariableStore} to write.
+	 * @throws IOException in case of any I/O error with the medium used.
+	 */
+	@Override
+	public void write(VariableStore variableStore) throws IOException {
+		String userId = variableStore.getUser().getId();
+		synchronized (locks[Math.floorMod(userId.hashCode(), LOCK_COUNT)]) {
+			PendingChanges pending = pendingChanges.remove(userId);
+			if (pending != null)
+				pendingCount.addAndGet(-pending.changes.size());
+			storageHandler.write(variableStore);
+		}
+	}
+
+	/**
+	 * Writes all buffered changes and then reads a page of user IDs from the underlying {@link
+	 * VariableStoreStorageHandler}, so that users with only buffered changes are included.
+	 *
+	 * @param afterUserId the user ID after which the page starts, or {@code null} to start at the
+	 *                    first user.
+	 * @param limit the maximum number of user IDs to return.
+	 * @return the user IDs.
+	 * @throws IOException in case of a read (or other I/O) error.
+	 */
+	@Override
+	public List<String> readUserIds(String afterUserId, int limit) throws IOException {
+		flushAll();
+		return storageHandler.readUserIds(afterUserId, limit);
+	}
+
+	/**
+	 * Writes the buffered changes of the given users and then reads their variables from the
+	 * underlying {@link VariableStoreStorageHandler}.
+	 *
+	 * @param userIds the IDs of the users.
+	 * @param variableNames the names of the variables to read, or an empty collection to read all
+	 *                      variables.
+	 * @return the variables mapped by user ID.
+	 * @throws IOException in case of a read (or other I/O) error.
+	 * @throws ParseException in case the contents of a variable store could not be understood.
+	 */
+	@Override
+	public Map<String, List<Variable>> readVariables(List<String> userIds,
+			Collection<String> variableNames) throws IOException, ParseException {
+		for (String userId : userIds) {
+			flush(userId, true);
+		}
+		return storageHandler.readVariables(userIds, variableNames);
+	}
+
+	@Override
+	public void onChange(VariableStore variableStore, List<VariableStoreChange> changes) {
+		if (changes.isEmpty())
+			return;
+		String userId = variableStore.getUser().getId();
+		pendingChanges.compute(userId, (key, pending) -> {
+			if (pending == null)
+				pending = new PendingChanges();
+			pending.variableStore = variableStore;
+			pending.changes.addAll(changes);
+			return pending;
+		});
+		if (pendingCount.addAndGet(changes.size()) > maxPending)
+			flush(userId, true);
+	}
+
+	/**
+	 * Writes the buffered changes of the user with the given {@code userId}, if any, on the
+	 * calling thread. This should be called before the variables of the user are read from
+	 * storage and when the user is released from memory.
+	 *
+	 * @param userId the ID of the user.
+	 */
+	public void flush(String userId) {
+		flush(userId, false);
+	}
+
+	/**
+	 * Writes the buffered changes of all users.
+	 */
+	public void flushAll() {
+		for (String userId : pendingChanges.keySet()) {
+			flush(userId, false);
+		}
+	}
+
+	/**
+	 * Stops the background writer and writes all remaining buffered changes. This is called when
+	 * the service shuts down.
+	 */
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+				logger.warn("Timeout while waiting for the variable writer to finish.");
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		flushAll();
+	}
+
+	// ---------------------------------------- //
+	// ---------- Private Operations ---------- //
+	// ---------------------------------------- //
+
+	/**
+	 * Writes the buffered changes of the user with the given {@code userId}. If this fails, the
+	 * changes are buffered again, so that they are retried at the next interval. If {@code
+	 * rethrow} is true, the exception is then passed on to the caller.
+	 *
+	 * @param userId the ID of the user.
+	 * @param rethrow true if a failure should be passed on to the caller, false if it should only
+	 *                be logged.
+	 */
+	private void flush(String userId, boolean rethrow) {
+		synchronized (locks[Math.floorMod(userId.hashCode(), LOCK_COUNT)]) {
+			PendingChanges pending = pendingChanges.remove(userId);
+			if (pending == null)
+				return;
+			int count = pending.changes.size();
+			pendingCount.addAndGet(-count);
+			long start = System.nanoTime();
+			try {
+				storageHandler.onChange(pending.variableStore, pending.changes);
+			} catch (RuntimeException ex) {
+				pendingChanges.merge(userId, pending, (newer, failed) -> {
+					failed.changes.addAll(newer.changes);
+					failed.variableStore = newer.variableStore;
+					return failed;
+				});
+				pendingCount.addAndGet(count);
+				if (rethrow)
+					throw ex;
+				logger.error("Failed to write buffered variables for user '{}' (will retry): {}",
+						userId, ex.getMessage(), ex);
+				return;
+			}
+			long duration = System.nanoTime() - start;
+			writeCount.incrementAndGet();
+			writeTimeNanos.addAndGet(duration);
+			maxWriteTimeNanos.accumulateAndGet(duration, Math::max);
+		}
+	}
+
+	/**
+	 * The buffered changes of a single user, together with the most recent {@link VariableStore}
+	 * of that user.
+	 */
+	private static class PendingChanges {
+		private VariableStore variableStore;
+		private final List<VariableStoreChange> changes = new ArrayList<>();
+	}
+
+}
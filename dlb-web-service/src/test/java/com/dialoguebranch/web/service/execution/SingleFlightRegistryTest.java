@@ -0,0 +1,287 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.web.service.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency tests for the single-flight creation of values in a {@link SingleFlightRegistry}.
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class SingleFlightRegistryTest {
+
+	private static final int THREADS = 32;
+	private static final int KEYS = 200;
+
+	@Test
+	public void concurrentRequestsCreateEachValueOnce() throws Exception {
+		SingleFlightRegistry<Object> registry = new SingleFlightRegistry<>();
+		Map<String, AtomicInteger> creations = new ConcurrentHashMap<>();
+		Map<String, Object> seen = new ConcurrentHashMap<>();
+		AtomicInteger createdResults = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(() -> {
+					List<String> keys = new ArrayList<>();
+					for (int i = 0; i < KEYS; i++) {
+						keys.add("user" + i);
+					}
+					Collections.shuffle(keys);
+					start.await();
+					for (String key : keys) {
+						SingleFlightRegistry.Lease<Object> lease = registry.acquire(key,
+								() -> {
+									creations.computeIfAbsent(key, k -> new AtomicInteger())
+											.incrementAndGet();
+									Thread.sleep(1);
+									return new Object();
+								});
+						if (lease.created())
+							createdResults.incrementAndGet();
+						Object previous = seen.putIfAbsent(key, lease.value());
+						if (previous != null)
+							assertSame(previous, lease.value());
+						lease.release();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(KEYS, registry.size());
+		assertEquals(KEYS, createdResults.get());
+		for (int i = 0; i < KEYS; i++) {
+			assertEquals(1, creations.get("user" + i).get());
+		}
+	}
+
+	@Test
+	public void failedCreationIsRetried() throws Exception {
+		SingleFlightRegistry<Object> registry = new SingleFlightRegistry<>();
+		ExecutionException ex = assertThrows(ExecutionException.class,
+				() -> registry.acquire("user", () -> {
+					throw new IOException("Failed");
+				}));
+		assertInstanceOf(IOException.class, ex.getCause());
+		assertEquals(0, registry.size());
+		assertNull(registry.acquire("user", null));
+
+		Object value = new Object();
+		SingleFlightRegistry.Lease<Object> lease = registry.acquire("user", () -> value);
+		assertTrue(lease.created());
+		assertSame(value, lease.value());
+		assertSame(value, registry.acquire("user", null).value());
+	}
+
+	@Test
+	public void removeOnlyRemovesExpectedValue() throws Exception {
+		SingleFlightRegistry<Object> registry = new SingleFlightRegistry<>();
+		Object value = registry.acquire("user", Object::new).value();
+		assertFalse(registry.remove("user", new Object()));
+		assertTrue(registry.remove("user", value));
+		assertFalse(registry.remove("user", value));
+		assertNull(registry.acquire("user", null));
+	}
+
+	@Test
+	public void valueInUseIsNotRemovedIfUnused() throws Exception {
+		SingleFlightRegistry<Object> registry = new SingleFlightRegistry<>();
+		SingleFlightRegistry.Lease<Object> first = registry.acquire("user", Object::new);
+		SingleFlightRegistry.Lease<Object> second = registry.acquire("user", null);
+		Object value = first.value();
+		assertSame(value, second.value());
+
+		assertFalse(registry.removeIfUnused("user", value));
+		first.release();
+		first.release();
+		assertFalse(registry.removeIfUnused("user", value));
+		second.release();
+		assertTrue(registry.removeIfUnused("user", value));
+		assertEquals(0, registry.size());
+	}
+
+	@Test
+	public void concurrentEvictionNeverRemovesValueInUse() throws Exception {
+		SingleFlightRegistry<Object> registry = new SingleFlightRegistry<>();
+		AtomicInteger errors = new AtomicInteger();
+		Set<Object> removed = ConcurrentHashMap.newKeySet();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				boolean evictor = t % 4 == 0;
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < 2000; i++) {
+						String key = "user" + (i % 10);
+						if (evictor) {
+							for (Object value : registry.getCreatedValues()) {
+								for (int k = 0; k < 10; k++) {
+									if (registry.removeIfUnused("user" + k, value))
+										removed.add(value);
+								}
+							}
+						} else {
+							SingleFlightRegistry.Lease<Object> lease =
+									registry.acquire(key, Object::new);
+							if (removed.contains(lease.value()))
+								errors.incrementAndGet();
+							Thread.yield();
+							if (removed.contains(lease.value()))
+								errors.incrementAndGet();
+							lease.release();
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(0, errors.get());
+	}
+
+	@Test
+	public void creationWaitsForRunningAction() throws Exception {
+		SingleFlightRegistry<Object> registry = new SingleFlightRegistry<>();
+		CountDownLatch actionRunning = new CountDownLatch(1);
+		CountDownLatch actionDone = new CountDownLatch(1);
+		AtomicInteger writes = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Boolean> action = executor.submit(() -> registry.runIfAbsent("user", () -> {
+				actionRunning.countDown();
+				actionDone.await();
+				return writes.incrementAndGet();
+			}));
+			assertTrue(actionRunning.await(10, TimeUnit.SECONDS));
+			assertFalse(registry.runIfAbsent("user", writes::incrementAndGet));
+
+			// The creation must see the write of the action
+			Future<Integer> created = executor.submit(() ->
+					(Integer) registry.acquire("user", writes::get).value());
+			Thread.sleep(100);
+			assertFalse(created.isDone());
+			actionDone.countDown();
+			assertTrue(action.get(10, TimeUnit.SECONDS));
+			assertEquals(1, created.get(10, TimeUnit.SECONDS).intValue());
+		} finally {
+			actionDone.countDown();
+			executor.shutdownNow();
+		}
+
+		assertFalse(registry.runIfAbsent("user", writes::incrementAndGet));
+		assertEquals(1, writes.get());
+	}
+
+	@Test
+	public void failedActionDoesNotBlockCreation() throws Exception {
+		SingleFlightRegistry<Object> registry = new SingleFlightRegistry<>();
+		ExecutionException ex = assertThrows(ExecutionException.class,
+				() -> registry.runIfAbsent("user", () -> {
+					throw new IOException("failed");
+				}));
+		assertInstanceOf(IOException.class, ex.getCause());
+		assertEquals(0, registry.size());
+		assertNotNull(registry.acquire("user", Object::new));
+	}
+
+	@Test
+	public void creationWaitsForCloseOfRemovedValue() throws Exception {
+		SingleFlightRegistry<Object> registry = new SingleFlightRegistry<>();
+		Object value = registry.acquire("user", Object::new).value();
+		CountDownLatch closeRunning = new CountDownLatch(1);
+		CountDownLatch closeDone = new CountDownLatch(1);
+		AtomicInteger flushed = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Boolean> removed = executor.submit(() -> registry.remove("user", value, () -> {
+				closeRunning.countDown();
+				try {
+					closeDone.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				flushed.incrementAndGet();
+			}));
+			assertTrue(closeRunning.await(10, TimeUnit.SECONDS));
+
+			// The new value must see the state that was flushed by the close
+			Future<Integer> created = executor.submit(() ->
+					(Integer) registry.acquire("user", flushed::get).value());
+			Thread.sleep(100);
+			assertFalse(created.isDone());
+			closeDone.countDown();
+			assertTrue(removed.get(10, TimeUnit.SECONDS));
+			assertEquals(1, created.get(10, TimeUnit.SECONDS).intValue());
+		} finally {
+			closeDone.countDown();
+			executor.shutdownNow();
+		}
+		assertEquals(1, registry.size());
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dialoguebranch.web.service.storage;
+
+import com.dialoguebranch.model.LoggedInteraction;
+import com.dialoguebranch.model.MessageSource;
+import com.dialoguebranch.web.service.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the session logs of the {@link LoggedDialogueStore}, in the
+ * {@link Configuration#DIALOGUE_LOG_FORMAT_JSONL} format.
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class LoggedDialogueStoreTest {
+
+	private static final String USER_ID = "user";
+
+	private Path userLogDirectory;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Configuration.getInstance().put(Configuration.DIALOGUE_LOG_FORMAT,
+				Configuration.DIALOGUE_LOG_FORMAT_JSONL);
+		userLogDirectory = Files.createTempDirectory("dialogues");
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Configuration.getInstance().remove(Configuration.DIALOGUE_LOG_FORMAT);
+		try (Stream<Path> paths = Files.walk(userLogDirectory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	public void appendAfterIncompleteLastLine() throws Exception {
+		LoggedDialogueStore store = createStore();
+		ServerLoggedDialogue dialogue = createDialogue();
+		addInteraction(dialogue);
+		store.saveToSession(dialogue);
+		addInteraction(dialogue);
+		store.saveToSession(dialogue);
+
+		// Cut the last line, like after a crash while appending
+		Path logFile;
+		try (Stream<Path> paths = Files.list(userLogDirectory)) {
+			logFile = paths.filter(path -> path.toString().endsWith(".jsonl"))
+					.findFirst().orElseThrow();
+		}
+		byte[] content = Files.readAllBytes(logFile);
+		Files.write(logFile, Arrays.copyOf(content, content.length - 10));
+
+		// Append with a new store, like after a restart
+		addInteraction(dialogue);
+		createStore().saveToSession(dialogue);
+
+		List<ServerLoggedDialogue> session = createStore().readSession(dialogue.getSessionId());
+		assertEquals(1, session.size());
+		assertEquals(dialogue.getId(), session.get(0).getId());
+		assertEquals(3, session.get(0).getInteractionList().size());
+	}
+
+	@Test
+	public void findDialogueMissingFromIndex() throws Exception {
+		LoggedDialogueStore store = createStore();
+		ServerLoggedDialogue first = createDialogue();
+		addInteraction(first);
+		store.saveToSession(first);
+		ServerLoggedDialogue second = createDialogue();
+		addInteraction(second);
+		store.saveToSession(second);
+
+		// Keep only the first line of the index, like after an interrupted append
+		Path indexFile = userLogDirectory.resolve("dialogues.idx");
+		List<String> lines = Files.readAllLines(indexFile);
+		assertEquals(2, lines.size());
+		Files.write(indexFile, lines.subList(0, 1));
+
+		ServerLoggedDialogue found = createStore().findLoggedDialogue(second.getId());
+		assertNotNull(found);
+		assertEquals(second.getId(), found.getId());
+		assertNotNull(new LoggedDialogueIndex(indexFile.toFile()).get(second.getId()));
+		assertNull(createStore().findLoggedDialogue("unknown"));
+	}
+
+	// -------------------------------------------------- //
+	// -------------------- Helpers -------------------- //
+	// -------------------------------------------------- //
+
+	private LoggedDialogueStore createStore() {
+		return new LoggedDialogueStore(USER_ID, userLogDirectory.toFile(), null);
+	}
+
+	private static ServerLoggedDialogue createDialogue() {
+		ZonedDateTime time = ZonedDateTime.of(2026, 1, 1, 9, 0, 0, 0,
+				ZoneId.of("Europe/Amsterdam"));
+		ServerLoggedDialogue dialogue = new ServerLoggedDialogue(USER_ID, time, "session",
+				time.toInstant().toEpochMilli());
+		dialogue.setDialogueName("dialogue");
+		dialogue.setLanguage("en");
+		return dialogue;
+	}
+
+	private static void addInteraction(ServerLoggedDialogue dialogue) {
+		List<LoggedInteraction> interactions = dialogue.getInteractionList();
+		int index = interactions.size();
+		interactions.add(new LoggedInteraction(dialogue.getUtcTime() + index * 1000L,
+				MessageSource.AGENT, "Coach", dialogue.getDialogueName(), "Node" + index,
+				index - 1, "This is what the agent says in node " + index + ".", -1));
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *                Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2026 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.dialoguebranch.web.service.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-user locks in {@link UserLocks}, including a contention test in which one user
+ * holds its lock (like during a slow upload to Azure) while many other users use theirs.
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class UserLocksTest {
+
+	private static final int USERS = 256;
+
+	@Test
+	public void sameUserGetsSameLock() {
+		UserLocks locks = new UserLocks();
+		Object lock = locks.get("user");
+		assertSame(lock, locks.get("user"));
+		assertNotSame(lock, locks.get("other"));
+	}
+
+	@Test
+	public void heldLockDoesNotBlockOtherUsers() throws Exception {
+		UserLocks locks = new UserLocks();
+		Object slowLock = locks.get("slow");
+		CountDownLatch slowHolding = new CountDownLatch(1);
+		CountDownLatch slowDone = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		try {
+			executor.submit(() -> {
+				synchronized (slowLock) {
+					slowHolding.countDown();
+					slowDone.await();
+				}
+				return null;
+			});
+			assertTrue(slowHolding.await(10, TimeUnit.SECONDS));
+
+			// With striped locks, some of these users would share the stripe of the slow user
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < USERS; i++) {
+				String userId = "user" + i;
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < 100; j++) {
+						synchronized (locks.get(userId)) {
+							Thread.onSpinWait();
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			slowDone.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void unreferencedLocksAreRemoved() throws Exception {
+		UserLocks locks = new UserLocks();
+		Object lock = locks.get("kept");
+		for (int i = 0; i < USERS; i++) {
+			locks.get("user" + i);
+		}
+		long end = System.currentTimeMillis() + 10000;
+		while (locks.size() > 1 && System.currentTimeMillis() < end) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(1, locks.size());
+		assertSame(lock, locks.get("kept"));
+	}
+
+}